@@ -0,0 +1,333 @@
+package libraryManagementSystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix autocomplete over the titles and authors of books.
+ * Titles and authors are stored in a trie whose nodes cache the most borrowed books below them,
+ * so a completion is a walk down the typed prefix followed by a copy of the cached list.
+ * The trie is kept in sync incrementally as books are added, removed and renamed. Borrows only mark the book
+ * in a concurrent set, so renting never waits for the trie, and the marked books are moved up
+ * in one batch before the next completion is read.
+ */
+public class Autocomplete implements CatalogListener {
+    private final int suggestions;
+    private final Node root = new Node();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HashSet<Book<User>> indexed = new HashSet<>();
+    private final HashSet<Book<User>> changing = new HashSet<>();
+    private final Set<Book<?>> borrowed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs a new empty autocomplete trie.
+     *
+     * @param suggestions The maximum number of completions kept for every prefix.
+     */
+    public Autocomplete(int suggestions) {
+        this.suggestions = Math.max(suggestions, 1);
+    }
+
+    /**
+     * Adds the title and author of a book to the trie and follows the book's borrows.
+     *
+     * @param book The book that was added.
+     */
+    @Override
+    public void bookAdded(Book<User> book) {
+        this.lock.writeLock().lock();
+        try {
+            this.applyBorrows();
+            this.indexed.add(book);
+            this.link(book);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        book.addCatalogListener(this);
+    }
+
+    /**
+     * Removes the title and author of a book from the trie.
+     * Only the completions of the prefixes of its title and author are recomputed, each from its own books
+     * and the completions of its children.
+     *
+     * @param book The book that was removed.
+     */
+    @Override
+    public void bookRemoved(Book<User> book) {
+        book.removeCatalogListener(this);
+        this.borrowed.remove(book);
+        this.lock.writeLock().lock();
+        try {
+            this.changing.remove(book);
+            if (!this.indexed.remove(book)) {
+                return;
+            }
+            this.applyBorrows();
+            this.unlink(book);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes a book out of the trie before its title or author changes, while its old keys can still be read.
+     *
+     * @param book The book about to change.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void bookChanging(Book<?> book) {
+        this.lock.writeLock().lock();
+        try {
+            if (this.indexed.remove(book)) {
+                this.applyBorrows();
+                this.unlink(book);
+                this.changing.add((Book<User>) book);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Puts a book back into the trie under its new title and author.
+     *
+     * @param book The book that changed.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void bookChanged(Book<?> book) {
+        this.lock.writeLock().lock();
+        try {
+            if (this.changing.remove(book)) {
+                this.applyBorrows();
+                this.indexed.add((Book<User>) book);
+                this.link((Book<User>) book);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks a borrowed book to be moved up in the completions of the prefixes of its title and author.
+     *
+     * @param book The book that was borrowed.
+     */
+    @Override
+    public void bookBorrowed(Book<?> book) {
+        this.borrowed.add(book);
+    }
+
+    /**
+     * Gets the most borrowed books whose title or author starts with a prefix.
+     *
+     * @param prefix The typed prefix, matched case-insensitively.
+     * @param count  The number of completions wanted.
+     * @return A list of at most {@code count} books, most borrowed first.
+     */
+    public List<Book<User>> complete(String prefix, int count) {
+        String key = prefix.toLowerCase();
+        this.rankBorrowed();
+        this.lock.readLock().lock();
+        try {
+            Node node = this.root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            if (node == null || key.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<>(node.top.subList(0, Math.min(Math.max(count, 0), node.top.size())));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts or moves a book in the cached completions of a node.
+     *
+     * @param node The node to update.
+     * @param book The book to rank.
+     */
+    private void rank(Node node, Book<User> book) {
+        int index = node.top.indexOf(book);
+        if (index < 0) {
+            if (node.top.size() < this.suggestions) {
+                node.top.add(book);
+            } else if (book.getNbTimesBorrowed() > node.top.get(node.top.size() - 1).getNbTimesBorrowed()) {
+                node.top.set(node.top.size() - 1, book);
+            } else {
+                return;
+            }
+            index = node.top.size() - 1;
+        }
+        while (index > 0 && node.top.get(index - 1).getNbTimesBorrowed() < book.getNbTimesBorrowed()) {
+            Collections.swap(node.top, index - 1, index);
+            index--;
+        }
+    }
+
+    /**
+     * Moves the books borrowed since the last completion up in the completions of the prefixes of their title and author.
+     */
+    private void rankBorrowed() {
+        if (this.borrowed.isEmpty()) {
+            return;
+        }
+        this.lock.writeLock().lock();
+        try {
+            this.applyBorrows();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Merges the marked books into the completions of the prefixes of their title and author, one batch per node.
+     * Borrow counts only grow, so a book that was not marked cannot overtake the books already in the completions.
+     * Must be called with the write lock held.
+     */
+    @SuppressWarnings("unchecked")
+    private void applyBorrows() {
+        IdentityHashMap<Node, List<Book<User>>> touched = new IdentityHashMap<>();
+        Iterator<Book<?>> books = this.borrowed.iterator();
+        while (books.hasNext()) {
+            // the borrow count is read after the mark is cleared, so a borrow marking the book again is never lost
+            Book<User> book = (Book<User>) books.next();
+            books.remove();
+            if (!this.indexed.contains(book)) {
+                continue;
+            }
+            for (String key : keys(book)) {
+                for (Node node : this.path(key)) {
+                    touched.computeIfAbsent(node, n -> new ArrayList<>(n.top)).add(book);
+                }
+            }
+        }
+        for (Map.Entry<Node, List<Book<User>>> entry : touched.entrySet()) {
+            this.select(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Adds the title and author of a book to the trie. Must be called with the write lock held.
+     *
+     * @param book The book.
+     */
+    private void link(Book<User> book) {
+        for (String key : keys(book)) {
+            Node node = this.root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+                this.rank(node, book);
+            }
+            node.books.add(book);
+        }
+    }
+
+    /**
+     * Removes the title and author of a book from the trie, recomputing the completions it was part of.
+     * Must be called with the write lock held.
+     *
+     * @param book The book.
+     */
+    private void unlink(Book<?> book) {
+        List<List<Node>> paths = new ArrayList<>();
+        for (String key : keys(book)) {
+            List<Node> path = this.path(key);
+            if (path.size() == key.length()) {
+                path.get(path.size() - 1).books.remove(book);
+                paths.add(path);
+            }
+        }
+        // children first, as a node is refilled from the completions of its children
+        for (List<Node> path : paths) {
+            for (int i = path.size() - 1; i >= 0; i--) {
+                if (path.get(i).top.remove(book)) {
+                    this.refill(path.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the nodes of the prefixes of a key.
+     *
+     * @param key The key.
+     * @return The nodes from the first character down, stopping where the trie ends.
+     */
+    private List<Node> path(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = this.root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.children.get(key.charAt(i));
+            if (node == null) {
+                break;
+            }
+            path.add(node);
+        }
+        return path;
+    }
+
+    /**
+     * Recomputes the cached completions of a node from the books ending at it and the completions of its children,
+     * which hold every book below them that can make it into this node's completions.
+     *
+     * @param node The node to refill.
+     */
+    private void refill(Node node) {
+        List<Book<User>> candidates = new ArrayList<>(node.books);
+        for (Node child : node.children.values()) {
+            candidates.addAll(child.top);
+        }
+        this.select(node, candidates);
+    }
+
+    /**
+     * Sets the cached completions of a node to the most borrowed of some candidate books.
+     *
+     * @param node       The node to update.
+     * @param candidates The candidate books, possibly repeated.
+     */
+    private void select(Node node, List<Book<User>> candidates) {
+        // counts are read once, as borrows keep changing them while the trie is updated
+        IdentityHashMap<Book<User>, Integer> counts = new IdentityHashMap<>();
+        for (Book<User> book : candidates) {
+            counts.putIfAbsent(book, book.getNbTimesBorrowed());
+        }
+        ArrayList<Book<User>> ranked = new ArrayList<>(counts.keySet());
+        ranked.sort((b1, b2) -> Integer.compare(counts.get(b2), counts.get(b1)));
+        node.top.clear();
+        node.top.addAll(ranked.subList(0, Math.min(this.suggestions, ranked.size())));
+    }
+
+    /**
+     * Gets the keys a book is completed under.
+     *
+     * @param book The book.
+     * @return The lower-case title and author of the book.
+     */
+    private static String[] keys(Book<?> book) {
+        return new String[] { book.getTitle().toLowerCase(), book.getAuthor().toLowerCase() };
+    }
+
+    /**
+     * A node of the trie, holding the books whose key ends here and the cached completions below it.
+     */
+    private static final class Node {
+        private final HashMap<Character, Node> children = new HashMap<>();
+        private final HashSet<Book<User>> books = new HashSet<>();
+        private final ArrayList<Book<User>> top = new ArrayList<>();
+    }
+}
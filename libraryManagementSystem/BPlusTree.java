@@ -0,0 +1,616 @@
+package libraryManagementSystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An on-disk B+tree mapping byte-string keys to byte-string values, in unsigned lexicographic order of the keys.
+ * The file is made of 4 KB pages read and written through a {@link FileChannel}; page 0 is the header, and every other
+ * page is a leaf, holding sorted entries and a link to the next leaf, or an internal node, holding separator keys and child pages.
+ * Recently used pages are kept decoded in an LRU cache. The pages changed by an update are written back with the header
+ * when the update ends, so the file describes the whole tree between two updates, and a flush forces it to the disk.
+ * Removing an entry does not merge pages, so a file never shrinks.
+ * All operations are serialized on the tree; updates since the last flush may be lost if the system crashes.
+ */
+public class BPlusTree implements Closeable {
+    /**
+     * The size of a page of the file, in bytes.
+     */
+    public static final int PAGE_SIZE = 4096;
+    /**
+     * The maximum length of a key, in bytes.
+     */
+    public static final int MAX_KEY_LENGTH = 255;
+    /**
+     * The maximum length of a key and its value together, in bytes.
+     */
+    public static final int MAX_ENTRY_LENGTH = 1024;
+
+    private static final int MAGIC = 0x4c4d5354;
+    private static final int VERSION = 1;
+    private static final byte LEAF = 0;
+    private static final byte INTERNAL = 1;
+    private static final int NODE_HEADER = 7;
+
+    private final FileChannel channel;
+    private final int cachePages;
+    private final LinkedHashMap<Integer, Node> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final ArrayList<Node> dirtyPages = new ArrayList<>();
+    private int root;
+    private int pageCount;
+    private long size;
+    private long reads;
+    private long misses;
+
+    /**
+     * Opens a tree, creating the file if it does not exist.
+     *
+     * @param file       The file holding the tree.
+     * @param cachePages The maximum number of pages kept in memory, at least 4.
+     * @throws IOException If the file cannot be opened or is not a B+tree.
+     */
+    public BPlusTree(Path file, int cachePages) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.cachePages = Math.max(cachePages, 4);
+        if (this.channel.size() == 0) {
+            this.root = 1;
+            this.pageCount = 2;
+            Node leaf = new Node(1, LEAF);
+            this.cache.put(1, leaf);
+            this.markDirty(leaf);
+            this.writeBack();
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+            this.readPage(0, header);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                this.channel.close();
+                throw new IOException("Not a B+tree: " + file);
+            }
+            this.root = header.getInt(8);
+            this.pageCount = header.getInt(12);
+            this.size = header.getLong(16);
+        }
+    }
+
+    /**
+     * Gets the value of a key.
+     *
+     * @param key The key to look up.
+     * @return The value, or {@code null} if the key is not in the tree.
+     * @throws IOException If a page cannot be read.
+     */
+    public synchronized byte[] get(byte[] key) throws IOException {
+        Node leaf = this.findLeaf(key);
+        int index = leaf.search(key);
+        this.evict();
+        return index >= 0 ? leaf.values.get(index) : null;
+    }
+
+    /**
+     * Sets the value of a key, adding the key if it is not in the tree.
+     *
+     * @param key   The key.
+     * @param value The value.
+     * @return {@code true} if the key was added, {@code false} if its value was replaced.
+     * @throws IOException If a page cannot be read or written.
+     */
+    public synchronized boolean put(byte[] key, byte[] value) throws IOException {
+        if (key.length > MAX_KEY_LENGTH || key.length + value.length > MAX_ENTRY_LENGTH) {
+            throw new IllegalArgumentException("Entry too long for a B+tree page (max " + MAX_ENTRY_LENGTH + " bytes)");
+        }
+        boolean[] added = new boolean[1];
+        Split split = this.insert(this.root, key, value, added);
+        if (split != null) {
+            Node root = this.allocate(INTERNAL);
+            root.children.add(this.root);
+            root.keys.add(split.key);
+            root.children.add(split.page);
+            this.root = root.page;
+        }
+        if (added[0]) {
+            this.size++;
+        }
+        this.writeBack();
+        this.evict();
+        return added[0];
+    }
+
+    /**
+     * Removes a key from the tree.
+     *
+     * @param key The key to remove.
+     * @return {@code true} if the key was removed, {@code false} if it was not in the tree.
+     * @throws IOException If a page cannot be read or written.
+     */
+    public synchronized boolean remove(byte[] key) throws IOException {
+        Node leaf = this.findLeaf(key);
+        int index = leaf.search(key);
+        if (index < 0) {
+            return false;
+        }
+        leaf.keys.remove(index);
+        leaf.values.remove(index);
+        this.markDirty(leaf);
+        this.size--;
+        this.writeBack();
+        this.evict();
+        return true;
+    }
+
+    /**
+     * Gets the entries whose keys are in a range, in key order.
+     *
+     * @param from The smallest key of the range, included.
+     * @param to   The end of the range, excluded, or {@code null} for no end.
+     * @param max  The maximum number of entries to return.
+     * @return The entries of the range.
+     * @throws IOException If a page cannot be read.
+     */
+    public synchronized List<Map.Entry<byte[], byte[]>> range(byte[] from, byte[] to, int max) throws IOException {
+        List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>();
+        Node leaf = this.findLeaf(from);
+        int index = leaf.search(from);
+        index = index >= 0 ? index : -index - 1;
+        while (entries.size() < max) {
+            if (index == leaf.keys.size()) {
+                if (leaf.next == 0) {
+                    break;
+                }
+                leaf = this.node(leaf.next);
+                // a long scan only reads, so it can keep the cache within its size as it goes
+                this.evict();
+                index = 0;
+                continue;
+            }
+            byte[] key = leaf.keys.get(index);
+            if (to != null && Arrays.compareUnsigned(key, to) >= 0) {
+                break;
+            }
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(key, leaf.values.get(index)));
+            index++;
+        }
+        this.evict();
+        return entries;
+    }
+
+    /**
+     * Gets the number of keys in the tree.
+     *
+     * @return The number of entries.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of pages looked up since the tree was opened.
+     *
+     * @return The number of page reads, from the cache or the file.
+     */
+    public synchronized long getPageReads() {
+        return reads;
+    }
+
+    /**
+     * Gets the number of pages read from the file because they were not in the cache.
+     *
+     * @return The number of cache misses.
+     */
+    public synchronized long getCacheMisses() {
+        return misses;
+    }
+
+    /**
+     * Forces the pages and the header written by the updates to the disk.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public synchronized void flush() throws IOException {
+        this.writeBack();
+        this.channel.force(false);
+    }
+
+    /**
+     * Writes the changed pages to the file and closes it.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.channel.isOpen()) {
+            this.flush();
+            this.cache.clear();
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Finds the leaf where a key is or would be stored.
+     *
+     * @param key The key.
+     * @return The leaf.
+     * @throws IOException If a page cannot be read.
+     */
+    private Node findLeaf(byte[] key) throws IOException {
+        Node node = this.node(this.root);
+        while (node.type == INTERNAL) {
+            node = this.node(node.children.get(node.childIndex(key)));
+        }
+        return node;
+    }
+
+    /**
+     * Inserts an entry below a page, splitting the pages that overflow on the way back up.
+     *
+     * @param page  The page to insert below.
+     * @param key   The key.
+     * @param value The value.
+     * @param added Set to {@code true} if the key was not in the tree.
+     * @return The separator key and new right page if the page was split, {@code null} otherwise.
+     * @throws IOException If a page cannot be read.
+     */
+    private Split insert(int page, byte[] key, byte[] value, boolean[] added) throws IOException {
+        Node node = this.node(page);
+        if (node.type == LEAF) {
+            int index = node.search(key);
+            if (index >= 0) {
+                node.values.set(index, value);
+            } else {
+                node.keys.add(-index - 1, key);
+                node.values.add(-index - 1, value);
+                added[0] = true;
+            }
+            this.markDirty(node);
+        } else {
+            int index = node.childIndex(key);
+            Split split = this.insert(node.children.get(index), key, value, added);
+            if (split == null) {
+                return null;
+            }
+            node.keys.add(index, split.key);
+            node.children.add(index + 1, split.page);
+            this.markDirty(node);
+        }
+        return node.encodedSize() > PAGE_SIZE ? this.split(node) : null;
+    }
+
+    /**
+     * Splits an overflowing page in two halves of about the same size in bytes.
+     *
+     * @param node The page to split.
+     * @return The separator key and the new right page.
+     */
+    private Split split(Node node) {
+        Node right = this.allocate(node.type);
+        int half = node.encodedSize() / 2;
+        int used = NODE_HEADER;
+        int middle = 0;
+        while (used < half) {
+            used += node.entrySize(middle++);
+        }
+        byte[] separator;
+        if (node.type == LEAF) {
+            middle = Math.min(Math.max(middle, 1), node.keys.size() - 1);
+            right.keys.addAll(node.keys.subList(middle, node.keys.size()));
+            right.values.addAll(node.values.subList(middle, node.values.size()));
+            node.keys.subList(middle, node.keys.size()).clear();
+            node.values.subList(middle, node.values.size()).clear();
+            right.next = node.next;
+            node.next = right.page;
+            separator = right.keys.get(0);
+        } else {
+            // the middle key moves up, and its right child becomes the first child of the new page
+            middle = Math.min(Math.max(middle, 1), node.keys.size() - 2);
+            separator = node.keys.get(middle);
+            right.keys.addAll(node.keys.subList(middle + 1, node.keys.size()));
+            right.children.addAll(node.children.subList(middle + 1, node.children.size()));
+            node.keys.subList(middle, node.keys.size()).clear();
+            node.children.subList(middle + 1, node.children.size()).clear();
+        }
+        this.markDirty(node);
+        return new Split(separator, right.page);
+    }
+
+    /**
+     * Allocates a new empty page at the end of the file.
+     *
+     * @param type The type of the page.
+     * @return The new page, already in the cache.
+     */
+    private Node allocate(byte type) {
+        Node node = new Node(this.pageCount++, type);
+        this.cache.put(node.page, node);
+        this.markDirty(node);
+        return node;
+    }
+
+    /**
+     * Gets a page from the cache, reading it from the file on a miss.
+     *
+     * @param page The page number.
+     * @return The decoded page.
+     * @throws IOException If the page cannot be read or is not a node.
+     */
+    private Node node(int page) throws IOException {
+        this.reads++;
+        Node node = this.cache.get(page);
+        if (node == null) {
+            this.misses++;
+            ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+            this.readPage(page, buffer);
+            node = Node.decode(page, buffer);
+            this.cache.put(page, node);
+        }
+        return node;
+    }
+
+    /**
+     * Marks a page as changed by the current update, to be written back when the update ends.
+     *
+     * @param node The changed page.
+     */
+    private void markDirty(Node node) {
+        if (!node.dirty) {
+            node.dirty = true;
+            this.dirtyPages.add(node);
+        }
+    }
+
+    /**
+     * Writes the pages changed by an update to the file, followed by the header, which is written last
+     * so it never points to a root or page count that the file does not hold yet.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    private void writeBack() throws IOException {
+        if (this.dirtyPages.isEmpty()) {
+            return;
+        }
+        for (Node node : this.dirtyPages) {
+            this.writeNode(node);
+        }
+        this.dirtyPages.clear();
+        this.writeHeader();
+    }
+
+    /**
+     * Drops the least recently used pages until the cache is within its size.
+     * Pages are only evicted between operations, after the changed ones were written back,
+     * so every dropped page is already in the file and no page in use by an operation is dropped.
+     */
+    private void evict() {
+        Iterator<Node> eldest = this.cache.values().iterator();
+        while (this.cache.size() > this.cachePages && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Reads a whole page of the file.
+     *
+     * @param page   The page number.
+     * @param buffer The buffer to fill, of one page.
+     * @throws IOException If the page cannot be read.
+     */
+    private void readPage(int page, ByteBuffer buffer) throws IOException {
+        long position = (long) page * PAGE_SIZE;
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Page " + page + " is past the end of the file");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Encodes a page and writes it to the file.
+     *
+     * @param node The page.
+     * @throws IOException If the page cannot be written.
+     */
+    private void writeNode(Node node) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        node.encode(buffer);
+        buffer.clear();
+        this.writePage(node.page, buffer);
+        node.dirty = false;
+    }
+
+    /**
+     * Writes the root page, page count and number of keys to the header page.
+     *
+     * @throws IOException If the header cannot be written.
+     */
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(this.root).putInt(this.pageCount).putLong(this.size);
+        header.clear();
+        this.writePage(0, header);
+    }
+
+    /**
+     * Writes a whole page of the file.
+     *
+     * @param page   The page number.
+     * @param buffer The page contents.
+     * @throws IOException If the page cannot be written.
+     */
+    private void writePage(int page, ByteBuffer buffer) throws IOException {
+        long position = (long) page * PAGE_SIZE;
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * The result of splitting a page: the first key of the new right page and its page number.
+     */
+    private static final class Split {
+        private final byte[] key;
+        private final int page;
+
+        /**
+         * Constructs a split result.
+         *
+         * @param key  The separator key.
+         * @param page The new right page.
+         */
+        private Split(byte[] key, int page) {
+            this.key = key;
+            this.page = page;
+        }
+    }
+
+    /**
+     * A decoded page: a leaf with its entries and next leaf, or an internal node with its keys and children.
+     */
+    private static final class Node {
+        private final int page;
+        private final byte type;
+        private final ArrayList<byte[]> keys = new ArrayList<>();
+        private final ArrayList<byte[]> values = new ArrayList<>();
+        private final ArrayList<Integer> children = new ArrayList<>();
+        private int next;
+        private boolean dirty;
+
+        /**
+         * Constructs an empty page.
+         *
+         * @param page The page number.
+         * @param type The type of the page.
+         */
+        private Node(int page, byte type) {
+            this.page = page;
+            this.type = type;
+        }
+
+        /**
+         * Finds a key in a leaf.
+         *
+         * @param key The key.
+         * @return The index of the key, or {@code -(insertion point) - 1} if it is not in the leaf.
+         */
+        private int search(byte[] key) {
+            int low = 0;
+            int high = this.keys.size() - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = Arrays.compareUnsigned(this.keys.get(middle), key);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        /**
+         * Finds the child of an internal node that covers a key.
+         *
+         * @param key The key.
+         * @return The index of the child.
+         */
+        private int childIndex(byte[] key) {
+            int index = this.search(key);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+
+        /**
+         * Gets the number of bytes an entry of the page takes once encoded.
+         *
+         * @param index The index of the key.
+         * @return The encoded size of the key and its value or child.
+         */
+        private int entrySize(int index) {
+            return 2 + this.keys.get(index).length + (this.type == LEAF ? 2 + this.values.get(index).length : 4);
+        }
+
+        /**
+         * Gets the number of bytes the page takes once encoded.
+         *
+         * @return The encoded size of the page.
+         */
+        private int encodedSize() {
+            int size = NODE_HEADER + (this.type == INTERNAL ? 4 : 0);
+            for (int i = 0; i < this.keys.size(); i++) {
+                size += this.entrySize(i);
+            }
+            return size;
+        }
+
+        /**
+         * Encodes the page.
+         *
+         * @param buffer The buffer to write, of one page.
+         */
+        private void encode(ByteBuffer buffer) {
+            buffer.put(this.type).putShort((short) this.keys.size()).putInt(this.next);
+            if (this.type == INTERNAL) {
+                buffer.putInt(this.children.get(0));
+            }
+            for (int i = 0; i < this.keys.size(); i++) {
+                byte[] key = this.keys.get(i);
+                buffer.putShort((short) key.length).put(key);
+                if (this.type == LEAF) {
+                    byte[] value = this.values.get(i);
+                    buffer.putShort((short) value.length).put(value);
+                } else {
+                    buffer.putInt(this.children.get(i + 1));
+                }
+            }
+        }
+
+        /**
+         * Decodes a page.
+         *
+         * @param page   The page number.
+         * @param buffer The contents of the page.
+         * @return The decoded page.
+         * @throws IOException If the page is not a node.
+         */
+        private static Node decode(int page, ByteBuffer buffer) throws IOException {
+            byte type = buffer.get();
+            if (type != LEAF && type != INTERNAL) {
+                throw new IOException("Page " + page + " is not a B+tree node");
+            }
+            Node node = new Node(page, type);
+            int count = buffer.getShort() & 0xffff;
+            node.next = buffer.getInt();
+            if (type == INTERNAL) {
+                node.children.add(buffer.getInt());
+            }
+            try {
+                for (int i = 0; i < count; i++) {
+                    byte[] key = new byte[buffer.getShort() & 0xffff];
+                    buffer.get(key);
+                    node.keys.add(key);
+                    if (type == LEAF) {
+                        byte[] value = new byte[buffer.getShort() & 0xffff];
+                        buffer.get(value);
+                        node.values.add(value);
+                    } else {
+                        node.children.add(buffer.getInt());
+                    }
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Page " + page + " is corrupted", e);
+            }
+            return node;
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package libraryManagementSystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Stores bibliographic records of books in on-disk {@link BPlusTree}s, so they can be looked up and scanned in order
+ * after a restart. The primary tree maps an ISBN to the record of its book; secondary trees map a publication year,
+ * an author, a title or a genre followed by an ISBN to nothing, and are used to find the ISBNs of a range of years
+ * or of an author, title or genre before reading their records from the primary tree.
+ * A store opened without its title and genre trees, as written before they were added, builds them from the primary tree.
+ * Loans are not stored: a book read from the store is a fresh view that a {@link Library} keeps on the heap while it is in use.
+ */
+public class BTreeCatalogStore implements CatalogStorage {
+    private static final byte[] EMPTY = new byte[0];
+    private static final int SCAN_BATCH = 256;
+
+    private final BPlusTree byISBN;
+    private final BPlusTree byYear;
+    private final BPlusTree byAuthor;
+    private final BPlusTree byTitle;
+    private final BPlusTree byGenre;
+
+    /**
+     * Opens a store in a directory, creating the directory and its files if they do not exist.
+     *
+     * @param directory  The directory holding the files of the store.
+     * @param cachePages The number of 4 KB pages kept in memory, shared between the primary and secondary indexes.
+     * @throws IOException If a file cannot be opened or is not a B+tree.
+     */
+    public BTreeCatalogStore(Path directory, int cachePages) throws IOException {
+        Files.createDirectories(directory);
+        this.byISBN = new BPlusTree(directory.resolve("isbn.idx"), cachePages / 2);
+        this.byYear = new BPlusTree(directory.resolve("year.idx"), cachePages / 8);
+        this.byAuthor = new BPlusTree(directory.resolve("author.idx"), cachePages / 8);
+        this.byTitle = new BPlusTree(directory.resolve("title.idx"), cachePages / 8);
+        this.byGenre = new BPlusTree(directory.resolve("genre.idx"), cachePages / 8);
+        if (this.byTitle.size() != this.byISBN.size() || this.byGenre.size() != this.byISBN.size()) {
+            this.forEachEntry((isbn, record) -> {
+                this.byTitle.put(fieldKey(record.getTitle(), isbn), EMPTY);
+                this.byGenre.put(fieldKey(record.getGenre(), isbn), EMPTY);
+            });
+        }
+    }
+
+    /**
+     * Stores the bibliographic record of a book and adds it to the year, author, title and genre indexes.
+     *
+     * @param book The book to store.
+     * @throws InvalidInputInformation If a book with the same ISBN is stored or a field is too long.
+     * @throws IOException             If a file cannot be written.
+     */
+    @Override
+    public synchronized void store(Book<?> book) throws InvalidInputInformation, IOException {
+        byte[] isbn = book.getISBN().getBytes(StandardCharsets.UTF_8);
+        if (this.byISBN.get(isbn) != null) {
+            throw new InvalidInputInformation("A book with ISBN " + book.getISBN() + " is already stored");
+        }
+        byte[] record = encode(book);
+        byte[] author = fieldKey(book.getAuthor(), isbn);
+        byte[] title = fieldKey(book.getTitle(), isbn);
+        byte[] genre = fieldKey(book.getGenre(), isbn);
+        if (isbn.length > BPlusTree.MAX_KEY_LENGTH || author.length > BPlusTree.MAX_KEY_LENGTH || title.length > BPlusTree.MAX_KEY_LENGTH
+                || genre.length > BPlusTree.MAX_KEY_LENGTH || isbn.length + record.length > BPlusTree.MAX_ENTRY_LENGTH) {
+            throw new InvalidInputInformation("Book record too long for the catalog store (max " + BPlusTree.MAX_ENTRY_LENGTH + " bytes)");
+        }
+        // the secondary entries go first, so a reader following them never misses a stored record
+        this.byYear.put(yearKey(Integer.parseInt(book.getPublicationYear()), isbn), EMPTY);
+        this.byAuthor.put(author, EMPTY);
+        this.byTitle.put(title, EMPTY);
+        this.byGenre.put(genre, EMPTY);
+        this.byISBN.put(isbn, record);
+    }
+
+    /**
+     * Decodes the book with an ISBN.
+     *
+     * @param isbn The ISBN to look up.
+     * @return A new book built from the stored record, or {@code null} if no book with this ISBN is stored.
+     * @throws InvalidInputInformation If the stored record is not a valid book.
+     * @throws IOException             If a file cannot be read.
+     */
+    @Override
+    public Book<User> read(String isbn) throws InvalidInputInformation, IOException {
+        byte[] record = this.byISBN.get(isbn.getBytes(StandardCharsets.UTF_8));
+        return record == null ? null : decode(isbn, record).toBook();
+    }
+
+    /**
+     * Removes the record of a book and its year, author, title and genre index entries.
+     *
+     * @param isbn The ISBN of the book.
+     * @return {@code true} if a record was removed, {@code false} if no book with this ISBN is stored.
+     * @throws IOException If a file cannot be written.
+     */
+    @Override
+    public synchronized boolean delete(String isbn) throws IOException {
+        byte[] key = isbn.getBytes(StandardCharsets.UTF_8);
+        byte[] stored = this.byISBN.get(key);
+        if (stored == null || !this.byISBN.remove(key)) {
+            return false;
+        }
+        CatalogRecord record;
+        try {
+            record = decode(isbn, stored);
+        } catch (InvalidInputInformation e) {
+            return true;
+        }
+        if (record.getYear() >= 0) {
+            this.byYear.remove(yearKey(record.getYear(), key));
+        }
+        this.byAuthor.remove(fieldKey(record.getAuthor(), key));
+        this.byTitle.remove(fieldKey(record.getTitle(), key));
+        this.byGenre.remove(fieldKey(record.getGenre(), key));
+        return true;
+    }
+
+    /**
+     * Finds at most a number of the stored books published in a range of years, in order of year and then ISBN,
+     * through the year index.
+     *
+     * @param from  The first year of the range, included.
+     * @param to    The last year of the range, included.
+     * @param limit The largest number of books to return.
+     * @return The books published in the range.
+     * @throws IOException If a file cannot be read, or the federated search running the scan was cancelled.
+     */
+    @Override
+    public List<Book<User>> findByPublicationYear(int from, int to, int limit) throws IOException {
+        if (from > to) {
+            return new ArrayList<>();
+        }
+        return this.readAll(this.byYear.range(yearKey(from, EMPTY), yearKey(to + 1, EMPTY), limit), 2);
+    }
+
+    /**
+     * Finds at most a number of the stored books by an author, in order of ISBN, through the author index.
+     *
+     * @param author The exact name of the author.
+     * @param limit  The largest number of books to return.
+     * @return The books by the author.
+     * @throws IOException If a file cannot be read, or the federated search running the scan was cancelled.
+     */
+    @Override
+    public List<Book<User>> findByAuthor(String author, int limit) throws IOException {
+        return this.findByField(this.byAuthor, author, limit);
+    }
+
+    /**
+     * Finds at most a number of the stored books with a title, in order of ISBN, through the title index.
+     *
+     * @param title The exact title.
+     * @param limit The largest number of books to return.
+     * @return The books with the title.
+     * @throws IOException If a file cannot be read, or the federated search running the scan was cancelled.
+     */
+    @Override
+    public List<Book<User>> findByTitle(String title, int limit) throws IOException {
+        return this.findByField(this.byTitle, title, limit);
+    }
+
+    /**
+     * Finds at most a number of the stored books of a genre, in order of ISBN, through the genre index.
+     *
+     * @param genre The exact genre.
+     * @param limit The largest number of books to return.
+     * @return The books of the genre.
+     * @throws IOException If a file cannot be read, or the federated search running the scan was cancelled.
+     */
+    @Override
+    public List<Book<User>> findByGenre(String genre, int limit) throws IOException {
+        return this.findByField(this.byGenre, genre, limit);
+    }
+
+    /**
+     * Finds at most a number of the stored books whose ISBN starts with a prefix, such as the prefix of a publisher,
+     * in order of ISBN, by scanning only that range of the primary index.
+     *
+     * @param prefix The start of the ISBN.
+     * @param limit  The largest number of books to return.
+     * @return The books whose ISBN starts with the prefix.
+     * @throws IOException If a file cannot be read, or the federated search running the scan was cancelled.
+     */
+    @Override
+    public List<Book<User>> findByISBNPrefix(String prefix, int limit) throws IOException {
+        byte[] from = prefix.getBytes(StandardCharsets.UTF_8);
+        List<Book<User>> books = new ArrayList<>();
+        for (Map.Entry<byte[], byte[]> entry : this.byISBN.range(from, successor(from), limit)) {
+            FederatedSearch.checkCancelled();
+            String isbn = new String(entry.getKey(), StandardCharsets.UTF_8);
+            try {
+                books.add(decode(isbn, entry.getValue()).toBook());
+            } catch (InvalidInputInformation e) {
+                System.out.println("Stored record of " + isbn + " is invalid: " + e.getMessage());
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Reads the fields of every stored record, in order of ISBN, without decoding their books.
+     *
+     * @param action The action to perform on each record.
+     * @throws IOException If a file cannot be read, or the federated search running the scan was cancelled.
+     */
+    @Override
+    public void forEachRecord(Consumer<? super CatalogRecord> action) throws IOException {
+        this.forEachEntry((isbn, record) -> action.accept(record));
+    }
+
+    /**
+     * Reads the fields of every stored record, in order of ISBN, reading the primary index a batch of entries at a time.
+     *
+     * @param action The action to perform on the key and the fields of each record.
+     * @throws IOException If a file cannot be read or written, or the federated search running the scan was cancelled.
+     */
+    private void forEachEntry(EntryAction action) throws IOException {
+        byte[] from = EMPTY;
+        while (true) {
+            List<Map.Entry<byte[], byte[]>> entries = this.byISBN.range(from, null, SCAN_BATCH);
+            for (Map.Entry<byte[], byte[]> entry : entries) {
+                FederatedSearch.checkCancelled();
+                String isbn = new String(entry.getKey(), StandardCharsets.UTF_8);
+                try {
+                    action.accept(entry.getKey(), decode(isbn, entry.getValue()));
+                } catch (InvalidInputInformation e) {
+                    System.out.println("Stored record of " + isbn + " is invalid: " + e.getMessage());
+                }
+            }
+            if (entries.size() < SCAN_BATCH) {
+                return;
+            }
+            // the smallest key after the last one read
+            byte[] last = entries.get(entries.size() - 1).getKey();
+            from = Arrays.copyOf(last, last.length + 1);
+        }
+    }
+
+    /**
+     * Gets the number of records in the store.
+     *
+     * @return The number of stored books.
+     */
+    @Override
+    public int size() {
+        return (int) this.byISBN.size();
+    }
+
+    /**
+     * Gets the number of pages read from the files because they were not cached, across all indexes.
+     *
+     * @return The number of cache misses.
+     */
+    public long getCacheMisses() {
+        return this.byISBN.getCacheMisses() + this.byYear.getCacheMisses() + this.byAuthor.getCacheMisses()
+                + this.byTitle.getCacheMisses() + this.byGenre.getCacheMisses();
+    }
+
+    /**
+     * Forces the pages written by the updates of every index to the disk.
+     *
+     * @throws IOException If a file cannot be written.
+     */
+    public synchronized void flush() throws IOException {
+        this.byYear.flush();
+        this.byAuthor.flush();
+        this.byTitle.flush();
+        this.byGenre.flush();
+        this.byISBN.flush();
+    }
+
+    /**
+     * Writes the changed pages of every index to the disk and closes the files.
+     *
+     * @throws IOException If a file cannot be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            this.byYear.close();
+            this.byAuthor.close();
+            this.byTitle.close();
+            this.byGenre.close();
+        } finally {
+            this.byISBN.close();
+        }
+    }
+
+    /**
+     * Finds the stored books with a value of a field through the secondary index of the field.
+     *
+     * @param index The index of the field.
+     * @param value The exact value of the field.
+     * @param limit The largest number of books to return.
+     * @return The books with the value, in order of ISBN.
+     * @throws IOException If a file cannot be read, or the federated search running the scan was cancelled.
+     */
+    private List<Book<User>> findByField(BPlusTree index, String value, int limit) throws IOException {
+        byte[] from = fieldKey(value, EMPTY);
+        byte[] to = from.clone();
+        // the separator after the value becomes 1, which bounds every ISBN of this value
+        to[to.length - 1] = 1;
+        return this.readAll(index.range(from, to, limit), from.length);
+    }
+
+    /**
+     * Reads the records of the ISBNs found in a secondary index.
+     *
+     * @param entries The entries of the secondary index.
+     * @param offset  The position of the ISBN in the keys of the index.
+     * @return The books, skipping those removed since the index was read.
+     * @throws IOException If a file cannot be read, or the federated search running the scan was cancelled.
+     */
+    private List<Book<User>> readAll(List<Map.Entry<byte[], byte[]>> entries, int offset) throws IOException {
+        List<Book<User>> books = new ArrayList<>(entries.size());
+        for (Map.Entry<byte[], byte[]> entry : entries) {
+            FederatedSearch.checkCancelled();
+            byte[] key = entry.getKey();
+            String isbn = new String(key, offset, key.length - offset, StandardCharsets.UTF_8);
+            try {
+                Book<User> book = this.read(isbn);
+                if (book != null) {
+                    books.add(book);
+                }
+            } catch (InvalidInputInformation e) {
+                System.out.println("Stored record of " + isbn + " is invalid: " + e.getMessage());
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Builds a key of the year index.
+     *
+     * @param year The publication year.
+     * @param isbn The ISBN, or nothing for the first key of the year.
+     * @return The year as two big-endian bytes, followed by the ISBN.
+     */
+    private static byte[] yearKey(int year, byte[] isbn) {
+        byte[] key = new byte[2 + isbn.length];
+        key[0] = (byte) (year >>> 8);
+        key[1] = (byte) year;
+        System.arraycopy(isbn, 0, key, 2, isbn.length);
+        return key;
+    }
+
+    /**
+     * Builds a key of the author, title or genre index.
+     *
+     * @param value The author, title or genre.
+     * @param isbn  The ISBN, or nothing for the first key of the value.
+     * @return The value, a zero byte, and the ISBN.
+     */
+    private static byte[] fieldKey(String value, byte[] isbn) {
+        byte[] name = value.getBytes(StandardCharsets.UTF_8);
+        byte[] key = Arrays.copyOf(name, name.length + 1 + isbn.length);
+        System.arraycopy(isbn, 0, key, name.length + 1, isbn.length);
+        return key;
+    }
+
+    /**
+     * Gets the smallest key greater than every key starting with a prefix.
+     *
+     * @param prefix The prefix.
+     * @return The bound, or {@code null} if there is none.
+     */
+    private static byte[] successor(byte[] prefix) {
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xff) {
+                byte[] bound = Arrays.copyOf(prefix, i + 1);
+                bound[i]++;
+                return bound;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Encodes the bibliographic fields of a book, without its ISBN which is the key of the record.
+     *
+     * @param book The book.
+     * @return The record.
+     */
+    private static byte[] encode(Book<?> book) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(book.getTitle());
+            out.writeUTF(book.getAuthor());
+            out.writeUTF(book.getGenre());
+            out.writeUTF(book.getDescription());
+            out.writeUTF(book.getFormat());
+            out.writeUTF(book.getPublicationYear());
+            out.writeBoolean(book.isRentable());
+        } catch (IOException e) {
+            // writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the fields of a stored record.
+     *
+     * @param isbn   The ISBN of the record.
+     * @param record The record.
+     * @return The fields of the record.
+     * @throws InvalidInputInformation If the record is truncated.
+     */
+    private static CatalogRecord decode(String isbn, byte[] record) throws InvalidInputInformation {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            String title = in.readUTF();
+            String author = in.readUTF();
+            String genre = in.readUTF();
+            String description = in.readUTF();
+            String format = in.readUTF();
+            String year = in.readUTF();
+            return new CatalogRecord(isbn, title, author, genre, description, format, in.readBoolean(), year);
+        } catch (IOException e) {
+            throw new InvalidInputInformation("Stored record of " + isbn + " is truncated");
+        }
+    }
+
+    /**
+     * Performs an action on an entry of the primary index.
+     */
+    private interface EntryAction {
+        /**
+         * Performs the action.
+         *
+         * @param isbn   The key of the entry.
+         * @param record The fields of the record.
+         * @throws IOException If a file cannot be read or written.
+         */
+        void accept(byte[] isbn, CatalogRecord record) throws IOException;
+    }
+}
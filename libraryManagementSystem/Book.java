@@ -1,21 +1,28 @@
 package libraryManagementSystem;
 
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Represents a book in the library management system.
  * The book can be rented, returned, and renewed based on user rules.
+ * A book is a bibliographic record backed by a pool of identical physical copies;
+ * copies are checked out by atomically decrementing the number of available copies,
+ * and each copy's loan is an immutable {@link LoanState} swapped by compare-and-set,
+ * so renting, returning and renewing never block and never lose a request.
+ * The faculty, author, genre, format and publication year are stored as {@link StringDictionary} codes,
+ * since they repeat across the catalog. The book holds a reference on its author's code, given back when its library
+ * removes it, so the authors of books that are gone don't stay in the dictionary; a removed book has no author.
  *
  * @param <T> The type of the user interacting with the book (e.g., Student, Professor).
  */
 public class Book<T extends User> implements Rules {
-    private int nbTimesBorrowed = 0;
+    private final LongAdder nbTimesBorrowed = new LongAdder();
     private int renewalPeriodStudent;
     private int rentPeriodStudent;
     private int latePenaltyPeriodStudent;
@@ -23,24 +30,24 @@ public class Book<T extends User> implements Rules {
     private int rentPeriodProfessor;
     private int renewalPeriodProfessor;
     private int latePenaltyPeriodProfessor;
-    private int usedRenewalPass = 0;
     private int renewalPassedProfessor;
     private Admin admin;
-    private String faculty = ""; 
+    private int faculty = StringDictionary.FACULTIES.encode("");
+    private String library = "";
     private String title;
-    private String author;
-    private String genre;
+    private final AtomicInteger author = new AtomicInteger(StringDictionary.NULL);
+    private int genre;
     private String description;
     private String ISBN;
-    private String format;
+    private int format;
     private boolean rentable;
-    private String publicationYear;
-    private boolean available = true;
-    private Instant rentedTime;
-    private Instant returnTime;
-    private T user;
-    private final ReentrantLock lock = new ReentrantLock();
-    private ArrayList<T> waitlist = new ArrayList<>();
+    private int publicationYear;
+    private final CopyOnWriteArrayList<BookCopy<T>> copies = new CopyOnWriteArrayList<>();
+    private final AtomicInteger availableCopies = new AtomicInteger(0);
+    private final Waitlist<T> waitlist = new Waitlist<>(2, 60);
+    private final CopyOnWriteArrayList<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+    // dropped from the cache of a library, which reads the book again from its store when it is next found
+    private volatile boolean detached;
 
     /**
      * Constructs a new Book object with the specified details.
@@ -61,9 +68,7 @@ public class Book<T extends User> implements Rules {
         } else {
             throw new InvalidInputInformation("Title input incorrect (ex: To Kill a Mockingbird)");
         }
-        if (author.matches("[a-zA-Z.,\\-\\s]+")) {
-            this.setAuthor(author);
-        } else {
+        if (!author.matches("[a-zA-Z.,\\-\\s]+")) {
             throw new InvalidInputInformation("Author input incorrect (ex: Harper Lee)");
         }
         if (genre.matches("[a-zA-Z\\s]+")) {
@@ -91,46 +96,45 @@ public class Book<T extends User> implements Rules {
         } else {
             throw new InvalidInputInformation("Publication year input incorrect (ex: 1960)");
         }
+        // encoded once every input is valid, so an invalid book never takes a reference on its author
+        this.setAuthor(author);
         this.setRentable(rentable);
+        this.copies.add(new BookCopy<>(1));
+        this.availableCopies.set(1);
     }
 
     /**
      * Allows a user to rent the book if eligible.
+     * A free copy is reserved with a compare-and-set on the number of available copies,
+     * so concurrent renters of the same title never block each other. A renter who finds
+     * no free copy always joins the waitlist.
      *
      * @param user The user renting the book.
      * @throws UnauthorizedUserAction If the user is not authorized to rent the book.
      */
     public void rentBook(T user) throws UnauthorizedUserAction {
-        if (user.getFaculty() != this.getFaculty()) {
+        if (user.getFacultyCode() != this.getFacultyCode()) {
             throw new UnauthorizedUserAction("Please rent books from your library");
         }
         if (user.getClass().getSimpleName() == "Admin") {
             throw new UnauthorizedUserAction("Admins can't rent books from libraries");
         }
+        if (this.detached) {
+            throw new UnauthorizedUserAction("This book is no longer loaded in its library, please find it again");
+        }
         if (user.isBlacklisted()) {
             System.out.println("You are blacklisted! Next time return your book on time.");
         } else if (this.rentable) {
-            if (this.lock.tryLock()) {
-                try {
-                    if (this.available) {
-                        this.available = false;
-                        this.user = user;
-                        this.user.addBorrowedBooks(this.title);
-                        this.nbTimesBorrowed++;
-                        this.rentedTime = Instant.now();
-                        if (user.getClass().getSimpleName() == "Student") {
-                            this.returnTime = this.rentedTime.plus(this.getRentPeriodStudent(), ChronoUnit.SECONDS);
-                        } else {
-                            this.returnTime = this.rentedTime.plus(this.getRentPeriodProfessor(), ChronoUnit.SECONDS);
-                        }
-                        System.out.println("You have successfully rented " + this.title + " and have till " + this.returnTime + " to return the book.");
-                    } else {
-                        System.out.println("Sorry, this book is currently being rented. You have joined the waitlist.");
-                        this.addToWaitlist(user);
-                    }
-                } finally {
-                    lock.unlock();
-                }
+            BookCopy<T> copy = this.checkOutCopy(user);
+            if (copy != null) {
+                System.out.println("You have successfully rented " + this.title + " and have till " + copy.getReturnedTime() + " to return the book.");
+            } else if (this.detached) {
+                throw new UnauthorizedUserAction("This book is no longer loaded in its library, please find it again");
+            } else {
+                System.out.println("Sorry, this book is currently being rented. You have joined the waitlist.");
+                this.addToWaitlist(user);
+                // a copy may have been returned before the user was queued
+                this.serveWaitlist();
             }
         } else {
             System.out.println("This book is not for rent");
@@ -139,45 +143,40 @@ public class Book<T extends User> implements Rules {
 
     /**
      * Allows the user to return the book.
+     * The copy goes straight to the next user on the waitlist, if any.
      *
      * @param user The user returning the book.
      * @throws UnauthorizedUserAction If the user is not authorized to return the book.
      */
     public void returnBook(T user) throws UnauthorizedUserAction {
-        if (this.user != user) {
-            throw new UnauthorizedUserAction("You cannot return the book on behalf of someone.");
-        } else {
-            Instant time = Instant.now();
-            this.user.addReturnedBooks(this.title);
-            if (time.isAfter(this.returnTime)) {
-                int returnPenalty;
-                if (user.getClass().getSimpleName().equalsIgnoreCase("Student")) {
-                    returnPenalty = this.latePenaltyPeriodStudent;
-                } else {
-                    returnPenalty = this.latePenaltyPeriodProfessor;
-                }
-                System.out.println("You have returned the book late. You must wait " + returnPenalty + " seconds before renting another book.");
-                user.setBlacklisted(true);
-                ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-                scheduler.schedule(() -> {
-                    user.setBlacklisted(false);
-                    scheduler.shutdown();
-                }, returnPenalty, TimeUnit.SECONDS);
-            } else {
-                System.out.println("You have successfully returned " + this.title + " on time.");
+        BookCopy<T> copy;
+        LoanState<T> loan;
+        do {
+            copy = this.findCopy(user);
+            if (copy == null) {
+                throw new UnauthorizedUserAction("You cannot return the book on behalf of someone.");
             }
-            this.user = null;
-            this.usedRenewalPass = 0;
-        }
+            loan = copy.getState();
+        } while (loan.getUser() != user || !copy.compareAndSet(loan, LoanState.available()));
+        this.releaseCopy();
+        EventJournal.record(JournalEvent.Type.RETURN, this.library, this.ISBN, String.valueOf(copy.getCopyNumber()), user.getEmail());
 
-        if (!this.waitlist.isEmpty()) {
-            this.user = this.waitlist.get(0);
-            this.waitlist.remove(this.user);
-            this.rentedTime = Instant.now();
-            this.returnTime = this.rentedTime.plus(10, ChronoUnit.SECONDS);
+        user.addReturnedBooks(this.title);
+        if (loan.getReturnedTime() != null && Instant.now().isAfter(loan.getReturnedTime())) {
+            int returnPenalty;
+            if (user.getClass().getSimpleName().equalsIgnoreCase("Student")) {
+                returnPenalty = this.latePenaltyPeriodStudent;
+            } else {
+                returnPenalty = this.latePenaltyPeriodProfessor;
+            }
+            System.out.println("You have returned the book late. You must wait " + returnPenalty + " seconds before renting another book.");
+            user.setBlacklisted(true);
+            ExpirationService.getInstance().schedule(() -> user.setBlacklisted(false), returnPenalty, TimeUnit.SECONDS);
+            EventJournal.record(JournalEvent.Type.BLACKLIST, user.getEmail(), String.valueOf(Instant.now().plusSeconds(returnPenalty).toEpochMilli()));
         } else {
-            this.available = true;
+            System.out.println("You have successfully returned " + this.title + " on time.");
         }
+        this.serveWaitlist();
     }
 
     /**
@@ -187,37 +186,421 @@ public class Book<T extends User> implements Rules {
      * @throws UnauthorizedUserAction If the user is not authorized to renew the rental.
      */
     public void renewRental(T user) throws UnauthorizedUserAction {
-        if (this.user != user) {
-            throw new UnauthorizedUserAction("You cannot renew book rent period on behalf of someone.");
-        }
+        int renewalPassed;
+        int renewalPeriod;
         if (user.getClass().getSimpleName().equalsIgnoreCase("Student")) {
-            if (this.usedRenewalPass < this.renewalPassedStudent) {
-                this.returnTime = this.returnTime.plus(this.renewalPeriodStudent, ChronoUnit.SECONDS);
-                System.out.println("Return date extended, you have till " + this.returnTime + " to return the book.");
-                this.usedRenewalPass++;
-            } else {
+            renewalPassed = this.renewalPassedStudent;
+            renewalPeriod = this.renewalPeriodStudent;
+        } else {
+            renewalPassed = this.renewalPassedProfessor;
+            renewalPeriod = this.renewalPeriodProfessor;
+        }
+        BookCopy<T> copy;
+        LoanState<T> loan;
+        LoanState<T> renewed;
+        do {
+            copy = this.findCopy(user);
+            if (copy == null) {
+                throw new UnauthorizedUserAction("You cannot renew book rent period on behalf of someone.");
+            }
+            loan = copy.getState();
+            if (loan.getUser() == user && loan.getUsedRenewalPass() >= renewalPassed) {
                 System.out.println("Sorry, cannot renew your book rent period.");
+                return;
             }
-        } else {
-            if (this.usedRenewalPass < this.renewalPassedProfessor) {
-                this.returnTime = this.returnTime.plus(this.renewalPeriodProfessor, ChronoUnit.SECONDS);
-                System.out.println("Return date extended, you have till " + this.returnTime + " to return the book.");
-                this.usedRenewalPass++;
+            renewed = loan.renewed(renewalPeriod);
+        } while (loan.getUser() != user || !copy.compareAndSet(loan, renewed));
+        EventJournal.record(JournalEvent.Type.RENEW, this.library, this.ISBN, String.valueOf(copy.getCopyNumber()), user.getEmail(),
+                String.valueOf(renewed.getReturnedTime().toEpochMilli()), String.valueOf(renewed.getUsedRenewalPass()));
+        System.out.println("Return date extended, you have till " + renewed.getReturnedTime() + " to return the book.");
+    }
+
+    /**
+     * Hands free copies to users on the waitlist, in order, until either runs out.
+     */
+    private void serveWaitlist() {
+        while (!this.waitlist.isEmpty() && this.reserveCopy()) {
+            Waitlist.Entry<T> entry = this.waitlist.pollEntry();
+            if (entry == null) {
+                this.releaseCopy();
+                return;
+            }
+            T next = entry.getUser();
+            BookCopy<T> copy = this.claimCopy(next);
+            if (copy == null) {
+                // the copy was taken directly, so the user goes back to the head of the waitlist for the next one
+                this.waitlist.requeue(entry);
+                return;
+            }
+            System.out.println(next.getName() + " has been handed " + this.title + " from the waitlist and has till " + copy.getReturnedTime() + " to return the book.");
+        }
+    }
+
+    /**
+     * Reserves one of the available copies and claims it for a user with a new loan.
+     *
+     * @param user The user checking out a copy.
+     * @return The copy claimed for the user, or {@code null} if no copy is available.
+     */
+    private BookCopy<T> checkOutCopy(T user) {
+        return this.reserveCopy() ? this.claimCopy(user) : null;
+    }
+
+    /**
+     * Reserves one of the available copies by decrementing the number of available copies.
+     *
+     * @return {@code true} if a copy was reserved, {@code false} if no copy is available or the book was detached.
+     */
+    private boolean reserveCopy() {
+        int available;
+        do {
+            available = this.availableCopies.get();
+            if (available == 0 || this.detached) {
+                return false;
+            }
+        } while (!this.availableCopies.compareAndSet(available, available - 1));
+        if (this.detached) {
+            // detached while reserving: detach() either sees this copy taken and gives up, or this sees the flag
+            this.availableCopies.incrementAndGet();
+            return false;
+        }
+        if (available == 1) {
+            this.fireAvailabilityChanged();
+        }
+        return true;
+    }
+
+    /**
+     * Makes a copy that is no longer claimed available again by incrementing the number of available copies.
+     */
+    private void releaseCopy() {
+        if (this.availableCopies.incrementAndGet() == 1) {
+            this.fireAvailabilityChanged();
+        }
+    }
+
+    /**
+     * Notifies the listeners that a field the book may be indexed by is about to change.
+     */
+    private void fireChanging() {
+        for (CatalogListener listener : this.listeners) {
+            listener.bookChanging(this);
+        }
+    }
+
+    /**
+     * Notifies the listeners that a field the book may be indexed by has changed.
+     */
+    private void fireChanged() {
+        for (CatalogListener listener : this.listeners) {
+            listener.bookChanged(this);
+        }
+    }
+
+    /**
+     * Notifies the listeners that the book may have changed between having and not having an available copy.
+     */
+    private void fireAvailabilityChanged() {
+        for (CatalogListener listener : this.listeners) {
+            listener.availabilityChanged(this);
+        }
+    }
+
+    /**
+     * Claims a previously reserved copy for a user with a new loan.
+     * The reservation is given back if no free copy is found, as when a copy was taken outside of a reservation.
+     *
+     * @param user The user checking out the copy.
+     * @return The copy claimed for the user, or {@code null} if no copy is free.
+     */
+    private BookCopy<T> claimCopy(T user) {
+        int rentPeriod = user.getClass().getSimpleName().equals("Student") ? this.getRentPeriodStudent() : this.getRentPeriodProfessor();
+        LoanState<T> loan = LoanState.rented(user, Instant.now(), rentPeriod);
+        // the counter never exceeds the number of free copies, but a copy freed behind the scan is only seen on the next pass
+        for (int pass = 0; pass < 2; pass++) {
+            for (BookCopy<T> copy : this.copies) {
+                if (copy.claim(loan)) {
+                    EventJournal.record(JournalEvent.Type.RENT, this.library, this.ISBN, String.valueOf(copy.getCopyNumber()), user.getEmail(),
+                            String.valueOf(loan.getRentedTime().toEpochMilli()), String.valueOf(loan.getReturnedTime().toEpochMilli()));
+                    user.addBorrowedBooks(this.title);
+                    this.nbTimesBorrowed.increment();
+                    for (CatalogListener listener : this.listeners) {
+                        listener.bookBorrowed(this);
+                    }
+                    return copy;
+                }
+            }
+        }
+        this.releaseCopy();
+        return null;
+    }
+
+    /**
+     * Overrides the loan of a copy directly, keeping the number of available copies in step with it.
+     * A free copy is only handed out once one of the available copies is reserved for it, and is lent from now.
+     *
+     * @param copy The copy.
+     * @param user The user holding the copy, or {@code null} to make it available.
+     * @return {@code true} if the loan was overridden, {@code false} if every free copy is already promised to a renter.
+     */
+    private boolean overrideLoan(BookCopy<T> copy, T user) {
+        while (true) {
+            LoanState<T> current = copy.getState();
+            LoanState<T> next;
+            if (current.isAvailable() && user != null) {
+                // a free copy has no loan times, so it is lent for the user's usual rent period
+                int rentPeriod = user.getClass().getSimpleName().equals("Student") ? this.getRentPeriodStudent() : this.getRentPeriodProfessor();
+                next = LoanState.rented(user, Instant.now(), rentPeriod);
             } else {
-                System.out.println("Sorry, cannot renew your book rent period.");
+                next = current.withUser(user);
+            }
+            if (current.isAvailable() && !next.isAvailable()) {
+                if (!this.reserveCopy()) {
+                    return false;
+                }
+                if (copy.compareAndSet(current, next)) {
+                    return true;
+                }
+                this.releaseCopy();
+            } else if (copy.compareAndSet(current, next)) {
+                if (!current.isAvailable() && next.isAvailable()) {
+                    this.releaseCopy();
+                }
+                return true;
             }
         }
     }
 
+    /**
+     * Restores a loan recorded in the journal or in a snapshot.
+     *
+     * @param copyNumber      The number of the copy.
+     * @param user            The user holding the copy.
+     * @param rentedTime      The time the copy was rented.
+     * @param returnTime      The time the copy is due.
+     * @param usedRenewalPass The number of renewals used.
+     * @param borrowed        Whether to count the loan as a new borrow, as when replaying the rent itself.
+     * @return {@code true} if the loan was restored, {@code false} if the book has no such copy.
+     */
+    boolean restoreLoan(int copyNumber, T user, Instant rentedTime, Instant returnTime, int usedRenewalPass, boolean borrowed) {
+        if (copyNumber < 1 || copyNumber > this.copies.size()) {
+            return false;
+        }
+        BookCopy<T> copy = this.copies.get(copyNumber - 1);
+        LoanState<T> loan = LoanState.rented(user, rentedTime, 0).withReturnTime(returnTime).withUsedRenewalPass(usedRenewalPass);
+        while (true) {
+            LoanState<T> current = copy.getState();
+            if (current.isAvailable()) {
+                if (!this.reserveCopy()) {
+                    return false;
+                }
+                if (copy.compareAndSet(current, loan)) {
+                    break;
+                }
+                this.releaseCopy();
+            } else if (copy.compareAndSet(current, loan)) {
+                break;
+            }
+        }
+        if (borrowed) {
+            user.addBorrowedBooks(this.title);
+            this.restoreBorrows(1);
+        }
+        return true;
+    }
+
+    /**
+     * Detaches a book that a library drops from its cache of books loaded from its catalog store,
+     * so the book can no longer be rented and the library hands out the book read again from its store instead.
+     * A book is only detached while none of its copies is lent.
+     *
+     * @return {@code true} if the book was detached, {@code false} if a copy is lent.
+     */
+    boolean detach() {
+        this.detached = true;
+        if (this.availableCopies.get() != this.copies.size()) {
+            this.detached = false;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the book was dropped from the cache of books its library loaded from its catalog store.
+     *
+     * @return {@code true} if the book was detached, {@code false} otherwise.
+     */
+    boolean isDetached() {
+        return detached;
+    }
+
+    /**
+     * Restores borrows recorded in the journal or in a snapshot.
+     *
+     * @param count The number of borrows to add to the borrow count.
+     */
+    void restoreBorrows(long count) {
+        if (count > 0) {
+            this.nbTimesBorrowed.add(count);
+            for (CatalogListener listener : this.listeners) {
+                listener.bookBorrowed(this);
+            }
+        }
+    }
+
+    /**
+     * Restores a renewal recorded in the journal.
+     *
+     * @param copyNumber      The number of the copy.
+     * @param user            The user holding the copy.
+     * @param returnTime      The new time the copy is due.
+     * @param usedRenewalPass The number of renewals used.
+     * @return {@code true} if the renewal was restored, {@code false} if the user does not hold the copy.
+     */
+    boolean restoreRenewal(int copyNumber, T user, Instant returnTime, int usedRenewalPass) {
+        if (copyNumber < 1 || copyNumber > this.copies.size()) {
+            return false;
+        }
+        BookCopy<T> copy = this.copies.get(copyNumber - 1);
+        LoanState<T> loan;
+        do {
+            loan = copy.getState();
+            if (loan.getUser() != user) {
+                return false;
+            }
+        } while (!copy.compareAndSet(loan, loan.withReturnTime(returnTime).withUsedRenewalPass(usedRenewalPass)));
+        return true;
+    }
+
+    /**
+     * Restores a return recorded in the journal.
+     *
+     * @param copyNumber The number of the copy.
+     * @param user       The user who held the copy.
+     * @return {@code true} if the return was restored, {@code false} if the user does not hold the copy.
+     */
+    boolean restoreReturn(int copyNumber, T user) {
+        if (copyNumber < 1 || copyNumber > this.copies.size()) {
+            return false;
+        }
+        BookCopy<T> copy = this.copies.get(copyNumber - 1);
+        LoanState<T> loan;
+        do {
+            loan = copy.getState();
+            if (loan.getUser() != user) {
+                return false;
+            }
+        } while (!copy.compareAndSet(loan, LoanState.available()));
+        user.addReturnedBooks(this.title);
+        this.releaseCopy();
+        return true;
+    }
+
+    /**
+     * Finds the copy currently held by a user.
+     *
+     * @param user The user holding the copy.
+     * @return The copy held by the user, or {@code null} if the user has no copy of this book.
+     */
+    private BookCopy<T> findCopy(T user) {
+        for (BookCopy<T> copy : this.copies) {
+            if (copy.getUser() == user) {
+                return copy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds identical physical copies of the book.
+     *
+     * @param admin  The admin making the change.
+     * @param number The number of copies to add.
+     * @throws UnauthorizedUserAction If the admin is not authorized to modify this book.
+     */
+    public void addCopies(Admin admin, int number) throws UnauthorizedUserAction {
+        if (admin == this.admin) {
+            for (int i = 0; i < number; i++) {
+                this.copies.add(new BookCopy<>(this.copies.size() + 1));
+                this.releaseCopy();
+            }
+        } else {
+            throw new UnauthorizedUserAction("You are not the admin of this library");
+        }
+    }
+
+    /**
+     * Gets the physical copies of the book.
+     *
+     * @return An unmodifiable view of the copies of the book.
+     */
+    public List<BookCopy<T>> getCopies() {
+        return Collections.unmodifiableList(this.copies);
+    }
+
+    /**
+     * Gets the total number of physical copies of the book.
+     *
+     * @return The number of copies.
+     */
+    public int getTotalCopies() {
+        return this.copies.size();
+    }
+
+    /**
+     * Gets the number of copies that are currently available for rent.
+     *
+     * @return The number of available copies.
+     */
+    public int getAvailableCopies() {
+        return this.availableCopies.get();
+    }
+
     /**
      * Adds the user to the waitlist for the book.
+     * Professors are served ahead of students, but a student who has waited one aging period
+     * longer than a professor is served first.
      *
      * @param user The user to be added to the waitlist.
      */
     public void addToWaitlist(T user) {
-        this.waitlist.add(user);
+        this.waitlist.add(user, user.getClass().getSimpleName().equals("Professor") ? 0 : 1);
     }
-	
+
+    /**
+     * Gets the position of a user in the waitlist for the book.
+     *
+     * @param user The user to look up.
+     * @return The position of the user, starting at 1 for the next user served, or 0 if the user is not waiting.
+     */
+    public long getWaitlistPosition(T user) {
+        return this.waitlist.position(user);
+    }
+
+    /**
+     * Gets the waiting time after which a student on the waitlist is served ahead of a newly arrived professor.
+     *
+     * @return The waitlist aging period in seconds.
+     */
+    public int getWaitlistAgingPeriod() {
+        return this.waitlist.getAgingPeriod();
+    }
+
+    /**
+     * Sets the waiting time after which a student on the waitlist is served ahead of a newly arrived professor.
+     *
+     * @param admin       The admin making the change.
+     * @param agingPeriod The new waitlist aging period in seconds.
+     * @throws UnauthorizedUserAction If the admin is not authorized to modify this setting.
+     */
+    public void setWaitlistAgingPeriod(Admin admin, int agingPeriod) throws UnauthorizedUserAction {
+        if (admin == this.admin) {
+            this.waitlist.setAgingPeriod(agingPeriod);
+        } else {
+            throw new UnauthorizedUserAction("You are not the admin of this library");
+        }
+    }
+
     /**
      * Gets the title of the book.
      *
@@ -233,7 +616,9 @@ public class Book<T extends User> implements Rules {
      * @param title The title of the book.
      */
     public void setTitle(String title) {
+        this.fireChanging();
         this.title = title;
+        this.fireChanged();
     }
 
     /**
@@ -242,7 +627,16 @@ public class Book<T extends User> implements Rules {
      * @return The author of the book.
      */
     public String getAuthor() {
-        return author;
+        return StringDictionary.AUTHORS.decode(this.author.get());
+    }
+
+    /**
+     * Gets the dictionary code of the author of the book.
+     *
+     * @return The code of the author in {@link StringDictionary#AUTHORS}.
+     */
+    public int getAuthorCode() {
+        return this.author.get();
     }
 
     /**
@@ -251,7 +645,13 @@ public class Book<T extends User> implements Rules {
      * @param author The author of the book.
      */
     public void setAuthor(String author) {
-        this.author = author;
+        int code = StringDictionary.AUTHORS.encode(author);
+        this.fireChanging();
+        // swapped atomically, so books changed at the same time each give back a different code
+        int previous = this.author.getAndSet(code);
+        this.fireChanged();
+        // given back once the listeners moved the book, so they never hold a code that was reused
+        StringDictionary.AUTHORS.release(previous);
     }
 
     /**
@@ -260,6 +660,15 @@ public class Book<T extends User> implements Rules {
      * @return The genre of the book.
      */
     public String getGenre() {
+        return StringDictionary.GENRES.decode(genre);
+    }
+
+    /**
+     * Gets the dictionary code of the genre of the book.
+     *
+     * @return The code of the genre in {@link StringDictionary#GENRES}.
+     */
+    public int getGenreCode() {
         return genre;
     }
 
@@ -269,7 +678,9 @@ public class Book<T extends User> implements Rules {
      * @param genre The genre of the book.
      */
     public void setGenre(String genre) {
-        this.genre = genre;
+        this.fireChanging();
+        this.genre = StringDictionary.GENRES.encode(genre);
+        this.fireChanged();
     }
 
     /**
@@ -287,7 +698,9 @@ public class Book<T extends User> implements Rules {
      * @param description A short description of the book.
      */
     public void setDescription(String description) {
+        this.fireChanging();
         this.description = description;
+        this.fireChanged();
     }
 
     /**
@@ -305,7 +718,9 @@ public class Book<T extends User> implements Rules {
      * @param iSBN The ISBN of the book.
      */
     public void setISBN(String iSBN) {
+        this.fireChanging();
         this.ISBN = iSBN;
+        this.fireChanged();
     }
 
     /**
@@ -323,7 +738,9 @@ public class Book<T extends User> implements Rules {
      * @param rentable {@code true} if the book is rentable, {@code false} otherwise.
      */
     public void setRentable(boolean rentable) {
+        this.fireChanging();
         this.rentable = rentable;
+        this.fireChanged();
     }
 
     /**
@@ -332,6 +749,15 @@ public class Book<T extends User> implements Rules {
      * @return The format of the book.
      */
     public String getFormat() {
+        return StringDictionary.FORMATS.decode(format);
+    }
+
+    /**
+     * Gets the dictionary code of the format of the book.
+     *
+     * @return The code of the format in {@link StringDictionary#FORMATS}.
+     */
+    public int getFormatCode() {
         return format;
     }
 
@@ -341,61 +767,71 @@ public class Book<T extends User> implements Rules {
      * @param format The format of the book (e.g., "physical" or "ebook").
      */
     public void setFormat(String format) {
-        this.format = format;
+        this.fireChanging();
+        this.format = StringDictionary.FORMATS.encode(format);
+        this.fireChanged();
     }
 
     /**
-     * Checks if the book is currently available.
+     * Checks if at least one copy of the book is currently available.
      *
      * @return {@code true} if the book is available, {@code false} otherwise.
      */
     public boolean isAvailable() {
-        return available;
+        return this.availableCopies.get() > 0;
     }
 
     /**
-     * Sets the availability of the book.
+     * Sets the availability of the first copy of the book.
+     * Making the copy available ends its current loan and hands a copy to the waitlist; a copy only becomes unavailable
+     * when it is rented, so it is taken with {@link #setUser} or {@link #rentBook} instead.
      *
-     * @param available {@code true} if the book is available, {@code false} otherwise.
+     * @param available {@code true} if the copy is available, {@code false} otherwise.
+     * @throws InvalidInputInformation If {@code available} is {@code false}.
      */
-    public void setAvailable(boolean available) {
-        this.available = available;
+    public void setAvailable(boolean available) throws InvalidInputInformation {
+        if (!available) {
+            throw new InvalidInputInformation("A copy only becomes unavailable when it is rented, set its user instead.");
+        }
+        if (this.overrideLoan(this.copies.get(0), null)) {
+            this.serveWaitlist();
+        }
     }
 
     /**
-     * Gets the time when the book was rented.
+     * Gets the time when the first copy of the book was rented.
      *
      * @return The {@link Instant} representing the rental time.
      */
     public Instant getRentedTime() {
-        return rentedTime;
+        return this.copies.get(0).getRentedTime();
     }
 
     /**
-     * Sets the time when the book was rented.
+     * Sets the time when the first copy of the book was rented.
      *
      * @param rentedTime The {@link Instant} representing the rental time.
      */
     public void setRentedTime(Instant rentedTime) {
-        this.rentedTime = rentedTime;
+        this.copies.get(0).setRentedTime(rentedTime);
     }
 
     /**
-     * Gets the time when the book is expected to be returned.
+     * Gets the time when the first copy of the book is expected to be returned.
      *
      * @return The {@link Instant} representing the return time.
      */
     public Instant getReturnedTime() {
-        return returnTime;
+        return this.copies.get(0).getReturnedTime();
     }
 
     /**
-     * Sets the time when the book is expected to be returned.
+     * Sets the time when the first copy of the book is expected to be returned.
      *
      * @param returnTime The {@link Instant} representing the return time.
      */
     public void setReturnedTime(Instant returnTime) {
-        this.returnTime = returnTime;
+        this.copies.get(0).setReturnedTime(returnTime);
     }
 
     /**
@@ -404,7 +840,7 @@ public class Book<T extends User> implements Rules {
      * @return The publication year of the book as a string.
      */
     public String getPublicationYear() {
-        return publicationYear;
+        return StringDictionary.YEARS.decode(publicationYear);
     }
 
     /**
@@ -413,25 +849,28 @@ public class Book<T extends User> implements Rules {
      * @param publicationYear The publication year of the book as a string.
      */
     public void setPublicationYear(String publicationYear) {
-        this.publicationYear = publicationYear;
+        this.fireChanging();
+        this.publicationYear = StringDictionary.YEARS.encode(publicationYear);
+        this.fireChanged();
     }
 
     /**
-     * Gets the user who currently has the book.
+     * Gets the user who currently has the first copy of the book.
      *
      * @return The user who currently has the book.
      */
     public T getUser() {
-        return user;
+        return this.copies.get(0).getUser();
     }
 
     /**
-     * Sets the user who currently has the book.
+     * Sets the user who currently has the first copy of the book.
+     * A free first copy is only handed over if it isn't already promised to a renter.
      *
      * @param user The user who currently has the book.
      */
     public void setUser(T user) {
-        this.user = user;
+        this.overrideLoan(this.copies.get(0), user);
     }
 	
     /**
@@ -647,10 +1086,10 @@ public class Book<T extends User> implements Rules {
      */
     @Override
     public String toString() {
-        return "Book Information: \nTitle: " + this.title + "\nAuthor: " + this.author + "\nGenre: " + this.genre +
-               "\nDescription: " + this.description + "\nYear Published: " + this.publicationYear +
-               "\nISBN number: " + this.ISBN + "\nFormat: " + this.format + "\nRentable: " + this.rentable +
-               "\nAvailable: " + this.available;
+        return "Book Information: \nTitle: " + this.title + "\nAuthor: " + this.getAuthor() + "\nGenre: " + this.getGenre() +
+               "\nDescription: " + this.description + "\nYear Published: " + this.getPublicationYear() +
+               "\nISBN number: " + this.ISBN + "\nFormat: " + this.getFormat() + "\nRentable: " + this.rentable +
+               "\nAvailable: " + this.isAvailable() + "\nCopies: " + this.getAvailableCopies() + "/" + this.getTotalCopies();
     }
 
     /**
@@ -659,6 +1098,15 @@ public class Book<T extends User> implements Rules {
      * @return The faculty name.
      */
     public String getFaculty() {
+        return StringDictionary.FACULTIES.decode(faculty);
+    }
+
+    /**
+     * Gets the dictionary code of the faculty associated with the book.
+     *
+     * @return The code of the faculty in {@link StringDictionary#FACULTIES}.
+     */
+    public int getFacultyCode() {
         return faculty;
     }
 
@@ -668,7 +1116,25 @@ public class Book<T extends User> implements Rules {
      * @param faculty The name of the faculty.
      */
     public void setFaculty(String faculty) {
-        this.faculty = faculty;
+        this.faculty = StringDictionary.FACULTIES.encode(faculty);
+    }
+
+    /**
+     * Gets the journal key of the library holding the book.
+     *
+     * @return The key of the library, as given by {@link Library#getJournalKey()}.
+     */
+    String getLibrary() {
+        return library;
+    }
+
+    /**
+     * Sets the journal key of the library holding the book.
+     *
+     * @param library The key of the library.
+     */
+    void setLibrary(String library) {
+        this.library = library;
     }
 
     /**
@@ -690,21 +1156,21 @@ public class Book<T extends User> implements Rules {
     }
 
     /**
-     * Gets the number of times the book's rental period has been renewed.
+     * Gets the number of times the rental period of the first copy has been renewed.
      *
      * @return The number of renewal passes used.
      */
     public int getUsedRenewalPass() {
-        return usedRenewalPass;
+        return this.copies.get(0).getUsedRenewalPass();
     }
 
     /**
-     * Sets the number of times the book's rental period has been renewed.
+     * Sets the number of times the rental period of the first copy has been renewed.
      *
      * @param usedRenewalPass The number of renewal passes used.
      */
     public void setUsedRenewalPass(int usedRenewalPass) {
-        this.usedRenewalPass = usedRenewalPass;
+        this.copies.get(0).setUsedRenewalPass(usedRenewalPass);
     }
 
     /**
@@ -713,16 +1179,46 @@ public class Book<T extends User> implements Rules {
      * @return The total number of times the book has been borrowed.
      */
     public int getNbTimesBorrowed() {
-        return nbTimesBorrowed;
+        return nbTimesBorrowed.intValue();
     }
 
     /**
-     * Sets the number of times the book has been borrowed.
+     * Sets the number of times the book has been borrowed, notifying the listeners as the count may go down.
+     * The difference is added rather than the counter reset, so a borrow made meanwhile is not lost.
      *
      * @param nbTimesBorrowed The total number of times the book has been borrowed.
      */
     public void setNbTimesBorrowed(int nbTimesBorrowed) {
-        this.nbTimesBorrowed = nbTimesBorrowed;
+        synchronized (this.nbTimesBorrowed) {
+            this.fireChanging();
+            this.nbTimesBorrowed.add(nbTimesBorrowed - this.nbTimesBorrowed.sum());
+            this.fireChanged();
+        }
+    }
+
+    /**
+     * Registers a listener to be notified of changes to this book.
+     *
+     * @param listener The listener to register.
+     */
+    public void addCatalogListener(CatalogListener listener) {
+        this.listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Unregisters a listener from this book.
+     *
+     * @param listener The listener to unregister.
+     */
+    public void removeCatalogListener(CatalogListener listener) {
+        this.listeners.remove(listener);
     }
 	
+    /**
+     * Gives back the reference of the book on the code of its author, once the book is removed from its library
+     * or was only read to be dropped. The book has no author afterwards; giving it back again does nothing.
+     */
+    void releaseAuthor() {
+        StringDictionary.AUTHORS.release(this.author.getAndSet(StringDictionary.NULL));
+    }
 }
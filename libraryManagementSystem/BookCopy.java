@@ -0,0 +1,163 @@
+package libraryManagementSystem;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Represents one physical copy of a book.
+ * All copies of a title share the bibliographic record held by {@link Book};
+ * each copy only tracks its own loan as an immutable {@link LoanState} swapped by compare-and-set.
+ * Only its book changes the loan of a copy, so the counts of available copies the book keeps stay right.
+ *
+ * @param <T> The type of the user interacting with the copy (e.g., Student, Professor).
+ */
+public class BookCopy<T extends User> {
+    private final int copyNumber;
+    private final AtomicReference<LoanState<T>> state = new AtomicReference<>(LoanState.available());
+
+    /**
+     * Constructs a new copy that is not rented by anyone.
+     *
+     * @param copyNumber The number of the copy within its book.
+     */
+    BookCopy(int copyNumber) {
+        this.copyNumber = copyNumber;
+    }
+
+    /**
+     * Claims the copy with a new loan if nobody currently has it.
+     *
+     * @param loan The state of the new loan.
+     * @return {@code true} if the copy was claimed, {@code false} if someone else has it.
+     */
+    boolean claim(LoanState<T> loan) {
+        LoanState<T> current;
+        do {
+            current = this.state.get();
+            if (!current.isAvailable()) {
+                return false;
+            }
+        } while (!this.state.compareAndSet(current, loan));
+        return true;
+    }
+
+    /**
+     * Atomically replaces the loan state if it has not changed since it was read.
+     *
+     * @param expected The state that was read.
+     * @param next     The new state.
+     * @return {@code true} if the state was replaced, {@code false} if another transition happened first.
+     */
+    boolean compareAndSet(LoanState<T> expected, LoanState<T> next) {
+        return this.state.compareAndSet(expected, next);
+    }
+
+    /**
+     * Gets the current loan state of the copy.
+     *
+     * @return The current loan state.
+     */
+    public LoanState<T> getState() {
+        return this.state.get();
+    }
+
+    /**
+     * Gets the number of the copy within its book.
+     *
+     * @return The copy number.
+     */
+    public int getCopyNumber() {
+        return copyNumber;
+    }
+
+    /**
+     * Checks if the copy is currently available.
+     *
+     * @return {@code true} if nobody has the copy, {@code false} otherwise.
+     */
+    public boolean isAvailable() {
+        return this.state.get().isAvailable();
+    }
+
+    /**
+     * Gets the user who currently has the copy.
+     *
+     * @return The user who has the copy, or {@code null} if it is available.
+     */
+    public T getUser() {
+        return this.state.get().getUser();
+    }
+
+    /**
+     * Sets the user who currently has the copy.
+     *
+     * @param user The user who has the copy, or {@code null} to make it available.
+     */
+    void setUser(T user) {
+        this.state.updateAndGet(loan -> loan.withUser(user));
+    }
+
+    /**
+     * Gets the time when the copy was rented.
+     *
+     * @return The {@link Instant} representing the rental time.
+     */
+    public Instant getRentedTime() {
+        return this.state.get().getRentedTime();
+    }
+
+    /**
+     * Sets the time when the copy was rented.
+     *
+     * @param rentedTime The {@link Instant} representing the rental time.
+     */
+    void setRentedTime(Instant rentedTime) {
+        this.update(loan -> loan.withRentedTime(rentedTime));
+    }
+
+    /**
+     * Gets the time when the copy is expected to be returned.
+     *
+     * @return The {@link Instant} representing the return time.
+     */
+    public Instant getReturnedTime() {
+        return this.state.get().getReturnedTime();
+    }
+
+    /**
+     * Sets the time when the copy is expected to be returned.
+     *
+     * @param returnTime The {@link Instant} representing the return time.
+     */
+    void setReturnedTime(Instant returnTime) {
+        this.update(loan -> loan.withReturnTime(returnTime));
+    }
+
+    /**
+     * Gets the number of times the current loan has been renewed.
+     *
+     * @return The number of renewal passes used.
+     */
+    public int getUsedRenewalPass() {
+        return this.state.get().getUsedRenewalPass();
+    }
+
+    /**
+     * Sets the number of times the current loan has been renewed.
+     *
+     * @param usedRenewalPass The number of renewal passes used.
+     */
+    void setUsedRenewalPass(int usedRenewalPass) {
+        this.update(loan -> loan.withUsedRenewalPass(usedRenewalPass));
+    }
+
+    /**
+     * Applies a change to the current loan, leaving an available copy untouched.
+     *
+     * @param change The change to apply to the loan state.
+     */
+    private void update(UnaryOperator<LoanState<T>> change) {
+        this.state.updateAndGet(loan -> loan.isAvailable() ? loan : change.apply(loan));
+    }
+}
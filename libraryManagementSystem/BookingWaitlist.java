@@ -0,0 +1,129 @@
+package libraryManagementSystem;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Queues the users waiting for a meeting room or an electronic device that is in use, and books it for them in turn
+ * as soon as it is free, so users are notified through a {@link CompletableFuture} instead of asking again and again.
+ * Users are served in the order of a {@link Waitlist}, professors first with students aging up like for books.
+ * A user keeps their place until the booking is made or refused.
+ * Bookings are handed over on the common fork-join pool rather than by the thread that freed the room or device,
+ * so the callbacks of a user never run on the expiration thread or while the room or device is locked.
+ *
+ * @param <T> The type of user waiting (e.g., Student, Professor).
+ * @param <R> The type of booking handed to the user.
+ */
+class BookingWaitlist<T extends User, R> {
+    private final Waitlist<T> waitlist = new Waitlist<>(2, 60);
+    private final ConcurrentHashMap<T, Request<R>> requests = new ConcurrentHashMap<>();
+
+    /**
+     * Books the room or device for a waiting user.
+     *
+     * @param <T> The type of user waiting.
+     * @param <R> The type of booking.
+     */
+    interface Attempt<T, R> {
+        /**
+         * Books the room or device for a user if it is free.
+         *
+         * @param user              The user.
+         * @param reservationPeriod The duration of the reservation in seconds.
+         * @return The booking, or {@code null} if the room or device is still in use.
+         * @throws UnauthorizedUserAction If the user may not book it.
+         * @throws InvalidInputInformation If the reservation period is not allowed.
+         */
+        R book(T user, int reservationPeriod) throws UnauthorizedUserAction, InvalidInputInformation;
+    }
+
+    /**
+     * The reservation period a user is waiting for and the booking promised to them.
+     */
+    private static final class Request<R> {
+        private final int reservationPeriod;
+        private final CompletableFuture<R> booking = new CompletableFuture<>();
+
+        private Request(int reservationPeriod) {
+            this.reservationPeriod = reservationPeriod;
+        }
+    }
+
+    /**
+     * Adds a user to the waitlist.
+     *
+     * @param user              The user joining the waitlist.
+     * @param reservationPeriod The duration of the reservation in seconds.
+     * @return The booking, completed once it is made or refused. A user already waiting gets their pending booking.
+     */
+    synchronized CompletableFuture<R> join(T user, int reservationPeriod) {
+        Request<R> waiting = this.requests.get(user);
+        if (waiting != null && !waiting.booking.isDone()) {
+            return waiting.booking;
+        }
+        Request<R> request = new Request<>(reservationPeriod);
+        this.requests.put(user, request);
+        // a user who cancelled and joins again before being dropped keeps their place
+        this.waitlist.add(user, user.getClass().getSimpleName().equals("Professor") ? 0 : 1);
+        return request.booking;
+    }
+
+    /**
+     * Books for the waiting users in turn until the room or device is in use again.
+     * The bookings are completed asynchronously, after the caller has released its locks.
+     *
+     * @param attempt Books the room or device for a user.
+     */
+    synchronized void serve(Attempt<T, R> attempt) {
+        T next;
+        while ((next = this.waitlist.peek()) != null) {
+            Request<R> request = this.requests.get(next);
+            // users who cancelled their booking are dropped
+            if (request == null || request.booking.isDone()) {
+                this.leave(next);
+                continue;
+            }
+            try {
+                R booking = attempt.book(next, request.reservationPeriod);
+                if (booking == null) {
+                    return;
+                }
+                this.leave(next);
+                request.booking.completeAsync(() -> booking);
+            } catch (UnauthorizedUserAction | InvalidInputInformation e) {
+                this.leave(next);
+                CompletableFuture.runAsync(() -> request.booking.completeExceptionally(e));
+            }
+        }
+    }
+
+    /**
+     * Removes a user from the waitlist.
+     *
+     * @param user The user leaving the waitlist.
+     * @return {@code true} if the user was waiting, {@code false} otherwise.
+     */
+    synchronized boolean leave(T user) {
+        this.requests.remove(user);
+        return this.waitlist.remove(user);
+    }
+
+    /**
+     * Gets the position of a user in the waitlist, counting from 1 for the next user served.
+     *
+     * @param user The user to look up.
+     * @return The position of the user, or 0 if the user is not waiting.
+     */
+    long position(T user) {
+        return this.waitlist.position(user);
+    }
+
+    /**
+     * Gets the number of users on the waitlist.
+     *
+     * @return The number of waiting users.
+     */
+    int size() {
+        return this.waitlist.size();
+    }
+}
@@ -0,0 +1,537 @@
+package libraryManagementSystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Measures the time of catalog lookups as the catalog grows, to check that it stays flat,
+ * and the time of the updates and queries of a {@link BTreeCatalogStore} as it grows, reopened cold and then warm.
+ * It also measures the heap taken by the dictionary-encoded attributes of the books against the strings they replace,
+ * the throughput of the {@link EventJournal} for several batch sizes, and the size and speed of the {@link CatalogCodec}
+ * against Java serialization of the same fields, the conflict checks of a room holding thousands of reservations,
+ * and the throughput of searches while the catalog is being edited.
+ * Run it with {@code java libraryManagementSystem.CatalogBenchmark}; each size is timed after a warm-up round.
+ */
+public class CatalogBenchmark {
+    private static final int[] SIZES = { 1000, 10000, 100000, 400000 };
+    private static final int LOOKUPS = 200000;
+    private static final int[] STORE_SIZES = { 1000, 10000, 100000 };
+    private static final int STORE_LOOKUPS = 20000;
+    private static final int STORE_QUERIES = 200;
+    private static final int[] FOOTPRINT_SIZES = { 10000, 100000 };
+    private static final int[] JOURNAL_BATCHES = { 1, 16, 256, 4096 };
+    private static final int JOURNAL_EVENTS = 200000;
+    private static final int CODEC_BOOKS = 100000;
+    private static final int[] ROOM_SIZES = { 1000, 10000, 100000 };
+    private static final int ROOM_CHECKS = 200000;
+    private static final int ROOM_SCANS = 2000;
+    private static final int EDITED_BOOKS = 100000;
+    private static final int SEARCHERS = 4;
+    private static final long EDIT_MILLIS = 2000;
+
+    /**
+     * Builds catalogs of growing size and prints the average time of each kind of lookup.
+     *
+     * @param args Not used.
+     * @throws InvalidInputInformation If a generated book is invalid.
+     * @throws UnauthorizedUserAction If the books can't be added to the library.
+     * @throws IOException If the files of the catalog store cannot be written.
+     * @throws InterruptedException If interrupted while waiting for the threads searching the catalog.
+     */
+    public static void main(String[] args) throws InvalidInputInformation, UnauthorizedUserAction, IOException, InterruptedException {
+        System.out.println("books\tISBN ns\tauthor ns\ttitle ns\tgenre ns");
+        for (int size : SIZES) {
+            Admin admin = new Admin("admin", "admin@mail.aub.edu", "96112345678", "Beirut", "Monday-Friday from 9-5");
+            Library library = new Library(admin);
+            library.addBooks(admin, books(size));
+            lookups(library, size);
+            long[] nanos = lookups(library, size);
+            System.out.println(size + "\t" + nanos[0] / LOOKUPS + "\t" + nanos[1] / LOOKUPS + "\t" + nanos[2] / LOOKUPS + "\t" + nanos[3] / LOOKUPS);
+        }
+        System.out.println();
+        System.out.println("stored\tstore ns\tflush ms\tpass\tread ns\tauthor us\tyears us\tprefix us\tmisses");
+        store(STORE_SIZES[0]);
+        for (int size : STORE_SIZES) {
+            long[] nanos = store(size);
+            for (int pass = 0; pass < 2; pass++) {
+                int at = 2 + 5 * pass;
+                System.out.println(size + "\t" + nanos[0] / size + "\t" + nanos[1] / 1000000 + "\t" + (pass == 0 ? "cold" : "warm")
+                        + "\t" + nanos[at] / STORE_LOOKUPS + "\t" + nanos[at + 1] / STORE_QUERIES / 1000 + "\t" + nanos[at + 2] / STORE_QUERIES / 1000
+                        + "\t" + nanos[at + 3] / STORE_QUERIES / 1000 + "\t" + nanos[at + 4]);
+            }
+        }
+        System.out.println();
+        System.out.println("books\tbook B\tattributes as strings B\tattributes as codes B");
+        footprint(FOOTPRINT_SIZES[0]);
+        for (int size : FOOTPRINT_SIZES) {
+            long[] bytes = footprint(size);
+            System.out.println(size + "\t" + bytes[0] / size + "\t" + bytes[1] / size + "\t" + bytes[2] / size);
+        }
+        System.out.println();
+        System.out.println("batch\tevents/s");
+        journal(JOURNAL_BATCHES[JOURNAL_BATCHES.length - 1]);
+        for (int batchSize : JOURNAL_BATCHES) {
+            long nanos = journal(batchSize);
+            System.out.println(batchSize + "\t" + JOURNAL_EVENTS * 1000000000L / nanos);
+        }
+        System.out.println();
+        System.out.println("format\tbytes/book\tencode ns/book\tdecode ns/book");
+        codec(CODEC_BOOKS);
+        long[] codec = codec(CODEC_BOOKS);
+        System.out.println("codec\t" + codec[0] / CODEC_BOOKS + "\t" + codec[1] / CODEC_BOOKS + "\t" + codec[2] / CODEC_BOOKS);
+        System.out.println("java\t" + codec[3] / CODEC_BOOKS + "\t" + codec[4] / CODEC_BOOKS + "\t" + codec[5] / CODEC_BOOKS);
+        System.out.println();
+        System.out.println("bookings\tcheck ns\tscan ns");
+        room(ROOM_SIZES[0]);
+        for (int size : ROOM_SIZES) {
+            long[] nanos = room(size);
+            System.out.println(size + "\t" + nanos[0] / ROOM_CHECKS + "\t" + nanos[1] / ROOM_SCANS);
+        }
+        System.out.println();
+        System.out.println("editing\tsearches/s\tedits/s");
+        edits(false);
+        for (boolean editing : new boolean[] { false, true }) {
+            long[] counts = edits(editing);
+            System.out.println(editing + "\t" + counts[0] * 1000 / EDIT_MILLIS + "\t" + counts[1] * 1000 / EDIT_MILLIS);
+        }
+    }
+
+    /**
+     * Counts the searches by ISBN and title that several threads complete in a fixed time,
+     * optionally while another thread keeps adding a new book and deleting the oldest added one.
+     *
+     * @param editing Whether the catalog is edited during the searches.
+     * @return The number of searches and of edits completed.
+     * @throws InvalidInputInformation If a generated book is invalid.
+     * @throws UnauthorizedUserAction If the books can't be added to the library.
+     * @throws InterruptedException If interrupted while waiting for the threads.
+     */
+    private static long[] edits(boolean editing) throws InvalidInputInformation, UnauthorizedUserAction, InterruptedException {
+        Admin admin = new Admin("admin", "admin@mail.aub.edu", "96112345678", "Beirut", "Monday-Friday from 9-5");
+        Library library = new Library(admin);
+        library.addBooks(admin, books(EDITED_BOOKS));
+        AtomicBoolean stopped = new AtomicBoolean();
+        LongAdder searches = new LongAdder();
+        AtomicLong edits = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < SEARCHERS; t++) {
+            long first = t;
+            threads.add(new Thread(() -> {
+                long seed = first;
+                while (!stopped.get()) {
+                    seed = seed * 6364136223846793005L + 1442695040888963407L;
+                    int book = (int) ((seed >>> 33) % EDITED_BOOKS);
+                    library.findBookbyISBN(String.valueOf(1000000 + book));
+                    library.findBookbyTitle("Title " + book);
+                    searches.add(2);
+                }
+            }));
+        }
+        if (editing) {
+            threads.add(new Thread(() -> {
+                ArrayDeque<Book<User>> added = new ArrayDeque<>();
+                try {
+                    for (int i = 0; !stopped.get(); i++) {
+                        Book<User> book = new Book<>("Edited " + i, "Editor", "Genre " + letters(i % 10), "An edited book", "Physical",
+                                String.valueOf(9000000 + i), true, "2000");
+                        library.addBook(admin, book);
+                        added.add(book);
+                        if (added.size() > 100) {
+                            library.deleteBook(admin, added.poll());
+                        }
+                        edits.incrementAndGet();
+                    }
+                } catch (InvalidInputInformation | UnauthorizedUserAction e) {
+                    System.out.println("The catalog could not be edited: " + e.getMessage());
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(EDIT_MILLIS);
+        stopped.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return new long[] { searches.sum(), edits.get() };
+    }
+
+    /**
+     * Fills the calendar of one room with half-hour reservations, one every hour, and times checking random
+     * twenty-minute periods for conflicts, against scanning every reservation as a list would.
+     * About five periods in six overlap a reservation.
+     *
+     * @param size The number of reservations.
+     * @return The total time of the calendar checks and of the scans, in nanoseconds.
+     * @throws InvalidInputInformation If a reservation overlaps another.
+     */
+    private static long[] room(int size) throws InvalidInputInformation {
+        long[] nanos = new long[2];
+        Student student = new Student("student", "student@mail.aub.edu", "96112345678", "Beirut", "202012345");
+        ReservationCalendar<Student> calendar = new ReservationCalendar<>();
+        Instant first = Instant.parse("2030-01-01T00:00:00Z");
+        for (int i = 0; i < size; i++) {
+            Instant start = first.plus(Duration.ofHours(i));
+            calendar.reserve(student, start, start.plus(Duration.ofMinutes(30)));
+        }
+        List<Reservation<Student>> reservations = calendar.getReservations(first, first.plus(Duration.ofHours(size)));
+        long free = 0;
+        long seed = 42;
+        long start = System.nanoTime();
+        for (int i = 0; i < ROOM_CHECKS; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            Instant from = first.plus(Duration.ofMinutes((seed >>> 33) % (60L * size)));
+            free += calendar.isFree(from, from.plus(Duration.ofMinutes(20))) ? 1 : 0;
+        }
+        nanos[0] = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < ROOM_SCANS; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            Instant from = first.plus(Duration.ofMinutes((seed >>> 33) % (60L * size)));
+            Instant to = from.plus(Duration.ofMinutes(20));
+            boolean conflict = false;
+            for (Reservation<Student> reservation : reservations) {
+                conflict |= reservation.getStart().isBefore(to) && from.isBefore(reservation.getEnd());
+            }
+            free += conflict ? 0 : 1;
+        }
+        nanos[1] = System.nanoTime() - start;
+        if (free == 0) {
+            System.out.println("No period was free");
+        }
+        return nanos;
+    }
+
+    /**
+     * Encodes and decodes a library with the catalog codec, then with Java serialization.
+     * The catalog classes are not serializable, so Java serialization writes the same fields as the codec for each book,
+     * and its decoding builds the books and adds them to a library as the codec does.
+     *
+     * @param size The number of books in the library.
+     * @return The size, encoding time and decoding time with the codec, then with Java serialization, in bytes and nanoseconds.
+     * @throws InvalidInputInformation If a generated or decoded book is invalid.
+     * @throws UnauthorizedUserAction If the books can't be added to the library.
+     * @throws IOException If Java serialization fails.
+     */
+    private static long[] codec(int size) throws InvalidInputInformation, UnauthorizedUserAction, IOException {
+        long[] results = new long[6];
+        Admin admin = new Admin("admin", "admin@mail.aub.edu", "96112345678", "Beirut", "Monday-Friday from 9-5");
+        Library library = new Library(admin);
+        library.addBooks(admin, books(size));
+        long start = System.nanoTime();
+        ByteBuffer buffer = CatalogCodec.encodeLibrary(library);
+        results[1] = System.nanoTime() - start;
+        results[0] = buffer.remaining();
+        start = System.nanoTime();
+        Library decoded = CatalogCodec.decodeLibrary(buffer);
+        results[2] = System.nanoTime() - start;
+        start = System.nanoTime();
+        ArrayList<Object[]> rows = new ArrayList<>(size);
+        for (Book<User> book : library.getBooks()) {
+            rows.add(new Object[] { book.getTitle(), book.getAuthor(), book.getGenre(), book.getDescription(), book.getFormat(),
+                    book.getISBN(), book.isRentable(), book.getPublicationYear(), new int[] { book.getRenewalPeriodStudent(),
+                    book.getRentPeriodStudent(), book.getLatePenaltyPeriodStudent(), book.getRenewalPassedStudent(),
+                    book.getRenewalPeriodProfessor(), book.getRentPeriodProfessor(), book.getLatePenaltyPeriodProfessor(),
+                    book.getRenewalPassedProfessor() }, book.getTotalCopies(), book.getNbTimesBorrowed() });
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(rows);
+        }
+        results[4] = System.nanoTime() - start;
+        results[3] = bytes.size();
+        start = System.nanoTime();
+        List<Book<User>> books = new ArrayList<>(size);
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            @SuppressWarnings("unchecked")
+            List<Object[]> read = (List<Object[]>) in.readObject();
+            for (Object[] row : read) {
+                Book<User> book = new Book<>((String) row[0], (String) row[1], (String) row[2], (String) row[3], (String) row[4],
+                        (String) row[5], (Boolean) row[6], (String) row[7]);
+                int[] rules = (int[]) row[8];
+                book.setRenewalPeriodStudent(null, rules[0]);
+                book.setRentPeriodStudent(null, rules[1]);
+                book.setLatePenaltyPeriodStudent(null, rules[2]);
+                book.setRenewalPassedStudent(null, rules[3]);
+                book.setRenewalPeriodProfessor(null, rules[4]);
+                book.setRentPeriodProfessor(null, rules[5]);
+                book.setLatePenaltyPeriodProfessor(null, rules[6]);
+                book.setRenewalPassedProfessor(null, rules[7]);
+                book.addCopies(null, (Integer) row[9] - 1);
+                book.restoreBorrows((Integer) row[10]);
+                books.add(book);
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+        Library deserialized = new Library(admin);
+        deserialized.addBooks(admin, books);
+        results[5] = System.nanoTime() - start;
+        if (decoded.getBooks().size() != size || deserialized.getBooks().size() != size) {
+            System.out.println("A decoded library is missing books");
+        }
+        return results;
+    }
+
+    /**
+     * Appends rent events to a journal in a temporary file and times how long they take to be durable.
+     * The flush interval is long enough that every write is started by a full batch; the writer then takes
+     * every event buffered meanwhile, so a batch size only sets how many events wake it.
+     *
+     * @param batchSize The number of events written per fsync.
+     * @return The time from the first append until every event is durable, in nanoseconds.
+     * @throws IOException If the journal cannot be written.
+     */
+    private static long journal(int batchSize) throws IOException {
+        Path file = Files.createTempFile("journal-benchmark", ".log");
+        try {
+            long start;
+            try (EventJournal journal = new EventJournal(file, batchSize, 1, TimeUnit.SECONDS)) {
+                start = System.nanoTime();
+                for (int i = 0; i < JOURNAL_EVENTS; i++) {
+                    journal.append(JournalEvent.Type.RENT, "Engineering#1", String.valueOf(1000000 + i), "1", "student@mail.aub.edu",
+                            String.valueOf(i), String.valueOf(i + 1000));
+                }
+                journal.sync();
+            }
+            return System.nanoTime() - start;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Measures the heap taken by books, and by their author, genre, format and publication year held as strings,
+     * as they were before dictionary encoding, against the same attributes held as dictionary codes.
+     * Each string is copied, as a string parsed from input would be, so equal values do not share their characters.
+     *
+     * @param size The number of books.
+     * @return The heap taken by the books, by their attributes as strings and by their attributes as codes, in bytes.
+     * @throws InvalidInputInformation If a generated book is invalid.
+     */
+    private static long[] footprint(int size) throws InvalidInputInformation {
+        long[] bytes = new long[3];
+        long before = usedHeap();
+        List<Book<User>> books = books(size);
+        long after = usedHeap();
+        bytes[0] = after - before;
+        before = after;
+        String[][] strings = new String[size][];
+        for (int i = 0; i < size; i++) {
+            Book<User> book = books.get(i);
+            strings[i] = new String[] { copy(book.getAuthor()), copy(book.getGenre()), copy(book.getFormat()), copy(book.getPublicationYear()) };
+        }
+        after = usedHeap();
+        bytes[1] = after - before;
+        before = after;
+        int[][] codes = new int[size][];
+        for (int i = 0; i < size; i++) {
+            codes[i] = new int[] { StringDictionary.AUTHORS.lookup(strings[i][0]), StringDictionary.GENRES.lookup(strings[i][1]),
+                    StringDictionary.FORMATS.lookup(strings[i][2]), StringDictionary.YEARS.lookup(strings[i][3]) };
+        }
+        after = usedHeap();
+        bytes[2] = after - before;
+        // keeps the books, strings and codes reachable until all of them were measured
+        if (books.size() + strings.length + codes.length != 3 * size) {
+            System.out.println("The footprint was measured on missing books");
+        }
+        return bytes;
+    }
+
+    /**
+     * Copies a string into new characters.
+     *
+     * @param value The string.
+     * @return An equal string that shares nothing with it.
+     */
+    private static String copy(String value) {
+        return new String(value.toCharArray());
+    }
+
+    /**
+     * Gets the heap in use once the garbage collector has run.
+     *
+     * @return The heap in use, in bytes.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Fills a B+tree catalog store in a temporary directory and times its updates, then reopens it with an empty page cache
+     * and times the same reads and queries twice: a cold pass that reads the pages from the files and a warm pass.
+     * Every author queried holds a thousandth of the books, every year a hundred-and-twentieth, and every ISBN prefix a hundred books.
+     *
+     * @param size The number of books stored.
+     * @return The total time of the stores and of the final flush, then for the cold and the warm pass the total time of
+     *         the ISBN reads, author, year range and ISBN prefix queries and the number of pages missed in the cache,
+     *         in nanoseconds.
+     * @throws InvalidInputInformation If a generated book is invalid.
+     * @throws IOException If the files of the store cannot be written.
+     */
+    private static long[] store(int size) throws InvalidInputInformation, IOException {
+        long[] results = new long[12];
+        List<Book<User>> books = books(size);
+        Path directory = Files.createTempDirectory("catalog-benchmark");
+        try {
+            try (BTreeCatalogStore store = new BTreeCatalogStore(directory, 1024)) {
+                long start = System.nanoTime();
+                for (Book<User> book : books) {
+                    store.store(book);
+                }
+                results[0] = System.nanoTime() - start;
+                start = System.nanoTime();
+                store.flush();
+                results[1] = System.nanoTime() - start;
+            }
+            try (BTreeCatalogStore store = new BTreeCatalogStore(directory, 1024)) {
+                for (int pass = 0; pass < 2; pass++) {
+                    long misses = store.getCacheMisses();
+                    long[] nanos = queries(store, size);
+                    System.arraycopy(nanos, 0, results, 2 + 5 * pass, nanos.length);
+                    results[6 + 5 * pass] = store.getCacheMisses() - misses;
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Times reads of random ISBNs and queries by author, year range and ISBN prefix on a B+tree catalog store.
+     * The same keys are used on every call, so a second call finds the pages the first one cached.
+     *
+     * @param store The store, holding the books generated by {@link #books(int)}.
+     * @param size  The number of books stored.
+     * @return The total time of the ISBN reads, author, year range and ISBN prefix queries, in nanoseconds.
+     * @throws InvalidInputInformation If a stored book is invalid.
+     * @throws IOException If the files of the store cannot be read.
+     */
+    private static long[] queries(BTreeCatalogStore store, int size) throws InvalidInputInformation, IOException {
+        long[] nanos = new long[4];
+        long found = 0;
+        long seed = 42;
+        long start = System.nanoTime();
+        for (int i = 0; i < STORE_LOOKUPS; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            found += store.read(String.valueOf(1000000 + (int) ((seed >>> 33) % size))) != null ? 1 : 0;
+        }
+        nanos[0] = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < STORE_QUERIES; i++) {
+            found += store.findByAuthor("Author " + letters(i % 100)).size();
+        }
+        nanos[1] = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < STORE_QUERIES; i++) {
+            found += store.findByPublicationYear(1900 + i % 120, 1900 + i % 120).size();
+        }
+        nanos[2] = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < STORE_QUERIES; i++) {
+            // ISBNs run from 1000000, so five leading digits pick a hundred consecutive books
+            found += store.findByISBNPrefix(String.valueOf(10000 + i % 10)).size();
+        }
+        nanos[3] = System.nanoTime() - start;
+        if (found == 0) {
+            System.out.println("No book was found");
+        }
+        return nanos;
+    }
+
+    /**
+     * Generates books with distinct ISBNs and titles, spread over a thousand authors and ten genres.
+     *
+     * @param count The number of books.
+     * @return The books.
+     * @throws InvalidInputInformation If a generated book is invalid.
+     */
+    static List<Book<User>> books(int count) throws InvalidInputInformation {
+        List<Book<User>> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(new Book<>("Title " + i, "Author " + letters(i % 1000), "Genre " + letters(i % 10), "A generated book", "Physical",
+                    String.valueOf(1000000 + i), true, String.valueOf(1900 + i % 120)));
+        }
+        return books;
+    }
+
+    /**
+     * Times lookups of random existing keys by ISBN, author, title and genre.
+     * Authors and genres hold more books as the catalog grows, so only their first book is fetched.
+     *
+     * @param library The library to search.
+     * @param size    The number of books in the library.
+     * @return The total time of the ISBN, author, title and genre lookups in nanoseconds.
+     */
+    private static long[] lookups(Library library, int size) {
+        long[] nanos = new long[4];
+        long found = 0;
+        long seed = 42;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            found += library.findBookbyISBN(String.valueOf(1000000 + (int) ((seed >>> 33) % size))) != null ? 1 : 0;
+        }
+        nanos[0] = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            found += library.streamBooksbyAuthor("Author " + letters(i % 1000)).findFirst().isPresent() ? 1 : 0;
+        }
+        nanos[1] = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            found += library.findBookbyTitle("Title " + (int) ((seed >>> 33) % size)).size();
+        }
+        nanos[2] = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            found += library.streamBooksbyGenre("Genre " + letters(i % 10)).findFirst().isPresent() ? 1 : 0;
+        }
+        nanos[3] = System.nanoTime() - start;
+        if (found == 0) {
+            System.out.println("No book was found");
+        }
+        return nanos;
+    }
+
+    /**
+     * Spells a number with letters, since authors and genres may not contain digits.
+     *
+     * @param number The number.
+     * @return The number in base 26, written with the letters a to z.
+     */
+    static String letters(int number) {
+        StringBuilder letters = new StringBuilder();
+        do {
+            letters.append((char) ('a' + number % 26));
+            number /= 26;
+        } while (number > 0);
+        return letters.toString();
+    }
+}
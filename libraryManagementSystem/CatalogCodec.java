@@ -0,0 +1,581 @@
+package libraryManagementSystem;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Versioned binary format for the contents of a library and for users.
+ * An encoded buffer starts with a magic number, the format version and the kind of content,
+ * followed by a table of the distinct strings and then the records. Records refer to strings by their index
+ * in the table and store numbers as varints, so repeated values such as genres, authors and faculties cost a byte or two.
+ * Every record starts with a type tag and its length, so a decoder skips record types and trailing fields it does not know,
+ * which lets later versions add fields without breaking older readers.
+ * Decoding reads the buffer in place, including direct and memory-mapped buffers, without copying it first.
+ */
+public final class CatalogCodec {
+    /**
+     * The version of the format written by this codec.
+     */
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x4c4d5342;
+    private static final byte LIBRARY = 1;
+    private static final byte USERS = 2;
+    private static final byte BOOK = 1;
+    private static final byte STUDENT = 2;
+    private static final byte PROFESSOR = 3;
+    private static final byte ADMIN = 4;
+    private static final byte MEETING_ROOM = 5;
+    private static final byte PC_RESOURCE = 6;
+    private static final byte TABLET_RESOURCE = 7;
+
+    private CatalogCodec() {
+    }
+
+    /**
+     * Encodes the admin, faculty, books, meeting rooms and electronic resources of a library.
+     * Loans, bookings and waitlists are not part of the catalog and are not encoded.
+     *
+     * @param library The library to encode.
+     * @return A buffer holding the encoded library, ready to be read.
+     */
+    public static ByteBuffer encodeLibrary(Library library) {
+        Writer writer = new Writer();
+        writeUser(writer, library.getAdmin());
+        writer.putString(library.getFaculty());
+        List<Book<User>> books = library.getBooks();
+        List<MeetingRoom<User>> rooms = library.getMeetingRooms();
+        List<ElectronicResource<ElectronicDevice, User>> resources = library.getElectronicResources();
+        // the records are copied from snapshots of the lists, so the count matches the records that follow
+        ArrayList<Object> records = new ArrayList<>(books.size() + rooms.size() + resources.size());
+        records.addAll(books);
+        records.addAll(rooms);
+        records.addAll(resources);
+        writer.putVarLong(records.size());
+        for (Object record : records) {
+            if (record instanceof Book) {
+                writeBook(writer, (Book<?>) record);
+            } else if (record instanceof MeetingRoom) {
+                writeMeetingRoom(writer, (MeetingRoom<?>) record);
+            } else {
+                writeResource(writer, (ElectronicResource<?, ?>) record);
+            }
+        }
+        return writer.finish(LIBRARY);
+    }
+
+    /**
+     * Decodes a library encoded by {@link #encodeLibrary(Library)}.
+     * The library gets a new admin, and its books, rooms and resources are added as that admin.
+     *
+     * @param buffer The buffer to read, from its position; the position is not changed.
+     * @return The decoded library.
+     * @throws InvalidInputInformation If the buffer is not an encoded library, is of a newer version, or holds invalid records.
+     */
+    public static Library decodeLibrary(ByteBuffer buffer) throws InvalidInputInformation {
+        Reader reader = new Reader(buffer, LIBRARY);
+        try {
+            User admin = readUser(reader);
+            if (!(admin instanceof Admin)) {
+                throw new InvalidInputInformation("Encoded library has no admin");
+            }
+            Library library = new Library((Admin) admin);
+            library.setFaculty(reader.getString());
+            long count = reader.getVarLong();
+            List<Book<User>> books = new ArrayList<>();
+            for (long i = 0; i < count; i++) {
+                byte tag = reader.buffer.get();
+                int end = reader.recordEnd();
+                switch (tag) {
+                    case BOOK:
+                        books.add(readBook(reader));
+                        break;
+                    case MEETING_ROOM:
+                        library.addMeetingRoom((Admin) admin, readMeetingRoom(reader));
+                        break;
+                    case PC_RESOURCE:
+                    case TABLET_RESOURCE:
+                        library.addElectronicResource((Admin) admin, readResource(reader, tag));
+                        break;
+                    default:
+                        break;
+                }
+                reader.buffer.position(end);
+            }
+            library.addBooks((Admin) admin, books);
+            return library;
+        } catch (UnauthorizedUserAction e) {
+            // the library was just created with this admin
+            throw new IllegalStateException(e);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new InvalidInputInformation("Encoded library is truncated or corrupted");
+        }
+    }
+
+    /**
+     * Encodes students, professors and admins, with their faculty.
+     * Borrowing history and blacklists are not encoded.
+     *
+     * @param users The users to encode.
+     * @return A buffer holding the encoded users, ready to be read.
+     */
+    public static ByteBuffer encodeUsers(List<? extends User> users) {
+        Writer writer = new Writer();
+        writer.putVarLong(users.size());
+        for (User user : users) {
+            writeUser(writer, user);
+        }
+        return writer.finish(USERS);
+    }
+
+    /**
+     * Decodes users encoded by {@link #encodeUsers(List)}.
+     *
+     * @param buffer The buffer to read, from its position; the position is not changed.
+     * @return The decoded users, in order.
+     * @throws InvalidInputInformation If the buffer is not encoded users, is of a newer version, or holds invalid records.
+     */
+    public static List<User> decodeUsers(ByteBuffer buffer) throws InvalidInputInformation {
+        Reader reader = new Reader(buffer, USERS);
+        try {
+            long count = reader.getVarLong();
+            List<User> users = new ArrayList<>();
+            for (long i = 0; i < count; i++) {
+                User user = readUser(reader);
+                if (user != null) {
+                    users.add(user);
+                }
+            }
+            return users;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new InvalidInputInformation("Encoded users are truncated or corrupted");
+        }
+    }
+
+    /**
+     * Writes a book record.
+     *
+     * @param writer The writer.
+     * @param book   The book.
+     */
+    private static void writeBook(Writer writer, Book<?> book) {
+        int start = writer.startRecord(BOOK);
+        writer.putString(book.getTitle());
+        writer.putString(book.getAuthor());
+        writer.putString(book.getGenre());
+        writer.putString(book.getDescription());
+        writer.putString(book.getFormat());
+        writer.putString(book.getISBN());
+        writer.ensure(1);
+        writer.body.put((byte) (book.isRentable() ? 1 : 0));
+        writer.putString(book.getPublicationYear());
+        writeRules(writer, book);
+        writer.putVarLong(book.getTotalCopies());
+        writer.putVarLong(book.getNbTimesBorrowed());
+        writer.endRecord(start);
+    }
+
+    /**
+     * Reads the fields of a book record.
+     *
+     * @param reader The reader, positioned after the record header.
+     * @return The decoded book.
+     * @throws InvalidInputInformation If the fields are not a valid book.
+     */
+    private static Book<User> readBook(Reader reader) throws InvalidInputInformation {
+        Book<User> book = new Book<>(reader.getString(), reader.getString(), reader.getString(), reader.getString(),
+                reader.getString(), reader.getString(), reader.buffer.get() == 1, reader.getString());
+        readRules(reader, book);
+        try {
+            book.addCopies(null, (int) reader.getVarLong() - 1);
+        } catch (UnauthorizedUserAction e) {
+            // a book has no admin until it is added to a library
+            throw new IllegalStateException(e);
+        }
+        book.restoreBorrows(reader.getVarLong());
+        return book;
+    }
+
+    /**
+     * Writes a user record.
+     *
+     * @param writer The writer.
+     * @param user   The user.
+     */
+    private static void writeUser(Writer writer, User user) {
+        byte tag = user instanceof Student ? STUDENT : user instanceof Professor ? PROFESSOR : ADMIN;
+        int start = writer.startRecord(tag);
+        writer.putString(user.getName());
+        writer.putString(user.getEmail());
+        writer.putString(user.getPhoneNumber());
+        writer.putString(user.getAddress());
+        writer.putString(user.getFaculty());
+        if (user instanceof Student) {
+            writer.putString(((Student) user).getId());
+        } else if (user instanceof Professor) {
+            writer.putString(((Professor) user).getRank());
+        } else {
+            writer.putString(((Admin) user).getSchedule());
+        }
+        writer.endRecord(start);
+    }
+
+    /**
+     * Reads a user record.
+     *
+     * @param reader The reader, positioned at the record.
+     * @return The decoded user, or {@code null} if the record is of an unknown type.
+     * @throws InvalidInputInformation If the fields are not a valid user.
+     */
+    private static User readUser(Reader reader) throws InvalidInputInformation {
+        byte tag = reader.buffer.get();
+        int end = reader.recordEnd();
+        User user = null;
+        if (tag == STUDENT || tag == PROFESSOR || tag == ADMIN) {
+            String name = reader.getString();
+            String email = reader.getString();
+            String phoneNumber = reader.getString();
+            String address = reader.getString();
+            String faculty = reader.getString();
+            String extra = reader.getString();
+            if (tag == STUDENT) {
+                user = new Student(name, email, phoneNumber, address, extra);
+            } else if (tag == PROFESSOR) {
+                user = new Professor(name, email, phoneNumber, address, extra);
+            } else {
+                user = new Admin(name, email, phoneNumber, address, extra);
+            }
+            user.setFaculty(faculty);
+        }
+        reader.buffer.position(end);
+        return user;
+    }
+
+    /**
+     * Writes a meeting room record.
+     *
+     * @param writer The writer.
+     * @param room   The meeting room.
+     */
+    private static void writeMeetingRoom(Writer writer, MeetingRoom<?> room) {
+        int start = writer.startRecord(MEETING_ROOM);
+        writer.putString(room.getRoomNumber());
+        writer.putString(room.getPhoneNumber());
+        writeRules(writer, room);
+        writer.endRecord(start);
+    }
+
+    /**
+     * Reads the fields of a meeting room record.
+     *
+     * @param reader The reader, positioned after the record header.
+     * @return The decoded meeting room.
+     * @throws InvalidInputInformation If the fields are not a valid meeting room.
+     */
+    private static MeetingRoom<User> readMeetingRoom(Reader reader) throws InvalidInputInformation {
+        MeetingRoom<User> room = new MeetingRoom<>(reader.getString(), reader.getString());
+        readRules(reader, room);
+        return room;
+    }
+
+    /**
+     * Writes an electronic resource record, tagged with the type of its device.
+     *
+     * @param writer   The writer.
+     * @param resource The electronic resource.
+     */
+    private static void writeResource(Writer writer, ElectronicResource<?, ?> resource) {
+        ElectronicDevice device = resource.getDevice();
+        int start = writer.startRecord(device instanceof PC ? PC_RESOURCE : TABLET_RESOURCE);
+        writer.putString(device.getBrand());
+        writer.putString(device.getReferenceNumber());
+        writer.putString(device instanceof PC ? ((PC) device).getLabRoom() : ((Tablet) device).getShelf());
+        writeRules(writer, resource);
+        writer.endRecord(start);
+    }
+
+    /**
+     * Reads the fields of an electronic resource record.
+     *
+     * @param reader The reader, positioned after the record header.
+     * @param tag    The tag of the record, giving the type of device.
+     * @return The decoded electronic resource.
+     * @throws InvalidInputInformation If the fields are not a valid device.
+     */
+    private static ElectronicResource<ElectronicDevice, User> readResource(Reader reader, byte tag) throws InvalidInputInformation {
+        String brand = reader.getString();
+        String referenceNumber = reader.getString();
+        String place = reader.getString();
+        ElectronicDevice device = tag == PC_RESOURCE ? new PC(brand, referenceNumber, place) : new Tablet(brand, referenceNumber, place);
+        ElectronicResource<ElectronicDevice, User> resource = new ElectronicResource<>(device);
+        readRules(reader, resource);
+        return resource;
+    }
+
+    /**
+     * Writes the rental rules of a book, room or resource.
+     *
+     * @param writer The writer.
+     * @param rules  The rules.
+     */
+    private static void writeRules(Writer writer, Rules rules) {
+        writer.putVarInt(rules.getRenewalPeriodStudent());
+        writer.putVarInt(rules.getRentPeriodStudent());
+        writer.putVarInt(rules.getLatePenaltyPeriodStudent());
+        writer.putVarInt(rules.getRenewalPassedStudent());
+        writer.putVarInt(rules.getRenewalPeriodProfessor());
+        writer.putVarInt(rules.getRentPeriodProfessor());
+        writer.putVarInt(rules.getLatePenaltyPeriodProfessor());
+        writer.putVarInt(rules.getRenewalPassedProfessor());
+    }
+
+    /**
+     * Reads the rental rules of a book, room or resource that has no admin yet.
+     *
+     * @param reader The reader.
+     * @param rules  The rules to set.
+     */
+    private static void readRules(Reader reader, Rules rules) {
+        try {
+            rules.setRenewalPeriodStudent(null, reader.getVarInt());
+            rules.setRentPeriodStudent(null, reader.getVarInt());
+            rules.setLatePenaltyPeriodStudent(null, reader.getVarInt());
+            rules.setRenewalPassedStudent(null, reader.getVarInt());
+            rules.setRenewalPeriodProfessor(null, reader.getVarInt());
+            rules.setRentPeriodProfessor(null, reader.getVarInt());
+            rules.setLatePenaltyPeriodProfessor(null, reader.getVarInt());
+            rules.setRenewalPassedProfessor(null, reader.getVarInt());
+        } catch (UnauthorizedUserAction e) {
+            // the object has no admin until it is added to a library
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes records into a body while collecting their strings into a table.
+     */
+    private static final class Writer {
+        private final LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+        private ByteBuffer body = ByteBuffer.allocate(1024);
+
+        /**
+         * Writes a reference to a string, adding the string to the table if it is new.
+         *
+         * @param value The string.
+         */
+        private void putString(String value) {
+            Integer index = this.strings.get(value);
+            if (index == null) {
+                index = this.strings.size();
+                this.strings.put(value, index);
+            }
+            this.putVarLong(index);
+        }
+
+        /**
+         * Writes a signed int as a zigzag varint.
+         *
+         * @param value The value.
+         */
+        private void putVarInt(int value) {
+            this.putVarLong((value << 1) ^ (value >> 31));
+        }
+
+        /**
+         * Writes a non-negative number as a varint, seven bits per byte.
+         *
+         * @param value The value.
+         */
+        private void putVarLong(long value) {
+            this.ensure(10);
+            while ((value & ~0x7fL) != 0) {
+                this.body.put((byte) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            this.body.put((byte) value);
+        }
+
+        /**
+         * Starts a record, leaving room for its length.
+         *
+         * @param tag The type tag of the record.
+         * @return The position of the length, to pass to {@link #endRecord(int)}.
+         */
+        private int startRecord(byte tag) {
+            this.ensure(5);
+            this.body.put(tag);
+            int start = this.body.position();
+            // records are short, so two bytes of varint cover their length
+            this.body.position(start + 2);
+            return start;
+        }
+
+        /**
+         * Ends a record by writing its length.
+         *
+         * @param start The position returned by {@link #startRecord(byte)}.
+         */
+        private void endRecord(int start) {
+            int length = this.body.position() - start - 2;
+            if (length >= 1 << 14) {
+                throw new IllegalArgumentException("Record too long to encode: " + length + " bytes");
+            }
+            this.body.put(start, (byte) ((length & 0x7f) | 0x80));
+            this.body.put(start + 1, (byte) (length >>> 7));
+        }
+
+        /**
+         * Makes room in the body.
+         *
+         * @param bytes The number of bytes about to be written.
+         */
+        private void ensure(int bytes) {
+            if (this.body.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(this.body.capacity() * 2, this.body.position() + bytes));
+                this.body.flip();
+                larger.put(this.body);
+                this.body = larger;
+            }
+        }
+
+        /**
+         * Assembles the header, the string table and the body.
+         *
+         * @param kind The kind of content.
+         * @return The encoded buffer, ready to be read.
+         */
+        private ByteBuffer finish(byte kind) {
+            ByteBuffer records = this.body.flip();
+            this.body = ByteBuffer.allocate(64);
+            this.body.putInt(MAGIC);
+            this.putVarLong(VERSION);
+            this.body.put(kind);
+            this.putVarLong(this.strings.size());
+            for (String value : this.strings.keySet()) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                this.putVarLong(bytes.length);
+                this.ensure(bytes.length);
+                this.body.put(bytes);
+            }
+            this.ensure(records.remaining());
+            this.body.put(records);
+            return this.body.flip();
+        }
+    }
+
+    /**
+     * Reads the header and string table of an encoded buffer, then its records.
+     */
+    private static final class Reader {
+        private final ByteBuffer buffer;
+        private final String[] strings;
+
+        /**
+         * Reads the header and the string table.
+         *
+         * @param source The encoded buffer; it is read through a duplicate, so its position is not changed.
+         * @param kind   The expected kind of content.
+         * @throws InvalidInputInformation If the header is invalid or of a newer version.
+         */
+        private Reader(ByteBuffer source, byte kind) throws InvalidInputInformation {
+            this.buffer = source.duplicate();
+            try {
+                if (this.buffer.getInt() != MAGIC) {
+                    throw new InvalidInputInformation("Not an encoded catalog");
+                }
+                long version = this.getVarLong();
+                if (version > VERSION) {
+                    throw new InvalidInputInformation("Unsupported catalog format version " + version + " (max " + VERSION + ")");
+                }
+                if (this.buffer.get() != kind) {
+                    throw new InvalidInputInformation(kind == LIBRARY ? "Not an encoded library" : "Not encoded users");
+                }
+                this.strings = new String[this.getVarInt32()];
+                for (int i = 0; i < this.strings.length; i++) {
+                    int length = this.getVarInt32();
+                    if (this.buffer.hasArray()) {
+                        this.strings[i] = new String(this.buffer.array(), this.buffer.arrayOffset() + this.buffer.position(), length, StandardCharsets.UTF_8);
+                        this.buffer.position(this.buffer.position() + length);
+                    } else {
+                        byte[] bytes = new byte[length];
+                        this.buffer.get(bytes);
+                        this.strings[i] = new String(bytes, StandardCharsets.UTF_8);
+                    }
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new InvalidInputInformation("Encoded catalog is truncated or corrupted");
+            }
+        }
+
+        /**
+         * Reads a string reference.
+         *
+         * @return The referenced string.
+         */
+        private String getString() {
+            long index = this.getVarLong();
+            if (index >= this.strings.length) {
+                throw new IllegalArgumentException("String reference out of range: " + index);
+            }
+            return this.strings[(int) index];
+        }
+
+        /**
+         * Reads a zigzag varint.
+         *
+         * @return The signed value.
+         */
+        private int getVarInt() {
+            int value = (int) this.getVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * Reads a varint that must fit a non-negative int, such as a count or a length.
+         *
+         * @return The value.
+         */
+        private int getVarInt32() {
+            long value = this.getVarLong();
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Length out of range: " + value);
+            }
+            return (int) value;
+        }
+
+        /**
+         * Reads a varint.
+         *
+         * @return The value.
+         */
+        private long getVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = this.buffer.get();
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Varint too long");
+        }
+
+        /**
+         * Reads the length of the current record.
+         *
+         * @return The position right after the record.
+         */
+        private int recordEnd() {
+            int length = this.getVarInt32();
+            int end = this.buffer.position() + length;
+            if (end > this.buffer.limit()) {
+                throw new IllegalArgumentException("Record past the end of the buffer");
+            }
+            return end;
+        }
+    }
+}
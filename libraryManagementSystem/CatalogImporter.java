@@ -0,0 +1,426 @@
+package libraryManagementSystem;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Imports books into a library from a catalog file, one record per line.
+ * A file ending in {@code .jsonl} or {@code .json} holds one flat JSON object per line; any other file is CSV
+ * whose first line names the columns. The columns or keys are the arguments of the {@link Book} constructor
+ * ({@code title}, {@code author}, {@code genre}, {@code description}, {@code format}, {@code isbn}, {@code rentable},
+ * {@code publicationYear}), and optionally {@code copies} and the names of the {@link Rules} periods.
+ * The file is streamed in batches: the records of a batch are parsed and validated in parallel, then added to
+ * the library with {@link Library#addBooks(Admin, java.util.Collection)}. Records that are not valid books, or whose ISBN
+ * is already in the library, are written to a reject file with their line number and the reason.
+ */
+public class CatalogImporter {
+    private static final int BATCH_SIZE = 10000;
+    private static final String[] REQUIRED = {"title", "author", "genre", "description", "format", "isbn", "rentable", "publicationYear"};
+
+    private final Library library;
+    private final Admin admin;
+    private long imported;
+    private long rejected;
+
+    /**
+     * Constructs an importer into a library.
+     *
+     * @param library The library to add books to.
+     * @param admin   The admin of the library.
+     * @throws UnauthorizedUserAction If the admin is not the admin of the library.
+     */
+    public CatalogImporter(Library library, Admin admin) throws UnauthorizedUserAction {
+        if (library.getAdmin() != admin) {
+            throw new UnauthorizedUserAction("You are not the admin of this library");
+        }
+        this.library = library;
+        this.admin = admin;
+    }
+
+    /**
+     * Imports every record of a catalog file.
+     *
+     * @param source  The catalog file, in CSV or JSON lines.
+     * @param rejects The file to write rejected records to; it is replaced if it exists.
+     * @return The number of books added by this import.
+     * @throws IOException             If a file cannot be read or written.
+     * @throws InvalidInputInformation If a CSV file has no header line or misses a required column.
+     */
+    public long importFile(Path source, Path rejects) throws IOException, InvalidInputInformation {
+        String name = source.getFileName().toString().toLowerCase();
+        boolean json = name.endsWith(".jsonl") || name.endsWith(".json");
+        long added = 0;
+        HashSet<String> isbns = new HashSet<>();
+        for (Book<User> book : this.library.getBooks()) {
+            isbns.add(book.getISBN());
+        }
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+             BufferedWriter rejectWriter = Files.newBufferedWriter(rejects, StandardCharsets.UTF_8)) {
+            String[] columns = null;
+            long lineNumber = 0;
+            if (!json) {
+                String header = reader.readLine();
+                lineNumber++;
+                if (header == null) {
+                    throw new InvalidInputInformation("Catalog file is empty: " + source);
+                }
+                columns = parseCsv(header).toArray(new String[0]);
+                for (String column : REQUIRED) {
+                    if (!List.of(columns).contains(column)) {
+                        throw new InvalidInputInformation("Catalog file misses the column " + column);
+                    }
+                }
+            }
+            List<String> lines = new ArrayList<>(BATCH_SIZE);
+            List<Long> lineNumbers = new ArrayList<>(BATCH_SIZE);
+            String line;
+            do {
+                line = reader.readLine();
+                lineNumber++;
+                if (line != null && !line.isBlank()) {
+                    lines.add(line);
+                    lineNumbers.add(lineNumber);
+                }
+                if (lines.size() == BATCH_SIZE || (line == null && !lines.isEmpty())) {
+                    added += this.importBatch(lines, lineNumbers, columns, isbns, rejectWriter);
+                    lines.clear();
+                    lineNumbers.clear();
+                }
+            } while (line != null);
+        }
+        return added;
+    }
+
+    /**
+     * Gets the number of books added since the importer was constructed.
+     *
+     * @return The number of imported books.
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * Gets the number of records rejected since the importer was constructed.
+     *
+     * @return The number of rejected records.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Parses and validates a batch of records in parallel, then adds the valid books in file order.
+     *
+     * @param lines       The records of the batch.
+     * @param lineNumbers The line numbers of the records in the file.
+     * @param columns     The CSV columns, or {@code null} for JSON lines.
+     * @param isbns       The ISBNs already in the library, updated with the added books.
+     * @param rejects     The reject file.
+     * @return The number of books added.
+     * @throws IOException If the reject file cannot be written.
+     */
+    private long importBatch(List<String> lines, List<Long> lineNumbers, String[] columns, HashSet<String> isbns, BufferedWriter rejects) throws IOException {
+        int count = lines.size();
+        Object[] results = new Object[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            try {
+                Map<String, String> fields = columns == null ? parseJson(lines.get(i)) : toFields(columns, parseCsv(lines.get(i)));
+                results[i] = toBook(fields);
+            } catch (InvalidInputInformation e) {
+                results[i] = e.getMessage();
+            }
+        });
+        List<Book<User>> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Object result = results[i];
+            if (result instanceof Book) {
+                @SuppressWarnings("unchecked")
+                Book<User> book = (Book<User>) result;
+                if (isbns.add(book.getISBN())) {
+                    books.add(book);
+                    continue;
+                }
+                result = "A book with ISBN " + book.getISBN() + " is already in the library";
+            }
+            this.rejected++;
+            rejects.write("line " + lineNumbers.get(i) + ": " + result + "\t" + lines.get(i));
+            rejects.newLine();
+        }
+        try {
+            int added = this.library.addBooks(this.admin, books);
+            this.imported += added;
+            return added;
+        } catch (UnauthorizedUserAction e) {
+            // the admin was checked when the importer was constructed
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Builds a book from the fields of a record.
+     *
+     * @param fields The fields, by column name.
+     * @return The book, with its copies and rules set.
+     * @throws InvalidInputInformation If a field is missing or invalid.
+     */
+    private static Book<User> toBook(Map<String, String> fields) throws InvalidInputInformation {
+        for (String column : REQUIRED) {
+            if (fields.get(column) == null) {
+                throw new InvalidInputInformation("Missing field " + column);
+            }
+        }
+        String rentable = fields.get("rentable");
+        if (!rentable.equalsIgnoreCase("true") && !rentable.equalsIgnoreCase("false")) {
+            throw new InvalidInputInformation("Rentable input incorrect (ex: true)");
+        }
+        Book<User> book = new Book<>(fields.get("title"), fields.get("author"), fields.get("genre"), fields.get("description"),
+                fields.get("format"), fields.get("isbn"), Boolean.parseBoolean(rentable), fields.get("publicationYear"));
+        try {
+            // the book has no admin until it is added to the library
+            book.addCopies(null, toInt(fields, "copies", 1, "3") - 1);
+            book.setRenewalPeriodStudent(null, toInt(fields, "renewalPeriodStudent", book.getRenewalPeriodStudent(), "604800"));
+            book.setRentPeriodStudent(null, toInt(fields, "rentPeriodStudent", book.getRentPeriodStudent(), "1209600"));
+            book.setLatePenaltyPeriodStudent(null, toInt(fields, "latePenaltyPeriodStudent", book.getLatePenaltyPeriodStudent(), "604800"));
+            book.setRenewalPassedStudent(null, toInt(fields, "renewalPassedStudent", book.getRenewalPassedStudent(), "2"));
+            book.setRenewalPeriodProfessor(null, toInt(fields, "renewalPeriodProfessor", book.getRenewalPeriodProfessor(), "604800"));
+            book.setRentPeriodProfessor(null, toInt(fields, "rentPeriodProfessor", book.getRentPeriodProfessor(), "1209600"));
+            book.setLatePenaltyPeriodProfessor(null, toInt(fields, "latePenaltyPeriodProfessor", book.getLatePenaltyPeriodProfessor(), "604800"));
+            book.setRenewalPassedProfessor(null, toInt(fields, "renewalPassedProfessor", book.getRenewalPassedProfessor(), "2"));
+        } catch (UnauthorizedUserAction e) {
+            throw new IllegalStateException(e);
+        }
+        return book;
+    }
+
+    /**
+     * Reads an optional non-negative number field.
+     *
+     * @param fields   The fields of the record.
+     * @param name     The name of the field.
+     * @param fallback The value if the field is missing or empty.
+     * @param example  An example value, for the error message.
+     * @return The value of the field.
+     * @throws InvalidInputInformation If the field is not a non-negative number, or is 0 copies.
+     */
+    private static int toInt(Map<String, String> fields, String name, int fallback, String example) throws InvalidInputInformation {
+        String value = fields.get(name);
+        if (value == null || value.isEmpty()) {
+            return fallback;
+        }
+        if (value.matches("\\d{1,9}") && !(name.equals("copies") && Integer.parseInt(value) == 0)) {
+            return Integer.parseInt(value);
+        }
+        throw new InvalidInputInformation(Character.toUpperCase(name.charAt(0)) + name.substring(1) + " input incorrect (ex: " + example + ")");
+    }
+
+    /**
+     * Pairs the values of a CSV record with the columns of the header.
+     *
+     * @param columns The column names.
+     * @param values  The values of the record.
+     * @return The fields, by column name.
+     * @throws InvalidInputInformation If the record does not have one value per column.
+     */
+    private static Map<String, String> toFields(String[] columns, List<String> values) throws InvalidInputInformation {
+        if (values.size() != columns.length) {
+            throw new InvalidInputInformation("CSV record has " + values.size() + " fields instead of " + columns.length);
+        }
+        HashMap<String, String> fields = new HashMap<>();
+        for (int i = 0; i < columns.length; i++) {
+            fields.put(columns[i], values.get(i));
+        }
+        return fields;
+    }
+
+    /**
+     * Splits a CSV line into fields; a field in double quotes may hold commas and doubled quotes.
+     *
+     * @param line The line.
+     * @return The fields.
+     * @throws InvalidInputInformation If a quoted field is not closed.
+     */
+    private static List<String> parseCsv(String line) throws InvalidInputInformation {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new InvalidInputInformation("CSV record has an unclosed quote");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Parses a flat JSON object whose values are strings, numbers or booleans.
+     *
+     * @param line The line holding the object.
+     * @return The fields, by key, with numbers and booleans as written.
+     * @throws InvalidInputInformation If the line is not such an object.
+     */
+    private static Map<String, String> parseJson(String line) throws InvalidInputInformation {
+        HashMap<String, String> fields = new HashMap<>();
+        int[] position = {skipSpaces(line, 0)};
+        expect(line, position, '{');
+        if (peek(line, position) == '}') {
+            position[0]++;
+        } else {
+            while (true) {
+                String key = jsonString(line, position);
+                expect(line, position, ':');
+                String value;
+                if (peek(line, position) == '"') {
+                    value = jsonString(line, position);
+                } else {
+                    int start = position[0];
+                    while (position[0] < line.length() && ",} \t".indexOf(line.charAt(position[0])) < 0) {
+                        position[0]++;
+                    }
+                    value = line.substring(start, position[0]);
+                    if (value.isEmpty()) {
+                        throw new InvalidInputInformation("JSON record incorrect (ex: {\"isbn\": \"9780061120084\"})");
+                    }
+                }
+                fields.put(key, value.equals("null") ? null : value);
+                if (peek(line, position) == ',') {
+                    position[0]++;
+                } else {
+                    expect(line, position, '}');
+                    break;
+                }
+            }
+        }
+        if (skipSpaces(line, position[0]) != line.length()) {
+            throw new InvalidInputInformation("JSON record incorrect (ex: {\"isbn\": \"9780061120084\"})");
+        }
+        return fields;
+    }
+
+    /**
+     * Reads a JSON string and its escapes.
+     *
+     * @param line     The line.
+     * @param position The position of the opening quote, moved past the closing quote.
+     * @return The string.
+     * @throws InvalidInputInformation If there is no valid string at the position.
+     */
+    private static String jsonString(String line, int[] position) throws InvalidInputInformation {
+        expect(line, position, '"');
+        StringBuilder value = new StringBuilder();
+        int i = position[0];
+        while (i < line.length() && line.charAt(i) != '"') {
+            char c = line.charAt(i++);
+            if (c == '\\' && i < line.length()) {
+                char escaped = line.charAt(i++);
+                switch (escaped) {
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'u':
+                        if (i + 4 > line.length()) {
+                            throw new InvalidInputInformation("JSON record has an incorrect escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(line.substring(i, i + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new InvalidInputInformation("JSON record has an incorrect escape");
+                        }
+                        i += 4;
+                        break;
+                    default:
+                        value.append(escaped);
+                }
+            } else {
+                value.append(c);
+            }
+        }
+        if (i >= line.length()) {
+            throw new InvalidInputInformation("JSON record has an unclosed string");
+        }
+        position[0] = i + 1;
+        return value.toString();
+    }
+
+    /**
+     * Skips spaces and checks the next character.
+     *
+     * @param line     The line.
+     * @param position The position, moved past the character.
+     * @param expected The expected character.
+     * @throws InvalidInputInformation If the next character is not the expected one.
+     */
+    private static void expect(String line, int[] position, char expected) throws InvalidInputInformation {
+        if (peek(line, position) != expected) {
+            throw new InvalidInputInformation("JSON record incorrect (ex: {\"isbn\": \"9780061120084\"})");
+        }
+        position[0]++;
+    }
+
+    /**
+     * Skips spaces and gets the next character.
+     *
+     * @param line     The line.
+     * @param position The position, moved to the next character that is not a space.
+     * @return The next character, or 0 at the end of the line.
+     */
+    private static char peek(String line, int[] position) {
+        position[0] = skipSpaces(line, position[0]);
+        return position[0] < line.length() ? line.charAt(position[0]) : 0;
+    }
+
+    /**
+     * Skips spaces.
+     *
+     * @param line     The line.
+     * @param position The position to start from.
+     * @return The position of the next character that is not a space.
+     */
+    private static int skipSpaces(String line, int position) {
+        while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,102 @@
+package libraryManagementSystem;
+
+/**
+ * Receives notifications about changes to books, meeting rooms and electronic resources in the catalog.
+ * Indexes and rankings implement this interface to stay in sync with the books they cover
+ * without rescanning the catalog. Listeners are called on the thread making the change,
+ * so they must be quick and thread-safe.
+ */
+public interface CatalogListener {
+
+    /**
+     * Called after a book has been added to a library.
+     *
+     * @param book The book that was added.
+     */
+    public default void bookAdded(Book<User> book) {
+    }
+
+    /**
+     * Called after a book has been removed from a library.
+     *
+     * @param book The book that was removed.
+     */
+    public default void bookRemoved(Book<User> book) {
+    }
+
+    /**
+     * Called after a book has been borrowed.
+     *
+     * @param book The book that was borrowed.
+     */
+    public default void bookBorrowed(Book<?> book) {
+    }
+
+    /**
+     * Called before a field a book may be indexed by, such as its title, author, genre or ISBN, is changed.
+     * Indexes remove the book under its current values here.
+     *
+     * @param book The book about to change.
+     */
+    public default void bookChanging(Book<?> book) {
+    }
+
+    /**
+     * Called after a field a book may be indexed by has been changed.
+     * Indexes add the book back under its new values here.
+     *
+     * @param book The book that changed.
+     */
+    public default void bookChanged(Book<?> book) {
+    }
+
+    /**
+     * Called after a book may have changed between having and not having an available copy.
+     *
+     * @param book The book whose availability changed.
+     */
+    public default void availabilityChanged(Book<?> book) {
+    }
+
+    /**
+     * Called after a meeting room has been added to a library.
+     *
+     * @param room The meeting room that was added.
+     */
+    public default void meetingRoomAdded(MeetingRoom<User> room) {
+    }
+
+    /**
+     * Called after a meeting room has been removed from a library.
+     *
+     * @param room The meeting room that was removed.
+     */
+    public default void meetingRoomRemoved(MeetingRoom<User> room) {
+    }
+
+    /**
+     * Called after a meeting room has been booked, now or for a future period.
+     *
+     * @param room        The meeting room that was booked.
+     * @param reservation The new reservation.
+     */
+    public default void roomReserved(MeetingRoom<?> room, Reservation<?> reservation) {
+    }
+
+    /**
+     * Called after a reservation of a meeting room has ended or been cancelled.
+     *
+     * @param room        The meeting room of the reservation.
+     * @param reservation The reservation that ended.
+     */
+    public default void reservationEnded(MeetingRoom<?> room, Reservation<?> reservation) {
+    }
+
+    /**
+     * Called after an electronic resource has been freed at the end of a booking and nobody on its waitlist took it.
+     *
+     * @param resource The electronic resource that was freed.
+     */
+    public default void deviceReleased(ElectronicResource<?, ?> resource) {
+    }
+}
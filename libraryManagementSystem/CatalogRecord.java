@@ -0,0 +1,131 @@
+package libraryManagementSystem;
+
+/**
+ * Represents the bibliographic fields of a record of a {@link CatalogStorage}, read without building its {@link Book}.
+ * Queries of a store test the records first and only decode the books of the records they match,
+ * so the other records are never validated, dictionary-encoded or given copies.
+ */
+public final class CatalogRecord {
+    private final String ISBN;
+    private final String title;
+    private final String author;
+    private final String genre;
+    private final String description;
+    private final String format;
+    private final String publicationYear;
+    private final boolean rentable;
+
+    /**
+     * Constructs a new record from its stored fields.
+     *
+     * @param isbn            The ISBN of the book.
+     * @param title           The title of the book.
+     * @param author          The author of the book.
+     * @param genre           The genre of the book.
+     * @param description     A short description of the book.
+     * @param format          The format of the book.
+     * @param rentable        Whether the book can be rented.
+     * @param publicationYear The publication year of the book.
+     */
+    CatalogRecord(String isbn, String title, String author, String genre, String description, String format, boolean rentable, String publicationYear) {
+        this.ISBN = isbn;
+        this.title = title;
+        this.author = author;
+        this.genre = genre;
+        this.description = description;
+        this.format = format;
+        this.rentable = rentable;
+        this.publicationYear = publicationYear;
+    }
+
+    /**
+     * Decodes the book of the record.
+     *
+     * @return A new book built from the record.
+     * @throws InvalidInputInformation If the record is not a valid book.
+     */
+    public Book<User> toBook() throws InvalidInputInformation {
+        return new Book<>(this.title, this.author, this.genre, this.description, this.format, this.ISBN, this.rentable, this.publicationYear);
+    }
+
+    /**
+     * Gets the ISBN of the record.
+     *
+     * @return The ISBN of the book.
+     */
+    public String getISBN() {
+        return ISBN;
+    }
+
+    /**
+     * Gets the title of the record.
+     *
+     * @return The title of the book.
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Gets the author of the record.
+     *
+     * @return The author of the book.
+     */
+    public String getAuthor() {
+        return author;
+    }
+
+    /**
+     * Gets the genre of the record.
+     *
+     * @return The genre of the book.
+     */
+    public String getGenre() {
+        return genre;
+    }
+
+    /**
+     * Gets the description of the record.
+     *
+     * @return A short description of the book.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Gets the format of the record.
+     *
+     * @return The format of the book.
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * Checks if the book of the record is rentable.
+     *
+     * @return {@code true} if the book is rentable, {@code false} otherwise.
+     */
+    public boolean isRentable() {
+        return rentable;
+    }
+
+    /**
+     * Gets the publication year of the record.
+     *
+     * @return The publication year of the book as a string.
+     */
+    public String getPublicationYear() {
+        return publicationYear;
+    }
+
+    /**
+     * Gets the publication year of the record as a number.
+     *
+     * @return The publication year, or -1 if the record does not hold a valid year.
+     */
+    public int getYear() {
+        return this.publicationYear.matches("\\d{4}") ? Integer.parseInt(this.publicationYear) : -1;
+    }
+}
@@ -0,0 +1,240 @@
+package libraryManagementSystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Defines the persistent storage of the bibliographic records of a library.
+ * A {@link Library} looks up books that are not loaded in its storage and removes deleted books from it.
+ * Lookups by title, author, genre, publication year and ISBN prefix scan every record unless the storage overrides them with an index.
+ * Scans only read the fields of the records as {@link CatalogRecord}s, and decode the books of the records they match.
+ * Loans are not stored: a book read from storage is a fresh view that the library keeps on the heap while it is in use.
+ */
+public interface CatalogStorage extends Closeable {
+
+    /**
+     * Stores the bibliographic record of a book.
+     *
+     * @param book The book to store.
+     * @throws InvalidInputInformation If a book with the same ISBN is stored, the storage is full, or a field is too long.
+     * @throws IOException             If the storage cannot be written.
+     */
+    public void store(Book<?> book) throws InvalidInputInformation, IOException;
+
+    /**
+     * Decodes the book with an ISBN.
+     *
+     * @param isbn The ISBN to look up.
+     * @return A new book built from the stored record, or {@code null} if no book with this ISBN is stored.
+     * @throws InvalidInputInformation If the stored record is not a valid book.
+     * @throws IOException             If the storage cannot be read.
+     */
+    public Book<User> read(String isbn) throws InvalidInputInformation, IOException;
+
+    /**
+     * Removes the record of a book, so it is no longer found.
+     *
+     * @param isbn The ISBN of the book.
+     * @return {@code true} if a record was removed, {@code false} if no book with this ISBN is stored.
+     * @throws IOException If the storage cannot be written.
+     */
+    public boolean delete(String isbn) throws IOException;
+
+    /**
+     * Reads the fields of every stored record, without decoding their books.
+     *
+     * @param action The action to perform on each record.
+     * @throws IOException If the storage cannot be read.
+     */
+    public void forEachRecord(Consumer<? super CatalogRecord> action) throws IOException;
+
+    /**
+     * Decodes every stored book, skipping the records that are not valid books.
+     *
+     * @param action The action to perform on each book.
+     * @throws IOException If the storage cannot be read.
+     */
+    public default void forEach(Consumer<? super Book<User>> action) throws IOException {
+        this.forEachRecord(record -> {
+            Book<User> book = decode(record);
+            if (book != null) {
+                action.accept(book);
+            }
+        });
+    }
+
+    /**
+     * Finds the stored books whose records match a condition, decoding only the matching records.
+     *
+     * @param filter The condition to match.
+     * @return The matching books, in the order of the storage.
+     * @throws IOException If the storage cannot be read.
+     */
+    public default List<Book<User>> find(Predicate<? super CatalogRecord> filter) throws IOException {
+        return this.find(filter, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the first stored books whose records match a condition, decoding only the matching records.
+     *
+     * @param filter The condition to match.
+     * @param limit  The maximum number of books returned.
+     * @return At most {@code limit} matching books, in the order of the storage.
+     * @throws IOException If the storage cannot be read.
+     */
+    public default List<Book<User>> find(Predicate<? super CatalogRecord> filter, int limit) throws IOException {
+        List<Book<User>> books = new ArrayList<>();
+        this.forEachRecord(record -> {
+            if (books.size() < limit && filter.test(record)) {
+                Book<User> book = decode(record);
+                if (book != null) {
+                    books.add(book);
+                }
+            }
+        });
+        return books;
+    }
+
+    /**
+     * Finds the stored books with a title.
+     *
+     * @param title The exact title.
+     * @return The books with the title.
+     * @throws IOException If the storage cannot be read.
+     */
+    public default List<Book<User>> findByTitle(String title) throws IOException {
+        return this.findByTitle(title, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds at most a number of the stored books with a title.
+     *
+     * @param title The exact title.
+     * @param limit The largest number of books to return.
+     * @return The books with the title, at most {@code limit} of them.
+     * @throws IOException If the storage cannot be read.
+     */
+    public default List<Book<User>> findByTitle(String title, int limit) throws IOException {
+        return this.find(record -> record.getTitle().equals(title), limit);
+    }
+
+    /**
+     * Finds the stored books by an author.
+     *
+     * @param author The exact name of the author.
+     * @return The books by the author.
+     * @throws IOException If the storage cannot be read.
+     */
+    public default List<Book<User>> findByAuthor(String author) throws IOException {
+        return this.findByAuthor(author, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds at most a number of the stored books by an author.
+     *
+     * @param author The exact name of the author.
+     * @param limit  The largest number of books to return.
+     * @return The books by the author, at most {@code limit} of them.
+     * @throws IOException If the storage cannot be read.
+     */
+    public default List<Book<User>> findByAuthor(String author, int limit) throws IOException {
+        return this.find(record -> record.getAuthor().equals(author), limit);
+    }
+
+    /**
+     * Finds the stored books of a genre.
+     *
+     * @param genre The exact genre.
+     * @return The books of the genre.
+     * @throws IOException If the storage cannot be read.
+     */
+    public default List<Book<User>> findByGenre(String genre) throws IOException {
+        return this.findByGenre(genre, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds at most a number of the stored books of a genre.
+     *
+     * @param genre The exact genre.
+     * @param limit The largest number of books to return.
+     * @return The books of the genre, at most {@code limit} of them.
+     * @throws IOException If the storage cannot be read.
+     */
+    public default List<Book<User>> findByGenre(String genre, int limit) throws IOException {
+        return this.find(record -> record.getGenre().equals(genre), limit);
+    }
+
+    /**
+     * Finds the stored books published in a range of years.
+     *
+     * @param from The first year of the range, included.
+     * @param to   The last year of the range, included.
+     * @return The books published in the range.
+     * @throws IOException If the storage cannot be read.
+     */
+    public default List<Book<User>> findByPublicationYear(int from, int to) throws IOException {
+        return this.findByPublicationYear(from, to, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds at most a number of the stored books published in a range of years.
+     *
+     * @param from  The first year of the range, included.
+     * @param to    The last year of the range, included.
+     * @param limit The largest number of books to return.
+     * @return The books published in the range, at most {@code limit} of them.
+     * @throws IOException If the storage cannot be read.
+     */
+    public default List<Book<User>> findByPublicationYear(int from, int to, int limit) throws IOException {
+        return this.find(record -> record.getYear() >= from && record.getYear() <= to, limit);
+    }
+
+    /**
+     * Finds the stored books whose ISBN starts with a prefix, such as the prefix of a publisher.
+     *
+     * @param prefix The start of the ISBN.
+     * @return The books whose ISBN starts with the prefix.
+     * @throws IOException If the storage cannot be read.
+     */
+    public default List<Book<User>> findByISBNPrefix(String prefix) throws IOException {
+        return this.findByISBNPrefix(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds at most a number of the stored books whose ISBN starts with a prefix, such as the prefix of a publisher.
+     *
+     * @param prefix The start of the ISBN.
+     * @param limit  The largest number of books to return.
+     * @return The books whose ISBN starts with the prefix, at most {@code limit} of them.
+     * @throws IOException If the storage cannot be read.
+     */
+    public default List<Book<User>> findByISBNPrefix(String prefix, int limit) throws IOException {
+        return this.find(record -> record.getISBN().startsWith(prefix), limit);
+    }
+
+    /**
+     * Gets the number of records in the storage.
+     *
+     * @return The number of stored books.
+     */
+    public int size();
+
+    /**
+     * Decodes the book of a stored record, reporting a record that is not a valid book.
+     *
+     * @param record The stored record.
+     * @return The book, or {@code null} if the record is not a valid book.
+     */
+    private static Book<User> decode(CatalogRecord record) {
+        try {
+            return record.toBook();
+        } catch (InvalidInputInformation e) {
+            System.out.println("Stored record of " + record.getISBN() + " is invalid: " + e.getMessage());
+            return null;
+        }
+    }
+}
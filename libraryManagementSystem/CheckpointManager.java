@@ -0,0 +1,438 @@
+package libraryManagementSystem;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the journal of a university in a directory together with periodic snapshots, so recovery stays fast
+ * however long the history is. The journal is split into numbered files; a checkpoint rotates the journal to a new file,
+ * folds the previous snapshot and the closed journal files into a new snapshot, and deletes what the snapshot covers.
+ * The fold only reads files, so checkpoints run in the background without touching the live objects or pausing traffic.
+ * A snapshot holds one entry per active loan, borrow count, blacklist and unexpired booking, so recovery reads
+ * a snapshot proportional to the current state plus the journal written since the last checkpoint.
+ * The fold keys books by library and ISBN only, so it keeps the loans and borrow counts of books that live in a
+ * catalog store, and recovery loads those books from the store through {@link JournalRecovery}.
+ */
+public class CheckpointManager implements Closeable {
+    private static final int MAGIC = 0x4c4d5353;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private final Path directory;
+    private final EventJournal journal;
+    private long segment;
+    private volatile long lastCheckpointSequence;
+    private volatile Duration lastRecoveryTime = Duration.ZERO;
+    private volatile boolean stopped;
+    private Thread checkpointer;
+
+    /**
+     * Opens the journal and snapshots kept in a directory, creating the directory if needed.
+     * The journal is opened but not installed; call {@link #recover(University)} first, then install {@link #getJournal()}.
+     *
+     * @param directory     The directory holding the journal files and snapshots.
+     * @param batchSize     The number of journal events written per fsync.
+     * @param flushInterval The longest time a journal event waits before its batch is written.
+     * @param unit          The time unit of the flush interval.
+     * @throws IOException If the directory or its files cannot be read.
+     */
+    public CheckpointManager(Path directory, int batchSize, long flushInterval, TimeUnit unit) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        Path snapshot = this.latestSnapshot();
+        long last = snapshot == null ? 0 : readSnapshot(snapshot, event -> {
+        });
+        List<Path> segments = this.list(JOURNAL_PREFIX, JOURNAL_SUFFIX);
+        for (Path file : segments) {
+            last = Math.max(last, EventJournal.scan(file, 0, event -> {
+            })[1]);
+        }
+        this.segment = segments.isEmpty() ? 1 : number(segments.get(segments.size() - 1), JOURNAL_PREFIX, JOURNAL_SUFFIX);
+        this.journal = new EventJournal(this.journalFile(this.segment), last, batchSize, flushInterval, unit);
+        this.lastCheckpointSequence = snapshot == null ? 0 : number(snapshot, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * Gets the journal that events should be recorded to.
+     *
+     * @return The journal, to pass to {@link EventJournal#install(EventJournal)}.
+     */
+    public EventJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Restores the state of a university from the latest snapshot and the journal written after it.
+     * The time taken is kept in {@link #getLastRecoveryTime()}.
+     *
+     * @param university The university to restore, set up again with the same objects as before the restart.
+     * @return The recovery used, with the number of applied and skipped events.
+     * @throws IOException If the files cannot be read.
+     */
+    public JournalRecovery recover(University university) throws IOException {
+        long start = System.nanoTime();
+        JournalRecovery recovery = new JournalRecovery(university);
+        Path snapshot = this.latestSnapshot();
+        long covered = snapshot == null ? 0 : readSnapshot(snapshot, recovery::apply);
+        for (Path file : this.list(JOURNAL_PREFIX, JOURNAL_SUFFIX)) {
+            EventJournal.scan(file, 0, event -> {
+                if (event.getSequence() > covered) {
+                    recovery.apply(event);
+                }
+            });
+        }
+        this.lastRecoveryTime = Duration.ofNanos(System.nanoTime() - start);
+        return recovery;
+    }
+
+    /**
+     * Writes a snapshot covering every event recorded so far and deletes the journal files and snapshot it replaces.
+     *
+     * @return The sequence number of the last event covered by the snapshot.
+     * @throws IOException If the files cannot be read or written.
+     */
+    public synchronized long checkpoint() throws IOException {
+        if (this.journal.getLastSequence() == this.lastCheckpointSequence) {
+            return this.lastCheckpointSequence;
+        }
+        long next = this.segment + 1;
+        long covered = this.journal.rotate(this.journalFile(next));
+        this.segment = next;
+        State state = new State();
+        Path previous = this.latestSnapshot();
+        long base = previous == null ? 0 : readSnapshot(previous, state::apply);
+        List<Path> folded = new ArrayList<>();
+        for (Path file : this.list(JOURNAL_PREFIX, JOURNAL_SUFFIX)) {
+            if (number(file, JOURNAL_PREFIX, JOURNAL_SUFFIX) < next) {
+                EventJournal.scan(file, 0, event -> {
+                    if (event.getSequence() > base) {
+                        state.apply(event);
+                    }
+                });
+                folded.add(file);
+            }
+        }
+        Path snapshot = this.directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, covered, SNAPSHOT_SUFFIX));
+        Path temporary = this.directory.resolve(snapshot.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeLong(covered);
+            state.write(out, covered, System.currentTimeMillis());
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // the new snapshot is durable, so everything it covers can go
+        for (Path file : folded) {
+            Files.deleteIfExists(file);
+        }
+        for (Path file : this.list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (!file.equals(snapshot)) {
+                Files.deleteIfExists(file);
+            }
+        }
+        this.lastCheckpointSequence = covered;
+        return covered;
+    }
+
+    /**
+     * Starts writing checkpoints in the background, at a fixed interval or sooner once enough events were recorded.
+     *
+     * @param interval  The longest time between checkpoints.
+     * @param unit      The time unit of the interval.
+     * @param maxEvents The number of events after which a checkpoint is written early, bounding recovery time.
+     */
+    public synchronized void start(long interval, TimeUnit unit, long maxEvents) {
+        if (this.checkpointer != null) {
+            return;
+        }
+        long intervalNanos = unit.toNanos(interval);
+        this.checkpointer = new Thread(() -> {
+            long due = System.nanoTime() + intervalNanos;
+            while (!this.stopped) {
+                try {
+                    Thread.sleep(Math.max(1, Math.min(1000, (due - System.nanoTime()) / 1_000_000)));
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (System.nanoTime() - due >= 0 || this.journal.getLastSequence() - this.lastCheckpointSequence >= maxEvents) {
+                    try {
+                        this.checkpoint();
+                    } catch (IOException e) {
+                        System.out.println("Checkpoint failed: " + e.getMessage());
+                    }
+                    due = System.nanoTime() + intervalNanos;
+                }
+            }
+        }, "library-checkpointer");
+        this.checkpointer.setDaemon(true);
+        this.checkpointer.start();
+    }
+
+    /**
+     * Gets the sequence number of the last event covered by a snapshot.
+     *
+     * @return The sequence number, or 0 if no snapshot was written.
+     */
+    public long getLastCheckpointSequence() {
+        return lastCheckpointSequence;
+    }
+
+    /**
+     * Gets the time taken by the last call to {@link #recover(University)}.
+     *
+     * @return The recovery time, or zero if there was no recovery.
+     */
+    public Duration getLastRecoveryTime() {
+        return lastRecoveryTime;
+    }
+
+    /**
+     * Stops the background checkpoints and closes the journal.
+     *
+     * @throws IOException If the journal could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        this.stopped = true;
+        Thread checkpointer;
+        synchronized (this) {
+            checkpointer = this.checkpointer;
+        }
+        if (checkpointer != null) {
+            checkpointer.interrupt();
+            try {
+                checkpointer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.journal.close();
+    }
+
+    /**
+     * Gets the path of a journal file.
+     *
+     * @param number The number of the journal file.
+     * @return The path of the file.
+     */
+    private Path journalFile(long number) {
+        return this.directory.resolve(String.format("%s%020d%s", JOURNAL_PREFIX, number, JOURNAL_SUFFIX));
+    }
+
+    /**
+     * Gets the newest snapshot.
+     *
+     * @return The snapshot covering the most events, or {@code null} if there is none.
+     * @throws IOException If the directory cannot be read.
+     */
+    private Path latestSnapshot() throws IOException {
+        List<Path> snapshots = this.list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        return snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1);
+    }
+
+    /**
+     * Lists the files of the directory with a prefix and suffix, in number order.
+     *
+     * @param prefix The prefix of the file names.
+     * @param suffix The suffix of the file names.
+     * @return The matching files.
+     * @throws IOException If the directory cannot be read.
+     */
+    private List<Path> list(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            List<Path> matching = new ArrayList<>();
+            files.filter(file -> file.getFileName().toString().matches(prefix + "\\d+" + suffix.replace(".", "\\."))).forEach(matching::add);
+            matching.sort((f1, f2) -> Long.compare(number(f1, prefix, suffix), number(f2, prefix, suffix)));
+            return matching;
+        }
+    }
+
+    /**
+     * Gets the number in the name of a journal file or snapshot.
+     *
+     * @param file   The file.
+     * @param prefix The prefix of the file name.
+     * @param suffix The suffix of the file name.
+     * @return The number between the prefix and the suffix.
+     */
+    private static long number(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    /**
+     * Reads the entries of a snapshot.
+     *
+     * @param snapshot The snapshot file.
+     * @param consumer Called with each entry.
+     * @return The sequence number of the last event covered by the snapshot.
+     * @throws IOException If the file cannot be read or is not a snapshot.
+     */
+    private static long readSnapshot(Path snapshot, Consumer<JournalEvent> consumer) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel in = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && in.read(header) >= 0) {
+                // keep reading until the header is complete
+            }
+        }
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a snapshot: " + snapshot);
+        }
+        long covered = header.getLong();
+        EventJournal.scan(snapshot, HEADER_SIZE, consumer);
+        return covered;
+    }
+
+    /**
+     * The state folded from journal events: what a snapshot holds.
+     */
+    private static final class State {
+        private final LinkedHashMap<String, JournalEvent> loans = new LinkedHashMap<>();
+        private final HashMap<String, Long> borrows = new HashMap<>();
+        private final HashMap<String, JournalEvent> blacklists = new HashMap<>();
+        private final LinkedHashMap<String, JournalEvent> bookings = new LinkedHashMap<>();
+
+        /**
+         * Folds one journal or snapshot entry into the state.
+         *
+         * @param event The entry to fold.
+         */
+        private void apply(JournalEvent event) {
+            switch (event.getType()) {
+                case RENT: {
+                    this.loans.put(copyKey(event), new JournalEvent(0, JournalEvent.Type.LOAN, event.getField(0), event.getField(1),
+                            event.getField(2), event.getField(3), event.getField(4), event.getField(5), "0"));
+                    this.borrows.merge(JournalRecovery.library(event.getField(0)) + "/" + event.getField(1), 1L, Long::sum);
+                    break;
+                }
+                case LOAN:
+                    this.loans.put(copyKey(event), event);
+                    break;
+                case BORROWS:
+                    this.borrows.merge(JournalRecovery.library(event.getField(0)) + "/" + event.getField(1), event.getLongField(2), Long::sum);
+                    break;
+                case RENEW: {
+                    JournalEvent loan = this.loans.get(copyKey(event));
+                    if (loan != null && loan.getField(3).equals(event.getField(3))) {
+                        this.loans.put(copyKey(event), new JournalEvent(0, JournalEvent.Type.LOAN, loan.getField(0), loan.getField(1),
+                                loan.getField(2), loan.getField(3), loan.getField(4), event.getField(4), event.getField(5)));
+                    }
+                    break;
+                }
+                case RETURN: {
+                    JournalEvent loan = this.loans.get(copyKey(event));
+                    if (loan != null && loan.getField(3).equals(event.getField(3))) {
+                        this.loans.remove(copyKey(event));
+                    }
+                    break;
+                }
+                case BLACKLIST:
+                    this.blacklists.put(event.getField(0), event);
+                    break;
+                case ROOM_BOOKING:
+                case DEVICE_BOOKING: {
+                    String key = bookingKey(event);
+                    // re-inserting keeps bookings in the order they were made, so the latest booking of a room is restored last
+                    this.bookings.remove(key);
+                    this.bookings.put(key, event);
+                    break;
+                }
+                case ROOM_CANCELLATION:
+                    this.bookings.remove(JournalEvent.Type.ROOM_BOOKING + "/" + JournalRecovery.library(event.getField(0)) + "/" + event.getField(1)
+                            + "/" + event.getField(2) + "/" + event.getField(3));
+                    break;
+            }
+        }
+
+        /**
+         * Writes the state as snapshot entries, dropping blacklists and bookings that have ended.
+         *
+         * @param out      The stream to write to.
+         * @param sequence The sequence number of the last event covered by the snapshot.
+         * @param now      The current time in epoch milliseconds.
+         */
+        private void write(OutputStream out, long sequence, long now) {
+            for (Map.Entry<String, Long> count : this.borrows.entrySet()) {
+                int separator = count.getKey().lastIndexOf('/');
+                EventJournal.writeFrame(out, new JournalEvent(sequence, JournalEvent.Type.BORROWS,
+                        count.getKey().substring(0, separator), count.getKey().substring(separator + 1), String.valueOf(count.getValue())));
+            }
+            for (JournalEvent loan : this.loans.values()) {
+                EventJournal.writeFrame(out, new JournalEvent(sequence, JournalEvent.Type.LOAN, fields(loan)));
+            }
+            for (JournalEvent blacklist : this.blacklists.values()) {
+                if (blacklist.getLongField(1) > now) {
+                    EventJournal.writeFrame(out, new JournalEvent(sequence, blacklist.getType(), fields(blacklist)));
+                }
+            }
+            for (JournalEvent booking : this.bookings.values()) {
+                if (Math.max(booking.getLongField(3), booking.getLongField(4)) > now) {
+                    EventJournal.writeFrame(out, new JournalEvent(sequence, booking.getType(), fields(booking)));
+                }
+            }
+        }
+
+        /**
+         * Builds the key of the booking an event is about; a user can hold several reservations of a room at different times.
+         *
+         * @param event A room or device booking event.
+         * @return The type, library, room or device, email and, for reservations, start of the booking.
+         */
+        private static String bookingKey(JournalEvent event) {
+            String key = event.getType() + "/" + JournalRecovery.library(event.getField(0)) + "/" + event.getField(1) + "/" + event.getField(2);
+            return event.getFieldCount() > 5 ? key + "/" + event.getField(5) : key;
+        }
+
+        /**
+         * Builds the key of the copy a loan event is about.
+         *
+         * @param event A rent, loan, renew or return event.
+         * @return The library, ISBN and copy number of the event.
+         */
+        private static String copyKey(JournalEvent event) {
+            return JournalRecovery.library(event.getField(0)) + "/" + event.getField(1) + "/" + event.getField(2);
+        }
+
+        /**
+         * Copies the fields of an event.
+         *
+         * @param event The event.
+         * @return The fields of the event, in order.
+         */
+        private static String[] fields(JournalEvent event) {
+            String[] fields = new String[event.getFieldCount()];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = event.getField(i);
+            }
+            return fields;
+        }
+    }
+}
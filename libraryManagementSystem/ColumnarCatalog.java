@@ -0,0 +1,289 @@
+package libraryManagementSystem;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Column-oriented copy of the fields of books that reports aggregate over.
+ * Each field is a primitive array indexed by row, with strings stored as {@link StringDictionary} codes,
+ * so a report scans a few contiguous arrays in parallel instead of visiting every book object.
+ * The columns are kept in sync as books are added, removed, changed and borrowed. A borrow only sets the counter of its row,
+ * sharing the lock with other borrows and reports; the rows of removed books are reclaimed once they outnumber the live ones.
+ */
+public class ColumnarCatalog implements CatalogListener {
+    private final ConcurrentHashMap<Book<User>, Integer> rows = new ConcurrentHashMap<>();
+    private int size;
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Book<User>[] books = new Book[16];
+    private boolean[] live = new boolean[16];
+    private boolean[] rentable = new boolean[16];
+    private int[] genres = new int[16];
+    private int[] formats = new int[16];
+    private int[] authors = new int[16];
+    private int[] years = new int[16];
+    private AtomicLongArray borrows = new AtomicLongArray(16);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Adds a row for a book and follows its borrows.
+     *
+     * @param book The book that was added.
+     */
+    @Override
+    public void bookAdded(Book<User> book) {
+        this.lock.writeLock().lock();
+        try {
+            if (this.rows.containsKey(book)) {
+                return;
+            }
+            if (this.size == this.live.length) {
+                this.grow();
+            }
+            int row = this.size++;
+            this.rows.put(book, row);
+            this.books[row] = book;
+            this.live[row] = true;
+            this.rentable[row] = book.isRentable();
+            this.genres[row] = book.getGenreCode();
+            this.formats[row] = book.getFormatCode();
+            this.authors[row] = book.getAuthorCode();
+            this.years[row] = Integer.parseInt(book.getPublicationYear());
+            this.borrows.set(row, book.getNbTimesBorrowed());
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        book.addCatalogListener(this);
+    }
+
+    /**
+     * Marks the row of a removed book as dead, so scans skip it, and compacts the columns once most rows are dead.
+     *
+     * @param book The book that was removed.
+     */
+    @Override
+    public void bookRemoved(Book<User> book) {
+        book.removeCatalogListener(this);
+        this.lock.writeLock().lock();
+        try {
+            Integer row = this.rows.remove(book);
+            if (row != null) {
+                this.live[row] = false;
+                this.books[row] = null;
+                if (this.size > 16 && this.rows.size() < this.size / 2) {
+                    this.compact();
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates the row of a book whose rentability, genre, format, author, publication year or borrow count changed.
+     *
+     * @param book The book that changed.
+     */
+    @Override
+    public void bookChanged(Book<?> book) {
+        this.lock.writeLock().lock();
+        try {
+            Integer row = this.rows.get(book);
+            if (row != null) {
+                this.rentable[row] = book.isRentable();
+                this.genres[row] = book.getGenreCode();
+                this.formats[row] = book.getFormatCode();
+                this.authors[row] = book.getAuthorCode();
+                this.years[row] = Integer.parseInt(book.getPublicationYear());
+                this.borrows.set(row, book.getNbTimesBorrowed());
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates the borrow count of a book. Only the read lock is taken, so rows don't move while the counter is set.
+     *
+     * @param book The book that was borrowed.
+     */
+    @Override
+    public void bookBorrowed(Book<?> book) {
+        this.lock.readLock().lock();
+        try {
+            Integer row = this.rows.get(book);
+            if (row != null) {
+                this.borrows.set(row, book.getNbTimesBorrowed());
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of books in the catalog.
+     *
+     * @return The number of live rows.
+     */
+    public int count() {
+        this.lock.readLock().lock();
+        try {
+            return this.rows.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sums the borrow counts of the books of every genre.
+     *
+     * @return The total number of borrows per genre, omitting genres without books.
+     */
+    public Map<String, Long> borrowsByGenre() {
+        return this.borrowsBy(() -> this.genres, StringDictionary.GENRES);
+    }
+
+    /**
+     * Sums the borrow counts of the books of every author.
+     *
+     * @return The total number of borrows per author, omitting authors without books.
+     */
+    public Map<String, Long> borrowsByAuthor() {
+        return this.borrowsBy(() -> this.authors, StringDictionary.AUTHORS);
+    }
+
+    /**
+     * Sums the borrow counts of the books of every format.
+     *
+     * @return The total number of borrows per format, omitting formats without books.
+     */
+    public Map<String, Long> borrowsByFormat() {
+        return this.borrowsBy(() -> this.formats, StringDictionary.FORMATS);
+    }
+
+    /**
+     * Sums the borrow counts of the books published in every year.
+     *
+     * @return The total number of borrows per publication year, in year order, omitting years without books.
+     */
+    public Map<Integer, Long> borrowsByYear() {
+        this.lock.readLock().lock();
+        try {
+            TreeMap<Integer, Long> byYear = new TreeMap<>();
+            this.scan(this.years).forEach((year, total) -> byYear.put(year, total[0]));
+            return byYear;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the share of the books in the catalog that can be rented.
+     *
+     * @return The number of rentable books divided by the number of books, or 0 if the catalog is empty.
+     */
+    public double rentableRatio() {
+        this.lock.readLock().lock();
+        try {
+            boolean[] live = this.live;
+            boolean[] rentable = this.rentable;
+            long count = IntStream.range(0, this.size).parallel().filter(row -> live[row] && rentable[row]).count();
+            return this.rows.isEmpty() ? 0 : (double) count / this.rows.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sums the borrow counts of the live rows grouped by a dictionary-coded column.
+     *
+     * @param column     The column to group by, read under the lock since growing replaces it.
+     * @param dictionary The dictionary the column is coded with.
+     * @return The total number of borrows per decoded value, omitting values without books.
+     */
+    private Map<String, Long> borrowsBy(Supplier<int[]> column, StringDictionary dictionary) {
+        this.lock.readLock().lock();
+        try {
+            Map<String, Long> byValue = new HashMap<>();
+            this.scan(column.get()).forEach((code, total) -> byValue.put(dictionary.decode(code), total[0]));
+            return byValue;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scans the live rows in parallel, summing borrows per key of a column.
+     * Each split only holds the keys it has seen, so a column coded with a large dictionary doesn't cost
+     * an array of the whole dictionary per split. Must be called while holding the read lock.
+     *
+     * @param column The column to group by.
+     * @return The borrow total per key, holding only the keys of live rows.
+     */
+    private HashMap<Integer, long[]> scan(int[] column) {
+        boolean[] live = this.live;
+        AtomicLongArray borrows = this.borrows;
+        return IntStream.range(0, this.size).parallel().filter(row -> live[row]).collect(
+                HashMap::new,
+                (totals, row) -> totals.computeIfAbsent(column[row], key -> new long[1])[0] += borrows.get(row),
+                (left, right) -> right.forEach((key, total) -> left.merge(key, total, (a, b) -> {
+                    a[0] += b[0];
+                    return a;
+                })));
+    }
+
+    /**
+     * Moves the live rows to the front of the columns, dropping the rows of removed books.
+     * Must be called while holding the write lock.
+     */
+    private void compact() {
+        int kept = 0;
+        for (int row = 0; row < this.size; row++) {
+            if (!this.live[row]) {
+                continue;
+            }
+            if (kept != row) {
+                this.books[kept] = this.books[row];
+                this.live[kept] = true;
+                this.rentable[kept] = this.rentable[row];
+                this.genres[kept] = this.genres[row];
+                this.formats[kept] = this.formats[row];
+                this.authors[kept] = this.authors[row];
+                this.years[kept] = this.years[row];
+                this.borrows.set(kept, this.borrows.get(row));
+                this.rows.put(this.books[kept], kept);
+            }
+            kept++;
+        }
+        for (int row = kept; row < this.size; row++) {
+            this.books[row] = null;
+            this.live[row] = false;
+        }
+        this.size = kept;
+    }
+
+    /**
+     * Doubles the capacity of every column.
+     */
+    private void grow() {
+        int capacity = this.live.length * 2;
+        this.books = Arrays.copyOf(this.books, capacity);
+        this.live = Arrays.copyOf(this.live, capacity);
+        this.rentable = Arrays.copyOf(this.rentable, capacity);
+        this.genres = Arrays.copyOf(this.genres, capacity);
+        this.formats = Arrays.copyOf(this.formats, capacity);
+        this.authors = Arrays.copyOf(this.authors, capacity);
+        this.years = Arrays.copyOf(this.years, capacity);
+        AtomicLongArray borrows = new AtomicLongArray(capacity);
+        for (int row = 0; row < this.size; row++) {
+            borrows.set(row, this.borrows.get(row));
+        }
+        this.borrows = borrows;
+    }
+}
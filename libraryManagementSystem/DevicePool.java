@@ -0,0 +1,304 @@
+package libraryManagementSystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out any free electronic resource of a library by device type, optionally in a given lab room or on a given shelf,
+ * so users don't have to guess which device is free.
+ * Each free device is queued in a lock-free free-list for its type and in one for its type and location,
+ * and is taken from the head of the list in O(1). A device booked directly with {@link ElectronicResource#useDevice}
+ * stays in the lists until it is reached and skipped. A flag per list tells whether the device is queued in it,
+ * so a device freed again before it was reached is never queued twice.
+ * When no device is free, users wait in order of arrival, and a device freed at the end of a booking
+ * is handed straight to the user waiting the longest for a device of its type or location;
+ * the booking of that user is completed asynchronously.
+ */
+public class DevicePool implements CatalogListener {
+    private final ConcurrentHashMap<String, ConcurrentLinkedQueue<Slot>> free = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentLinkedQueue<Waiter>> waiting = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ElectronicResource<?, ?>, Slot> devices = new ConcurrentHashMap<>();
+    private final AtomicLong arrivals = new AtomicLong();
+    // only taken when the pool is empty, so a device freed while a user starts waiting is never missed
+    private final Object waitLock = new Object();
+
+    /**
+     * A device in the pool, with the free-lists it belongs to and whether it is queued in each of them.
+     */
+    private static final class Slot {
+        private final ElectronicResource<ElectronicDevice, User> device;
+        private final String[] keys;
+        private final AtomicBoolean[] queued;
+
+        private Slot(ElectronicResource<ElectronicDevice, User> device) {
+            this.device = device;
+            this.keys = keys(device.getDevice());
+            this.queued = new AtomicBoolean[this.keys.length];
+            for (int i = 0; i < this.keys.length; i++) {
+                this.queued[i] = new AtomicBoolean();
+            }
+        }
+
+        /**
+         * Gets the flag telling whether the device is queued in a free-list.
+         *
+         * @param key The free-list, one of the keys of the device.
+         * @return The flag.
+         */
+        private AtomicBoolean queued(String key) {
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.keys[i].equals(key)) {
+                    return this.queued[i];
+                }
+            }
+            throw new IllegalArgumentException(key);
+        }
+    }
+
+    /**
+     * A user waiting for a device.
+     */
+    private static final class Waiter {
+        private final User user;
+        private final int reservationPeriod;
+        private final long arrival;
+        private final CompletableFuture<ElectronicResource<ElectronicDevice, User>> device = new CompletableFuture<>();
+
+        private Waiter(User user, int reservationPeriod, long arrival) {
+            this.user = user;
+            this.reservationPeriod = reservationPeriod;
+            this.arrival = arrival;
+        }
+    }
+
+    /**
+     * Adds an electronic resource to the pool.
+     *
+     * @param resource The electronic resource to add.
+     */
+    public void add(ElectronicResource<ElectronicDevice, User> resource) {
+        if (this.devices.putIfAbsent(resource, new Slot(resource)) == null) {
+            resource.addCatalogListener(this);
+            if (resource.isAvailable()) {
+                this.deviceReleased(resource);
+            }
+        }
+    }
+
+    /**
+     * Removes an electronic resource from the pool. It is dropped from the free-lists when it is reached.
+     *
+     * @param resource The electronic resource to remove.
+     */
+    public void remove(ElectronicResource<ElectronicDevice, User> resource) {
+        this.devices.remove(resource);
+        resource.removeCatalogListener(this);
+    }
+
+    /**
+     * Books any free device of a type for a user. If none is free, the user waits for the next one freed.
+     *
+     * @param user              The user booking a device.
+     * @param type              The type of device, {@link PC} or {@link Tablet}.
+     * @param location          The lab room of a PC or the shelf of a tablet, or {@code null} for any.
+     * @param reservationPeriod The duration of the reservation in seconds.
+     * @return The booked device, completed when a device is booked for the user, or exceptionally
+     *         with {@link UnauthorizedUserAction} or {@link InvalidInputInformation} if the device refuses the booking.
+     *         Cancelling it gives up the place in the queue.
+     */
+    public CompletableFuture<ElectronicResource<ElectronicDevice, User>> acquire(User user, Class<? extends ElectronicDevice> type,
+            String location, int reservationPeriod) {
+        String key = key(type, location);
+        CompletableFuture<ElectronicResource<ElectronicDevice, User>> booked = new CompletableFuture<>();
+        ConcurrentLinkedQueue<Waiter> waiters = this.waiting.get(key);
+        if ((waiters == null || waiters.isEmpty()) && this.take(key, user, reservationPeriod, booked)) {
+            return booked;
+        }
+        synchronized (this.waitLock) {
+            // a device may have been freed since the free-list was checked
+            ConcurrentLinkedQueue<Waiter> queue = this.waiting.computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>());
+            if (queue.isEmpty() && this.take(key, user, reservationPeriod, booked)) {
+                return booked;
+            }
+            Waiter waiter = new Waiter(user, reservationPeriod, this.arrivals.getAndIncrement());
+            queue.add(waiter);
+            return waiter.device;
+        }
+    }
+
+    /**
+     * Gets the number of users waiting for a device of a type.
+     *
+     * @param type     The type of device.
+     * @param location The lab room or shelf, or {@code null} for any.
+     * @return The number of users waiting.
+     */
+    public int getWaiting(Class<? extends ElectronicDevice> type, String location) {
+        ConcurrentLinkedQueue<Waiter> queue = this.waiting.get(key(type, location));
+        if (queue == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Waiter waiter : queue) {
+            if (!waiter.device.isDone()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Hands a freed device to the user waiting the longest for it, or puts it back in the free-lists.
+     * The booking of the waiting user is completed asynchronously, so the code chained on it never runs
+     * on the expiration thread or while the pool is locked.
+     *
+     * @param resource The electronic resource that was freed.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public void deviceReleased(ElectronicResource<?, ?> resource) {
+        ElectronicResource<ElectronicDevice, User> device = (ElectronicResource<ElectronicDevice, User>) resource;
+        Slot slot = this.devices.get(device);
+        if (slot == null || !device.isAvailable()) {
+            return;
+        }
+        synchronized (this.waitLock) {
+            ConcurrentLinkedQueue<Waiter> queue;
+            while ((queue = this.nextWaiter(slot.keys)) != null) {
+                // the waiter keeps its place until the device accepts or refuses the booking
+                Waiter waiter = queue.peek();
+                try {
+                    if (!device.tryUseDevice(waiter.user, waiter.reservationPeriod)) {
+                        if (!device.isAvailable()) {
+                            // booked directly by another user, and handed over when it is freed again
+                            return;
+                        }
+                        // only locked for a moment, so it is queued as free
+                        break;
+                    }
+                    queue.poll();
+                    waiter.device.completeAsync(() -> device);
+                    return;
+                } catch (UnauthorizedUserAction | InvalidInputInformation e) {
+                    queue.poll();
+                    CompletableFuture.runAsync(() -> waiter.device.completeExceptionally(e));
+                }
+            }
+            for (String key : slot.keys) {
+                this.enqueue(slot, key);
+            }
+        }
+    }
+
+    /**
+     * Takes free devices from the head of a free-list until one is booked for a user.
+     *
+     * @param key               The free-list.
+     * @param user              The user booking a device.
+     * @param reservationPeriod The duration of the reservation in seconds.
+     * @param booked            Completed with the booked device, or with the refusal of the device.
+     * @return {@code true} if the future was completed, {@code false} if the free-list is empty.
+     */
+    private boolean take(String key, User user, int reservationPeriod, CompletableFuture<ElectronicResource<ElectronicDevice, User>> booked) {
+        ConcurrentLinkedQueue<Slot> queue = this.free.get(key);
+        if (queue == null) {
+            return false;
+        }
+        List<Slot> contended = new ArrayList<>();
+        try {
+            Slot slot;
+            while ((slot = queue.poll()) != null) {
+                // cleared before the device is checked, so a device freed from now on is queued again
+                slot.queued(key).set(false);
+                ElectronicResource<ElectronicDevice, User> device = slot.device;
+                // the device is also in the free-list of its type or location, or was booked directly
+                if (!device.isAvailable() || this.devices.get(device) != slot) {
+                    continue;
+                }
+                try {
+                    if (device.tryUseDevice(user, reservationPeriod)) {
+                        booked.complete(device);
+                        return true;
+                    }
+                    // another thread held the device for a moment; it is put back once the scan is over
+                    contended.add(slot);
+                } catch (UnauthorizedUserAction | InvalidInputInformation e) {
+                    this.enqueue(slot, key);
+                    booked.completeExceptionally(e);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            for (Slot slot : contended) {
+                if (slot.device.isAvailable()) {
+                    this.enqueue(slot, key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues a device in one of its free-lists, unless it is already queued in it.
+     *
+     * @param slot The device.
+     * @param key  The free-list.
+     */
+    private void enqueue(Slot slot, String key) {
+        if (slot.queued(key).compareAndSet(false, true)) {
+            this.free.computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>()).add(slot);
+        }
+    }
+
+    /**
+     * Finds the queue whose head is the user waiting the longest for a device, among the queues of its type and location.
+     *
+     * @param keys The queues the device can serve.
+     * @return The queue, or {@code null} if no user is waiting.
+     */
+    private ConcurrentLinkedQueue<Waiter> nextWaiter(String[] keys) {
+        ConcurrentLinkedQueue<Waiter> first = null;
+        for (String key : keys) {
+            ConcurrentLinkedQueue<Waiter> queue = this.waiting.get(key);
+            if (queue == null) {
+                continue;
+            }
+            // users who gave up are dropped
+            while (queue.peek() != null && queue.peek().device.isDone()) {
+                queue.poll();
+            }
+            if (queue.peek() != null && (first == null || queue.peek().arrival < first.peek().arrival)) {
+                first = queue;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Gets the free-list and queue keys a device belongs to.
+     *
+     * @param device The device.
+     * @return The key of its type, and of its type and location.
+     */
+    private static String[] keys(ElectronicDevice device) {
+        String location = device instanceof PC ? ((PC) device).getLabRoom() : device instanceof Tablet ? ((Tablet) device).getShelf() : null;
+        return location == null ? new String[] { key(device.getClass(), null) }
+                : new String[] { key(device.getClass(), null), key(device.getClass(), location) };
+    }
+
+    /**
+     * Gets the free-list and queue key of a device type and location.
+     *
+     * @param type     The type of device.
+     * @param location The lab room or shelf, or {@code null} for any.
+     * @return The key.
+     */
+    private static String key(Class<? extends ElectronicDevice> type, String location) {
+        return location == null ? type.getSimpleName() : type.getSimpleName() + "@" + location;
+    }
+}
@@ -1,14 +1,16 @@
 package libraryManagementSystem;
 
-import java.util.ArrayList;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Represents an electronic resource in the library management system.
  * Associates an electronic device with a user and handles reservation and usage rules.
+ * A user may not book the device again on the same day. When the device already bars as many users as its
+ * {@link ExpiringSet} holds, new bookings are refused until some bans expire.
  *
  * @param <T> The type of electronic device (e.g., Tablet, PC).
  * @param <U> The type of user (e.g., Student, Professor).
@@ -22,13 +24,16 @@ public class ElectronicResource <T extends ElectronicDevice, U extends User> imp
 	private int renewalPeriodProfessor;
 	private int latePenaltyPeriodProfessor;
 	private int renewalPassedProfessor;
-	private ArrayList<U> previousUsers = new ArrayList<>();
+	private ExpiringSet<U> previousUsers = new ExpiringSet<>();
 	private Admin admin;
 	private T device; // can be only table or PC
 	private boolean available = true;
 	private U user;
 	private final ReentrantLock lock = new ReentrantLock();
 	private String faculty = ""; 
+	private String library = "";
+	private final CopyOnWriteArrayList<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+	private final BookingWaitlist<U, ElectronicResource<T, U>> waitlist = new BookingWaitlist<>();
 	
 	/**
      * Constructs an electronic resource for the specified device.
@@ -48,55 +53,190 @@ public class ElectronicResource <T extends ElectronicDevice, U extends User> imp
      * @throws InvalidInputInformation If the reservation period exceeds allowed limits.
      */
 	public void useDevice(U user, int reservationPeriod) throws UnauthorizedUserAction, InvalidInputInformation {
-		if (user.getFaculty()!=this.getFaculty()) {
-			throw new UnauthorizedUserAction("Please rent books from your library");
-		}
-		// only students and professors can book the room
-		if (user.getClass().getSimpleName()=="Admin") {
-			throw new UnauthorizedUserAction("Admins can't use devices");
-		}
-		if (this.previousUsers.contains(user)) {
-			throw new UnauthorizedUserAction("You can't book a device in the same day");
-		}
-		if (user.getClass().getSimpleName()=="Student" && reservationPeriod>this.rentPeriodStudent) {
-			throw new InvalidInputInformation("You can only book a device for maximum " +this.rentPeriodStudent);
-		} else if (reservationPeriod>this.rentPeriodProfessor){
-			throw new InvalidInputInformation("You can only book a device for maximum " +this.rentPeriodProfessor);
-		}
+		this.tryUseDevice(user, reservationPeriod);
+	}
+
+	/**
+     * Allows a user to use the electronic device for a given reservation period, if it is free.
+     *
+     * @param user              The user attempting to reserve the device.
+     * @param reservationPeriod The duration of the reservation in seconds.
+     * @return {@code true} if the device was booked, {@code false} if it is in use or being booked by another user.
+     * @throws UnauthorizedUserAction If the user is not authorized to use the device.
+     * @throws InvalidInputInformation If the reservation period exceeds allowed limits.
+     */
+	boolean tryUseDevice(U user, int reservationPeriod) throws UnauthorizedUserAction, InvalidInputInformation {
+		this.checkUse(user, reservationPeriod);
 		if (lock.tryLock()) {
 			try {
 				if(this.available==true) {
-					this.available = false;
-					this.user = user;
 					int renewPeriod;
 					if (user.getClass().getSimpleName()=="Student") {
 						renewPeriod = this.renewalPeriodStudent;
 					} else {
 						renewPeriod = this.renewalPeriodProfessor;
 					}
-					// this user can't reserve a room for one day
-					this.previousUsers.add(user);
-					ScheduledExecutorService scheduler1 = Executors.newScheduledThreadPool(1);
-		            scheduler1.schedule(() -> {
-		            	this.previousUsers.remove(user);
-		                scheduler1.shutdown(); 
-		            }, renewPeriod, TimeUnit.SECONDS);
+					// this user can't reserve a room for one day; checked again here, as the set may have filled since
+					if (!this.previousUsers.addFor(user, renewPeriod)) {
+						throw new UnauthorizedUserAction("Too many users have booked this device today, please try again later");
+					}
+					this.available = false;
+					this.user = user;
 					System.out.println("Device " + this.device.getReferenceNumber() + " had been successfully booked.");
-					ScheduledExecutorService scheduler2 = Executors.newScheduledThreadPool(1);
-		            scheduler2.schedule(() -> {
-		            	this.available = true;
-		            	this.user= null;
-		                scheduler2.shutdown(); 
-		            }, reservationPeriod, TimeUnit.SECONDS);
+					ExpirationService.getInstance().schedule(this::release, reservationPeriod, TimeUnit.SECONDS);
+					Instant now = Instant.now();
+					EventJournal.record(JournalEvent.Type.DEVICE_BOOKING, this.library, this.device.getReferenceNumber(), user.getEmail(),
+							String.valueOf(now.plusSeconds(reservationPeriod).toEpochMilli()), String.valueOf(now.plusSeconds(renewPeriod).toEpochMilli()));
+					return true;
 				} else {
 					System.out.println("Someone else is using the device.");
 				}
 			} finally {
 					lock.unlock();
 			}
-		} 
+		}
+		return false;
+	}
+
+	/**
+     * Books the device for a user as soon as it is free, instead of the user trying again until it is.
+     * Users waiting for the device are served in turn when a booking ends, professors first.
+     *
+     * @param user              The user waiting for the device.
+     * @param reservationPeriod The duration of the reservation in seconds.
+     * @return This electronic resource, completed when the device is booked for the user, or exceptionally if the booking
+     *         is refused when the user's turn comes. Cancelling it gives up the place in the waitlist.
+     * @throws UnauthorizedUserAction If the user is not authorized to use the device.
+     * @throws InvalidInputInformation If the reservation period exceeds allowed limits.
+     */
+	public CompletableFuture<ElectronicResource<T, U>> waitForDevice(U user, int reservationPeriod) throws UnauthorizedUserAction, InvalidInputInformation {
+		this.checkUse(user, reservationPeriod);
+		CompletableFuture<ElectronicResource<T, U>> booking = this.waitlist.join(user, reservationPeriod);
+		// the device may already be free, or have been freed while the user joined
+		this.serveWaitlist();
+		if (!booking.isDone()) {
+			System.out.println("Device " + this.device.getReferenceNumber() + " will be booked for you when it is free. You are number "
+					+ this.waitlist.position(user) + " on the waitlist.");
+		}
+		return booking;
+	}
+
+	/**
+     * Removes a user from the waitlist of the device.
+     *
+     * @param user The user leaving the waitlist.
+     * @return {@code true} if the user was waiting, {@code false} otherwise.
+     */
+	public boolean leaveWaitlist(U user) {
+		return this.waitlist.leave(user);
+	}
+
+	/**
+     * Gets the position of a user in the waitlist of the device.
+     *
+     * @param user The user to look up.
+     * @return The position of the user, counting from 1, or 0 if the user is not waiting.
+     */
+	public long getWaitlistPosition(U user) {
+		return this.waitlist.position(user);
+	}
+
+	/**
+     * Gets the number of users waiting for the device.
+     *
+     * @return The number of waiting users.
+     */
+	public int getWaitlistSize() {
+		return this.waitlist.size();
+	}
+
+	/**
+     * Checks that a user may use the device for a period.
+     *
+     * @param user              The user attempting to reserve the device.
+     * @param reservationPeriod The duration of the reservation in seconds.
+     * @throws UnauthorizedUserAction If the user is not authorized to use the device.
+     * @throws InvalidInputInformation If the reservation period exceeds allowed limits.
+     */
+	private void checkUse(U user, int reservationPeriod) throws UnauthorizedUserAction, InvalidInputInformation {
+		if (user.getFacultyCode() != StringDictionary.FACULTIES.lookup(this.getFaculty())) {
+			throw new UnauthorizedUserAction("Please rent books from your library");
+		}
+		// only students and professors can book the room
+		if (user.getClass().getSimpleName()=="Admin") {
+			throw new UnauthorizedUserAction("Admins can't use devices");
+		}
+		if (this.previousUsers.contains(user)) {
+			throw new UnauthorizedUserAction("You can't book a device in the same day");
+		}
+		if (this.previousUsers.isFull()) {
+			throw new UnauthorizedUserAction("Too many users have booked this device today, please try again later");
+		}
+		if (user.getClass().getSimpleName()=="Student" && reservationPeriod>this.rentPeriodStudent) {
+			throw new InvalidInputInformation("You can only book a device for maximum " +this.rentPeriodStudent);
+		} else if (reservationPeriod>this.rentPeriodProfessor){
+			throw new InvalidInputInformation("You can only book a device for maximum " +this.rentPeriodProfessor);
+		}
+	}
+
+	/**
+     * Frees the device at the end of a booking and hands it to the next user on its waitlist.
+     * If nobody is waiting, the listeners, such as the device pool of the library, are notified.
+     */
+	private void release() {
+		boolean free;
+		this.lock.lock();
+		try {
+			this.available = true;
+			this.user = null;
+			this.serveWaitlist();
+			free = this.available;
+		} finally {
+			this.lock.unlock();
+		}
+		if (free) {
+			for (CatalogListener listener : this.listeners) {
+				listener.deviceReleased(this);
+			}
+		}
+	}
+
+	/**
+     * Books the device for the users waiting for it, in turn, while it is free.
+     */
+	private void serveWaitlist() {
+		this.lock.lock();
+		try {
+			this.waitlist.serve((user, reservationPeriod) -> this.available && this.tryUseDevice(user, reservationPeriod) ? this : null);
+		} finally {
+			this.lock.unlock();
+		}
 	}
 	
+	/**
+     * Restores a booking recorded in the journal, keeping only the parts that have not ended yet.
+     *
+     * @param user     The user who booked the device.
+     * @param until    The end of the booking.
+     * @param banUntil The end of the period in which the user can't book the device again.
+     */
+	void restoreBooking(U user, Instant until, Instant banUntil) {
+		long now = System.currentTimeMillis();
+		this.lock.lock();
+		try {
+			if (until.toEpochMilli() > now) {
+				this.available = false;
+				this.user = user;
+				ExpirationService.getInstance().schedule(this::release, until.toEpochMilli() - now, TimeUnit.MILLISECONDS);
+			}
+			if (banUntil.toEpochMilli() > now && !this.previousUsers.add(user, banUntil.toEpochMilli())) {
+				System.out.println("Device " + this.device.getReferenceNumber() + " can't bar more users today, so " + user.getName() + " may book it again.");
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
 	/**
      * Gets the electronic device associated with this resource.
      *
@@ -381,19 +521,19 @@ public class ElectronicResource <T extends ElectronicDevice, U extends User> imp
 
 	
 	 /**
-     * Gets the list of previous users of this resource.
+     * Gets the previous users of this resource, who can't use it again until their renewal period has passed.
      *
-     * @return A list of previous users.
+     * @return The set of previous users.
      */
-	public ArrayList<U> getPreviousUsers() {
+	public ExpiringSet<U> getPreviousUsers() {
 		return previousUsers;
 	}
 	 /**
-     * Sets the list of previous users of this resource.
+     * Sets the previous users of this resource.
      *
-     * @param previousUsers The list of previous users.
+     * @param previousUsers The set of previous users.
      */
-	public void setPreviousUsers(ArrayList<U> previousUsers) {
+	public void setPreviousUsers(ExpiringSet<U> previousUsers) {
 		this.previousUsers = previousUsers;
 	}
 	/**
@@ -412,4 +552,38 @@ public class ElectronicResource <T extends ElectronicDevice, U extends User> imp
 	public void setFaculty(String faculty) {
 		this.faculty = faculty;
 	}
+	/**
+     * Gets the journal key of the library holding this resource.
+     *
+     * @return The key of the library, as given by {@link Library#getJournalKey()}.
+     */
+	String getLibrary() {
+		return library;
+	}
+	/**
+     * Sets the journal key of the library holding this resource.
+     *
+     * @param library The key of the library.
+     */
+	void setLibrary(String library) {
+		this.library = library;
+	}
+
+	/**
+     * Registers a listener to be notified when the device is freed.
+     *
+     * @param listener The listener to register.
+     */
+	public void addCatalogListener(CatalogListener listener) {
+		this.listeners.addIfAbsent(listener);
+	}
+
+	/**
+     * Unregisters a listener from this electronic resource.
+     *
+     * @param listener The listener to unregister.
+     */
+	public void removeCatalogListener(CatalogListener listener) {
+		this.listeners.remove(listener);
+	}
 }
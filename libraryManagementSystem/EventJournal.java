@@ -0,0 +1,474 @@
+package libraryManagementSystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of rent, return, renew, booking and blacklist events.
+ * Appending only encodes the event into a buffer; a background thread writes the buffered events
+ * with one write and one fsync per batch (group commit), so renting a book never waits for the disk.
+ * A batch is flushed once it holds {@code batchSize} events or its oldest event is {@code flushInterval} old,
+ * and {@link #sync()} waits until everything appended so far is durable.
+ * Each event is framed with its length and a CRC32, so a torn write at the end of the file is detected and dropped.
+ * The journal can be rotated to a new file, so a {@link CheckpointManager} can drop the files covered by a snapshot.
+ * If a batch cannot be written, the journal is marked failed and reports it once: later events are dropped
+ * and {@link #sync()}, {@link #rotate} and {@link #close()} throw the failure.
+ */
+public class EventJournal implements Closeable {
+    private static volatile EventJournal installed;
+
+    private FileChannel channel;
+    private FileChannel nextChannel;
+    private long rotatedSequence = -1;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = this.lock.newCondition();
+    private final Condition flushed = this.lock.newCondition();
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private int bufferedEvents;
+    private long oldestBufferedAt;
+    private long lastSequence;
+    private long durableSequence;
+    private boolean syncRequested;
+    private boolean closed;
+    private IOException failure;
+    private final Thread flusher;
+
+    /**
+     * Opens a journal, creating the file if it does not exist. Events already in the file are kept
+     * and new events continue their sequence; a torn event at the end of the file is truncated.
+     *
+     * @param file          The journal file.
+     * @param batchSize     The number of events written per fsync.
+     * @param flushInterval The longest time an event waits before its batch is written.
+     * @param unit          The time unit of the flush interval.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    public EventJournal(Path file, int batchSize, long flushInterval, TimeUnit unit) throws IOException {
+        this(file, 0, batchSize, flushInterval, unit);
+    }
+
+    /**
+     * Opens a journal, creating the file if it does not exist. Events already in the file are kept
+     * and new events continue their sequence; a torn event at the end of the file is truncated.
+     *
+     * @param file          The journal file.
+     * @param lastSequence  The sequence number new events continue from if the file has no events,
+     *                      e.g., the last sequence number of the previous journal file.
+     * @param batchSize     The number of events written per fsync.
+     * @param flushInterval The longest time an event waits before its batch is written.
+     * @param unit          The time unit of the flush interval.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    public EventJournal(Path file, long lastSequence, int batchSize, long flushInterval, TimeUnit unit) throws IOException {
+        this.batchSize = Math.max(batchSize, 1);
+        this.flushIntervalNanos = Math.max(unit.toNanos(flushInterval), 1);
+        long[] end = new long[2];
+        if (Files.exists(file)) {
+            end = scan(file, 0, event -> {
+            });
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.truncate(end[0]);
+        this.channel.position(end[0]);
+        this.lastSequence = Math.max(end[1], lastSequence);
+        this.durableSequence = this.lastSequence;
+        this.flusher = new Thread(this::flushLoop, "library-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Installs the journal that rent, return, renew, booking and blacklist events are recorded to.
+     *
+     * @param journal The journal, or {@code null} to stop recording.
+     */
+    public static void install(EventJournal journal) {
+        installed = journal;
+    }
+
+    /**
+     * Gets the journal events are recorded to.
+     *
+     * @return The installed journal, or {@code null} if events are not recorded.
+     */
+    public static EventJournal getInstalled() {
+        return installed;
+    }
+
+    /**
+     * Records an event to the installed journal, if any.
+     *
+     * @param type   The kind of event.
+     * @param fields The fields of the event, as listed for its type.
+     */
+    static void record(JournalEvent.Type type, String... fields) {
+        EventJournal journal = installed;
+        if (journal != null) {
+            journal.append(type, fields);
+        }
+    }
+
+    /**
+     * Appends an event to the journal without waiting for it to be written.
+     *
+     * @param type   The kind of event.
+     * @param fields The fields of the event, as listed for its type.
+     * @return The sequence number of the event, or -1 if the journal is closed or failed.
+     */
+    public long append(JournalEvent.Type type, String... fields) {
+        this.lock.lock();
+        try {
+            if (this.closed || this.failure != null) {
+                return -1;
+            }
+            long sequence = ++this.lastSequence;
+            writeFrame(this.buffer, new JournalEvent(sequence, type, fields));
+            if (this.bufferedEvents++ == 0) {
+                this.oldestBufferedAt = System.nanoTime();
+                this.pending.signal();
+            } else if (this.bufferedEvents >= this.batchSize) {
+                this.pending.signal();
+            }
+            return sequence;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every event appended so far is written and flushed to disk.
+     *
+     * @throws IOException If the journal could not be written.
+     */
+    public void sync() throws IOException {
+        this.lock.lock();
+        try {
+            long target = this.lastSequence;
+            while (this.durableSequence < target && this.failure == null) {
+                this.syncRequested = true;
+                this.pending.signal();
+                this.flushed.awaitUninterruptibly();
+            }
+            if (this.failure != null) {
+                throw this.failure;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Switches the journal to a new file. Every event appended before the call is in the previous file,
+     * which is flushed and closed before this method returns, and later events go to the new file.
+     *
+     * @param file The new journal file, which must not exist yet.
+     * @return The sequence number of the last event in the previous file.
+     * @throws IOException If the new file cannot be created or the previous one could not be written.
+     */
+    public long rotate(Path file) throws IOException {
+        FileChannel next = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.lock.lock();
+        try {
+            if (this.closed || this.failure != null) {
+                next.close();
+                throw this.failure != null ? this.failure : new IOException("The journal is closed");
+            }
+            this.nextChannel = next;
+            this.rotatedSequence = -1;
+            this.syncRequested = true;
+            this.pending.signal();
+            while (this.rotatedSequence < 0 && this.failure == null) {
+                this.flushed.awaitUninterruptibly();
+            }
+            if (this.failure != null) {
+                throw this.failure;
+            }
+            return this.rotatedSequence;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if the journal failed to write a batch and stopped recording events.
+     *
+     * @return {@code true} if the journal failed, {@code false} otherwise.
+     */
+    public boolean isFailed() {
+        this.lock.lock();
+        try {
+            return this.failure != null;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the sequence number of the last event appended.
+     *
+     * @return The last sequence number, or 0 if the journal is empty.
+     */
+    public long getLastSequence() {
+        this.lock.lock();
+        try {
+            return this.lastSequence;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the sequence number of the last event flushed to disk.
+     *
+     * @return The last durable sequence number, or 0 if nothing was flushed.
+     */
+    public long getDurableSequence() {
+        this.lock.lock();
+        try {
+            return this.durableSequence;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the remaining events and closes the journal.
+     *
+     * @throws IOException If the journal could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.pending.signal();
+        } finally {
+            this.lock.unlock();
+        }
+        try {
+            this.flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.channel.close();
+        if (this.failure != null) {
+            throw this.failure;
+        }
+    }
+
+    /**
+     * Reads every complete event of a journal file in order.
+     *
+     * @param file     The journal file.
+     * @param consumer Called with each event.
+     * @return The sequence number of the last event, or 0 if the journal is empty.
+     * @throws IOException If the file cannot be read.
+     */
+    public static long replay(Path file, Consumer<JournalEvent> consumer) throws IOException {
+        return scan(file, 0, consumer)[1];
+    }
+
+    /**
+     * Writes batches to the file until the journal is closed.
+     */
+    private void flushLoop() {
+        while (true) {
+            ByteArrayOutputStream batch;
+            long sequence;
+            boolean last;
+            FileChannel next;
+            this.lock.lock();
+            try {
+                while (!this.closed && !this.syncRequested && this.bufferedEvents < this.batchSize) {
+                    if (this.bufferedEvents == 0) {
+                        this.pending.awaitUninterruptibly();
+                        continue;
+                    }
+                    long wait = this.oldestBufferedAt + this.flushIntervalNanos - System.nanoTime();
+                    if (wait <= 0) {
+                        break;
+                    }
+                    try {
+                        this.pending.awaitNanos(wait);
+                    } catch (InterruptedException e) {
+                        // only close() stops the flusher
+                    }
+                }
+                batch = this.buffer;
+                sequence = this.lastSequence;
+                last = this.closed;
+                next = this.nextChannel;
+                this.nextChannel = null;
+                this.buffer = new ByteArrayOutputStream();
+                this.bufferedEvents = 0;
+                this.syncRequested = false;
+            } finally {
+                this.lock.unlock();
+            }
+            IOException error = null;
+            if (batch.size() > 0) {
+                try {
+                    ByteBuffer bytes = ByteBuffer.wrap(batch.toByteArray());
+                    while (bytes.hasRemaining()) {
+                        this.channel.write(bytes);
+                    }
+                    this.channel.force(false);
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            if (next != null && error == null) {
+                try {
+                    this.channel.close();
+                } catch (IOException e) {
+                    error = e;
+                }
+                this.channel = next;
+            }
+            if (error != null) {
+                System.out.println("The event journal could not be written and stopped recording events: " + error.getMessage());
+            }
+            this.lock.lock();
+            try {
+                if (error != null) {
+                    this.failure = error;
+                } else {
+                    this.durableSequence = sequence;
+                    if (next != null) {
+                        this.rotatedSequence = sequence;
+                    }
+                }
+                this.flushed.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+            if (last || error != null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Encodes an event as a frame: payload length, payload CRC32, then the payload.
+     *
+     * @param out   The stream to write the frame to.
+     * @param event The event to encode.
+     * @throws IllegalStateException If the stream fails; in-memory streams never do.
+     */
+    static void writeFrame(OutputStream out, JournalEvent event) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+            DataOutputStream data = new DataOutputStream(payload);
+            data.writeLong(event.getSequence());
+            data.writeByte(event.getType().ordinal());
+            data.writeByte(event.getFieldCount());
+            for (int i = 0; i < event.getFieldCount(); i++) {
+                data.writeUTF(event.getField(i));
+            }
+            byte[] bytes = payload.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            DataOutputStream frame = new DataOutputStream(out);
+            frame.writeInt(bytes.length);
+            frame.writeInt((int) crc.getValue());
+            frame.write(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads the complete events of a journal file, stopping at the first torn frame.
+     *
+     * @param file     The journal file.
+     * @param offset   The position of the first frame.
+     * @param consumer Called with each event.
+     * @return The position right after the last complete frame at index 0, and the last sequence number at index 1.
+     * @throws IOException If the file cannot be read, or holds a frame whose checksum matches but whose event cannot be decoded.
+     */
+    static long[] scan(Path file, long offset, Consumer<JournalEvent> consumer) throws IOException {
+        long position = offset;
+        long sequence = 0;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            in.position(offset);
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while (true) {
+                header.clear();
+                if (readFully(in, header) < 8) {
+                    break;
+                }
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length < 10 || length > in.size() - in.position()) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(in, payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload.array());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload.array()));
+                JournalEvent event;
+                try {
+                    long number = data.readLong();
+                    int type = data.readUnsignedByte();
+                    if (type >= JournalEvent.Type.values().length) {
+                        throw new IOException("Corrupt journal record at position " + position + " in " + file + ": unknown event type " + type);
+                    }
+                    String[] fields = new String[data.readUnsignedByte()];
+                    for (int i = 0; i < fields.length; i++) {
+                        fields[i] = data.readUTF();
+                    }
+                    event = new JournalEvent(number, JournalEvent.Type.values()[type], fields);
+                } catch (EOFException e) {
+                    throw new IOException("Corrupt journal record at position " + position + " in " + file + ": truncated event", e);
+                }
+                sequence = event.getSequence();
+                consumer.accept(event);
+                position = in.position();
+            }
+        }
+        return new long[] { position, sequence };
+    }
+
+    /**
+     * Reads from a channel until the buffer is full or the end of the file is reached.
+     *
+     * @param in     The channel to read.
+     * @param buffer The buffer to fill.
+     * @return The number of bytes read.
+     * @throws IOException If the channel cannot be read.
+     */
+    private static int readFully(FileChannel in, ByteBuffer buffer) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = in.read(buffer);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+}
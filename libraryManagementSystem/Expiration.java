@@ -0,0 +1,75 @@
+package libraryManagementSystem;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Represents a timer scheduled on the {@link ExpirationService}.
+ * The handle can be used to cancel the timer before it expires.
+ */
+public class Expiration {
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final ExpirationService service;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+    final Runnable task;
+    final long deadline;
+    long remainingRounds;
+    Expiration prev;
+    Expiration next;
+    ExpirationService.Bucket bucket;
+
+    /**
+     * Constructs a new pending timer.
+     *
+     * @param service  The expiration service the timer belongs to.
+     * @param task     The task to run when the timer expires.
+     * @param deadline The deadline of the timer in nanoseconds, relative to the service start time.
+     */
+    Expiration(ExpirationService service, Runnable task, long deadline) {
+        this.service = service;
+        this.task = task;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Cancels the timer so that its task never runs.
+     *
+     * @return {@code true} if the timer was cancelled, {@code false} if it had already expired or been cancelled.
+     */
+    public boolean cancel() {
+        if (this.state.compareAndSet(PENDING, CANCELLED)) {
+            this.service.cancelled(this);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the timer has been cancelled.
+     *
+     * @return {@code true} if the timer was cancelled, {@code false} otherwise.
+     */
+    public boolean isCancelled() {
+        return this.state.get() == CANCELLED;
+    }
+
+    /**
+     * Checks if the timer has expired and its task has been run.
+     *
+     * @return {@code true} if the timer expired, {@code false} otherwise.
+     */
+    public boolean isExpired() {
+        return this.state.get() == EXPIRED;
+    }
+
+    /**
+     * Marks the timer as expired.
+     *
+     * @return {@code true} if the timer was still pending, {@code false} if it had been cancelled.
+     */
+    boolean expire() {
+        return this.state.compareAndSet(PENDING, EXPIRED);
+    }
+}
@@ -0,0 +1,210 @@
+package libraryManagementSystem;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide expiration service shared by books, meeting rooms and electronic resources.
+ * Rental, penalty and reservation expirations are scheduled on a single hashed timer wheel
+ * driven by one daemon thread, so scheduling and cancelling a timer are O(1) and the
+ * number of threads stays fixed no matter how many timers are pending.
+ */
+public final class ExpirationService {
+    private static final ExpirationService INSTANCE = new ExpirationService(100, TimeUnit.MILLISECONDS, 512);
+
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] wheel;
+    private final Queue<Expiration> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Expiration> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingTimers = new AtomicLong();
+    private final Thread worker;
+    private final long startTime;
+    private long tick = 0;
+
+    /**
+     * Constructs a new timer wheel.
+     *
+     * @param tickDuration The duration of one tick of the wheel.
+     * @param unit         The unit of the tick duration.
+     * @param wheelSize    The number of buckets in the wheel, rounded up to a power of two.
+     */
+    private ExpirationService(long tickDuration, TimeUnit unit, int wheelSize) {
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(Math.max(wheelSize, 1) * 2 - 1);
+        this.mask = size - 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            this.wheel[i] = new Bucket();
+        }
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, "library-expiration-service");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Gets the process-wide expiration service.
+     *
+     * @return The shared expiration service.
+     */
+    public static ExpirationService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Schedules a task to run once the given delay has elapsed.
+     * The task runs on the expiration thread, so it must be short and must not block.
+     *
+     * @param task  The task to run when the timer expires.
+     * @param delay The delay before the task runs.
+     * @param unit  The unit of the delay.
+     * @return A handle that can be used to cancel the timer.
+     */
+    public Expiration schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() - this.startTime + Math.max(unit.toNanos(delay), 0);
+        Expiration expiration = new Expiration(this, task, deadline);
+        this.pendingTimers.incrementAndGet();
+        this.scheduled.add(expiration);
+        return expiration;
+    }
+
+    /**
+     * Gets the number of timers that have been scheduled but have neither expired nor been cancelled.
+     *
+     * @return The number of pending timers.
+     */
+    public long getPendingTimers() {
+        return this.pendingTimers.get();
+    }
+
+    /**
+     * Queues a cancelled timer so the worker thread can unlink it from its bucket.
+     *
+     * @param expiration The cancelled timer.
+     */
+    void cancelled(Expiration expiration) {
+        this.pendingTimers.decrementAndGet();
+        this.cancelled.add(expiration);
+    }
+
+    /**
+     * Main loop of the worker thread: waits for each tick, then expires the matching bucket.
+     */
+    private void run() {
+        while (true) {
+            long deadline = this.tickNanos * (this.tick + 1);
+            long sleepNanos = deadline - (System.nanoTime() - this.startTime);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                continue;
+            }
+            this.removeCancelled();
+            this.transferScheduled();
+            this.wheel[(int) (this.tick & this.mask)].expire(this, deadline);
+            this.tick++;
+        }
+    }
+
+    /**
+     * Moves newly scheduled timers from the hand-off queue into their wheel buckets.
+     */
+    private void transferScheduled() {
+        Expiration expiration;
+        while ((expiration = this.scheduled.poll()) != null) {
+            if (expiration.isCancelled()) {
+                continue;
+            }
+            long ticks = Math.max(expiration.deadline / this.tickNanos, this.tick);
+            expiration.remainingRounds = (ticks - this.tick) / this.wheel.length;
+            this.wheel[(int) (ticks & this.mask)].add(expiration);
+        }
+    }
+
+    /**
+     * Unlinks cancelled timers from their buckets.
+     */
+    private void removeCancelled() {
+        Expiration expiration;
+        while ((expiration = this.cancelled.poll()) != null) {
+            if (expiration.bucket != null) {
+                expiration.bucket.remove(expiration);
+            }
+        }
+    }
+
+    /**
+     * Runs an expired timer's task, keeping the worker alive if the task fails.
+     *
+     * @param expiration The expired timer.
+     */
+    private void fire(Expiration expiration) {
+        if (expiration.expire()) {
+            this.pendingTimers.decrementAndGet();
+            try {
+                expiration.task.run();
+            } catch (RuntimeException e) {
+                System.out.println("Expiration task failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A bucket of the wheel, kept as a doubly linked list so timers can be unlinked in O(1).
+     * Buckets are only touched by the worker thread.
+     */
+    static final class Bucket {
+        private Expiration head;
+        private Expiration tail;
+
+        private void add(Expiration expiration) {
+            expiration.bucket = this;
+            if (this.head == null) {
+                this.head = expiration;
+                this.tail = expiration;
+            } else {
+                this.tail.next = expiration;
+                expiration.prev = this.tail;
+                this.tail = expiration;
+            }
+        }
+
+        private void remove(Expiration expiration) {
+            if (expiration.prev != null) {
+                expiration.prev.next = expiration.next;
+            } else {
+                this.head = expiration.next;
+            }
+            if (expiration.next != null) {
+                expiration.next.prev = expiration.prev;
+            } else {
+                this.tail = expiration.prev;
+            }
+            expiration.prev = null;
+            expiration.next = null;
+            expiration.bucket = null;
+        }
+
+        private void expire(ExpirationService service, long deadline) {
+            Expiration expiration = this.head;
+            while (expiration != null) {
+                Expiration next = expiration.next;
+                if (expiration.remainingRounds <= 0 && expiration.deadline <= deadline) {
+                    this.remove(expiration);
+                    service.fire(expiration);
+                } else if (expiration.isCancelled()) {
+                    this.remove(expiration);
+                } else {
+                    expiration.remainingRounds--;
+                }
+                expiration = next;
+            }
+        }
+    }
+}
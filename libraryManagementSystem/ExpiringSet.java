@@ -0,0 +1,174 @@
+package libraryManagementSystem;
+
+import java.util.IdentityHashMap;
+import java.util.PriorityQueue;
+
+/**
+ * A set whose elements are removed once their time has passed, such as the users who may not book a meeting room
+ * or device again on the same day.
+ * Elements are held by identity with their expiry time, so checking membership is O(1), and an expired element
+ * is treated as absent as soon as its time has passed. Expired elements are removed in bulk, in order of expiry,
+ * when elements are added, so no timer is needed per element.
+ * The set holds at most a given number of elements: when it is full, a new element is refused rather than removing
+ * another one, so a ban is never lifted early to make room; callers refuse the booking or report the refusal.
+ *
+ * @param <E> The type of the elements (e.g., Student, Professor).
+ */
+public class ExpiringSet<E> {
+    private static final int DEFAULT_CAPACITY = 100000;
+
+    private final int capacity;
+    private final IdentityHashMap<E, Long> expiries = new IdentityHashMap<>();
+    private final PriorityQueue<Entry<E>> byExpiry = new PriorityQueue<>((a, b) -> Long.compare(a.expiry, b.expiry));
+
+    /**
+     * An element with the expiry time it was added with. Entries left behind when an element
+     * is added again with a new expiry are skipped when they reach the head of the queue.
+     */
+    private static final class Entry<E> {
+        private final E element;
+        private final long expiry;
+
+        private Entry(E element, long expiry) {
+            this.element = element;
+            this.expiry = expiry;
+        }
+    }
+
+    /**
+     * Constructs a new expiring set holding at most 100000 elements.
+     */
+    public ExpiringSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new expiring set.
+     *
+     * @param capacity The maximum number of elements in the set.
+     * @throws IllegalArgumentException If the capacity is not positive.
+     */
+    public ExpiringSet(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds an element until a time. An element already in the set keeps the later of its two expiry times.
+     *
+     * @param element The element to add.
+     * @param until   The expiry time in epoch milliseconds.
+     * @return {@code false} if the element is new and the set is full, so it was not added, {@code true} otherwise.
+     */
+    public synchronized boolean add(E element, long until) {
+        long now = System.currentTimeMillis();
+        this.expire(now);
+        if (until <= now) {
+            return true;
+        }
+        Long expiry = this.expiries.get(element);
+        if (expiry != null && expiry >= until) {
+            return true;
+        }
+        if (expiry == null && this.expiries.size() >= this.capacity) {
+            return false;
+        }
+        this.expiries.put(element, until);
+        this.byExpiry.add(new Entry<>(element, until));
+        // entries replaced by a later expiry pile up when the same elements are added again and again
+        if (this.byExpiry.size() > 2 * this.expiries.size() + 16) {
+            this.byExpiry.removeIf(entry -> !this.isCurrent(entry));
+        }
+        return true;
+    }
+
+    /**
+     * Adds an element for a period of time from now.
+     *
+     * @param element The element to add.
+     * @param seconds The period in seconds.
+     * @return {@code false} if the element is new and the set is full, so it was not added, {@code true} otherwise.
+     */
+    public boolean addFor(E element, long seconds) {
+        return this.add(element, System.currentTimeMillis() + seconds * 1000);
+    }
+
+    /**
+     * Checks if an element is in the set and has not expired.
+     *
+     * @param element The element.
+     * @return {@code true} if the element is in the set, {@code false} otherwise.
+     */
+    public synchronized boolean contains(E element) {
+        Long expiry = this.expiries.get(element);
+        return expiry != null && expiry > System.currentTimeMillis();
+    }
+
+    /**
+     * Removes an element from the set.
+     *
+     * @param element The element to remove.
+     * @return {@code true} if the element was in the set and had not expired, {@code false} otherwise.
+     */
+    public synchronized boolean remove(E element) {
+        Long expiry = this.expiries.remove(element);
+        return expiry != null && expiry > System.currentTimeMillis();
+    }
+
+    /**
+     * Gets the number of elements in the set that have not expired.
+     *
+     * @return The number of elements.
+     */
+    public synchronized int size() {
+        this.expire(System.currentTimeMillis());
+        return this.expiries.size();
+    }
+
+    /**
+     * Checks if the set holds as many elements that have not expired as it can, so a new element would be refused.
+     *
+     * @return {@code true} if the set is full, {@code false} otherwise.
+     */
+    public synchronized boolean isFull() {
+        this.expire(System.currentTimeMillis());
+        return this.expiries.size() >= this.capacity;
+    }
+
+    /**
+     * Gets the maximum number of elements in the set.
+     *
+     * @return The capacity of the set.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Removes the elements whose time has passed, in order of expiry.
+     *
+     * @param now The current time in epoch milliseconds.
+     */
+    private void expire(long now) {
+        while (!this.byExpiry.isEmpty() && this.byExpiry.peek().expiry <= now) {
+            Entry<E> entry = this.byExpiry.poll();
+            if (this.isCurrent(entry)) {
+                this.expiries.remove(entry.element);
+            }
+        }
+    }
+
+    /**
+     * Checks if an entry holds the current expiry time of its element, rather than one replaced since.
+     * The times are compared by value: the map holds its own boxed copy of the time.
+     *
+     * @param entry The entry.
+     * @return {@code true} if the element is in the set with the expiry time of the entry, {@code false} otherwise.
+     */
+    private boolean isCurrent(Entry<E> entry) {
+        Long expiry = this.expiries.get(entry.element);
+        return expiry != null && expiry == entry.expiry;
+    }
+}
@@ -0,0 +1,385 @@
+package libraryManagementSystem;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bitmap index over the facets of books: genre, format, rentable, availability and publication year.
+ * Every book gets an ordinal, and every facet value keeps a bitmap of the ordinals of the books having it,
+ * so a {@link FacetQuery} is answered with bitwise AND, OR and NOT instead of scanning the catalog.
+ * The ordinals of removed books are given to the next books added, so the bitmaps don't grow with churn.
+ * Rentals and returns only mark the book in a concurrent set, so renting never waits for the index,
+ * and the availability bits of the marked books are refreshed before the next query.
+ */
+public class FacetIndex implements CatalogListener {
+    private final HashMap<Book<User>, Integer> ordinals = new HashMap<>();
+    private final ArrayList<Book<User>> books = new ArrayList<>();
+    private final BitSet live = new BitSet();
+    private final BitSet freeOrdinals = new BitSet();
+    private final Set<Book<?>> availabilityChanged = ConcurrentHashMap.newKeySet();
+    private final BitSet rentable = new BitSet();
+    private final BitSet available = new BitSet();
+    private final HashMap<Integer, BitSet> genres = new HashMap<>();
+    private final HashMap<String, BitSet> formats = new HashMap<>();
+    private final TreeMap<Integer, BitSet> years = new TreeMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Adds a book to the index and follows its availability.
+     *
+     * @param book The book that was added.
+     */
+    @Override
+    public void bookAdded(Book<User> book) {
+        this.lock.writeLock().lock();
+        try {
+            if (this.ordinals.containsKey(book)) {
+                return;
+            }
+            int ordinal = this.freeOrdinals.nextSetBit(0);
+            if (ordinal < 0) {
+                ordinal = this.books.size();
+                this.books.add(book);
+            } else {
+                this.freeOrdinals.clear(ordinal);
+                this.books.set(ordinal, book);
+            }
+            this.ordinals.put(book, ordinal);
+            this.live.set(ordinal);
+            this.set(book, ordinal);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        book.addCatalogListener(this);
+    }
+
+    /**
+     * Removes a book from the index.
+     *
+     * @param book The book that was removed.
+     */
+    @Override
+    public void bookRemoved(Book<User> book) {
+        book.removeCatalogListener(this);
+        this.availabilityChanged.remove(book);
+        this.lock.writeLock().lock();
+        try {
+            Integer ordinal = this.ordinals.remove(book);
+            if (ordinal == null) {
+                return;
+            }
+            this.books.set(ordinal, null);
+            this.live.clear(ordinal);
+            this.clear(book, ordinal);
+            this.freeOrdinals.set(ordinal);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a book from the bitmaps of its current facet values before one of them changes.
+     *
+     * @param book The book about to change.
+     */
+    @Override
+    public void bookChanging(Book<?> book) {
+        this.lock.writeLock().lock();
+        try {
+            Integer ordinal = this.ordinals.get(book);
+            if (ordinal != null) {
+                this.clear(book, ordinal);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a book to the bitmaps of its new facet values.
+     *
+     * @param book The book that changed.
+     */
+    @Override
+    public void bookChanged(Book<?> book) {
+        this.lock.writeLock().lock();
+        try {
+            Integer ordinal = this.ordinals.get(book);
+            if (ordinal != null) {
+                this.set(book, ordinal);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks a book whose availability changed after it was rented or returned, to be refreshed before the next query.
+     *
+     * @param book The book whose availability changed.
+     */
+    @Override
+    public void availabilityChanged(Book<?> book) {
+        this.availabilityChanged.add(book);
+    }
+
+    /**
+     * Finds the books matching a query.
+     *
+     * @param query The query to evaluate.
+     * @return A list of the matching books, in the order of their ordinals.
+     */
+    public List<Book<User>> search(FacetQuery query) {
+        this.refreshAvailability();
+        this.lock.readLock().lock();
+        try {
+            BitSet matches = query.evaluate(this);
+            List<Book<User>> results = new ArrayList<>(matches.cardinality());
+            for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+                results.add(this.books.get(ordinal));
+            }
+            return results;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the books matching a query.
+     *
+     * @param query The query to evaluate.
+     * @return The number of matching books.
+     */
+    public int count(FacetQuery query) {
+        this.refreshAvailability();
+        this.lock.readLock().lock();
+        try {
+            return query.evaluate(this).cardinality();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the books matching a query for every genre.
+     *
+     * @param query The query to evaluate.
+     * @return The number of matching books per genre, omitting genres without matches.
+     */
+    public Map<String, Integer> genreCounts(FacetQuery query) {
+        this.refreshAvailability();
+        this.lock.readLock().lock();
+        try {
+            Map<String, Integer> counts = new HashMap<>();
+            for (Map.Entry<Integer, Integer> genre : counts(query.evaluate(this), this.genres).entrySet()) {
+                counts.put(StringDictionary.GENRES.decode(genre.getKey()), genre.getValue());
+            }
+            return counts;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the books matching a query for every format.
+     *
+     * @param query The query to evaluate.
+     * @return The number of matching books per lower-case format, omitting formats without matches.
+     */
+    public Map<String, Integer> formatCounts(FacetQuery query) {
+        this.refreshAvailability();
+        this.lock.readLock().lock();
+        try {
+            return counts(query.evaluate(this), this.formats);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the books matching a query for every decade of publication.
+     *
+     * @param query The query to evaluate.
+     * @return The number of matching books per decade (e.g., 1950 for 1950-1959), in decade order.
+     */
+    public Map<Integer, Integer> decadeCounts(FacetQuery query) {
+        this.refreshAvailability();
+        this.lock.readLock().lock();
+        try {
+            BitSet matches = query.evaluate(this);
+            TreeMap<Integer, Integer> counts = new TreeMap<>();
+            for (Map.Entry<Integer, BitSet> year : this.years.entrySet()) {
+                BitSet bits = (BitSet) year.getValue().clone();
+                bits.and(matches);
+                if (!bits.isEmpty()) {
+                    counts.merge(year.getKey() / 10 * 10, bits.cardinality(), Integer::sum);
+                }
+            }
+            return counts;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the ordinals of all indexed books.
+     *
+     * @return A new bitmap of the ordinals.
+     */
+    BitSet live() {
+        return (BitSet) this.live.clone();
+    }
+
+    /**
+     * Gets the ordinals of the rentable books.
+     *
+     * @return A new bitmap of the ordinals.
+     */
+    BitSet rentable() {
+        return (BitSet) this.rentable.clone();
+    }
+
+    /**
+     * Gets the ordinals of the books with at least one available copy.
+     *
+     * @return A new bitmap of the ordinals.
+     */
+    BitSet available() {
+        return (BitSet) this.available.clone();
+    }
+
+    /**
+     * Gets the ordinals of the books of a genre.
+     *
+     * @param genre The genre.
+     * @return A new bitmap of the ordinals.
+     */
+    BitSet genre(String genre) {
+        BitSet bits = this.genres.get(StringDictionary.GENRES.lookup(genre));
+        return bits == null ? new BitSet() : (BitSet) bits.clone();
+    }
+
+    /**
+     * Gets the ordinals of the books of a format.
+     *
+     * @param format The format, matched case-insensitively.
+     * @return A new bitmap of the ordinals.
+     */
+    BitSet format(String format) {
+        BitSet bits = this.formats.get(format.toLowerCase());
+        return bits == null ? new BitSet() : (BitSet) bits.clone();
+    }
+
+    /**
+     * Gets the ordinals of the books published between two years, inclusive.
+     *
+     * @param from The first publication year.
+     * @param to   The last publication year.
+     * @return A new bitmap of the ordinals.
+     */
+    BitSet publishedBetween(int from, int to) {
+        BitSet bits = new BitSet();
+        if (from <= to) {
+            for (BitSet year : this.years.subMap(from, true, to, true).values()) {
+                bits.or(year);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Refreshes the availability bits of the books rented or returned since the last query.
+     */
+    private void refreshAvailability() {
+        if (this.availabilityChanged.isEmpty()) {
+            return;
+        }
+        this.lock.writeLock().lock();
+        try {
+            Iterator<Book<?>> books = this.availabilityChanged.iterator();
+            while (books.hasNext()) {
+                Book<?> book = books.next();
+                // availability is read after the mark is cleared, so a change marking the book again is never lost
+                books.remove();
+                Integer ordinal = this.ordinals.get(book);
+                if (ordinal != null) {
+                    this.available.set(ordinal, book.isAvailable());
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the ordinal of a book in the bitmaps of its facet values.
+     *
+     * @param book    The book.
+     * @param ordinal The ordinal of the book.
+     */
+    private void set(Book<?> book, int ordinal) {
+        this.rentable.set(ordinal, book.isRentable());
+        this.available.set(ordinal, book.isAvailable());
+        this.genres.computeIfAbsent(book.getGenreCode(), key -> new BitSet()).set(ordinal);
+        this.formats.computeIfAbsent(book.getFormat().toLowerCase(), key -> new BitSet()).set(ordinal);
+        this.years.computeIfAbsent(Integer.parseInt(book.getPublicationYear()), key -> new BitSet()).set(ordinal);
+    }
+
+    /**
+     * Clears the ordinal of a book from the bitmaps of its facet values.
+     *
+     * @param book    The book.
+     * @param ordinal The ordinal of the book.
+     */
+    private void clear(Book<?> book, int ordinal) {
+        this.rentable.clear(ordinal);
+        this.available.clear(ordinal);
+        clear(this.genres, book.getGenreCode(), ordinal);
+        clear(this.formats, book.getFormat().toLowerCase(), ordinal);
+        clear(this.years, Integer.parseInt(book.getPublicationYear()), ordinal);
+    }
+
+    /**
+     * Intersects a result with every bitmap of a facet and counts the matches per value.
+     *
+     * @param matches The ordinals of the matching books.
+     * @param facet   The bitmaps of the facet values.
+     * @return The number of matching books per facet value, omitting values without matches.
+     */
+    private static <K> Map<K, Integer> counts(BitSet matches, Map<K, BitSet> facet) {
+        Map<K, Integer> counts = new HashMap<>();
+        for (Map.Entry<K, BitSet> value : facet.entrySet()) {
+            BitSet bits = (BitSet) value.getValue().clone();
+            bits.and(matches);
+            if (!bits.isEmpty()) {
+                counts.put(value.getKey(), bits.cardinality());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Clears an ordinal from the bitmap of a facet value, dropping the bitmap once it is empty.
+     *
+     * @param facet   The bitmaps of the facet values.
+     * @param value   The facet value of the book.
+     * @param ordinal The ordinal of the book.
+     */
+    private static <K> void clear(Map<K, BitSet> facet, K value, int ordinal) {
+        BitSet bits = facet.get(value);
+        if (bits != null) {
+            bits.clear(ordinal);
+            if (bits.isEmpty()) {
+                facet.remove(value);
+            }
+        }
+    }
+}
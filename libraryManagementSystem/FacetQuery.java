@@ -0,0 +1,147 @@
+package libraryManagementSystem;
+
+import java.util.BitSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Represents a faceted book query evaluated against a {@link FacetIndex}.
+ * Queries are built from facet conditions and combined with {@link #and}, {@link #or} and {@link #not};
+ * each condition is a bitmap over book ordinals, so combining conditions is a bitwise operation.
+ * A query can also be tested on a single {@link CatalogRecord}, so a catalog store is filtered without decoding its books;
+ * a stored book has its one copy available.
+ */
+public final class FacetQuery {
+    private final Function<FacetIndex, BitSet> evaluator;
+    private final Predicate<CatalogRecord> matcher;
+
+    /**
+     * Constructs a new query from the function computing its matching ordinals.
+     *
+     * @param evaluator The function returning a new bitmap of the matching ordinals.
+     * @param matcher   The condition on a stored record.
+     */
+    private FacetQuery(Function<FacetIndex, BitSet> evaluator, Predicate<CatalogRecord> matcher) {
+        this.evaluator = evaluator;
+        this.matcher = matcher;
+    }
+
+    /**
+     * Creates a query matching every book.
+     *
+     * @return The query.
+     */
+    public static FacetQuery all() {
+        return new FacetQuery(FacetIndex::live, record -> true);
+    }
+
+    /**
+     * Creates a query matching books of a genre.
+     *
+     * @param genre The genre to match.
+     * @return The query.
+     */
+    public static FacetQuery genre(String genre) {
+        return new FacetQuery(index -> index.genre(genre), record -> record.getGenre().equals(genre));
+    }
+
+    /**
+     * Creates a query matching books of a format (e.g., "physical", "ebook").
+     *
+     * @param format The format to match, case-insensitively.
+     * @return The query.
+     */
+    public static FacetQuery format(String format) {
+        return new FacetQuery(index -> index.format(format), record -> record.getFormat().equalsIgnoreCase(format));
+    }
+
+    /**
+     * Creates a query matching books that can be rented.
+     *
+     * @return The query.
+     */
+    public static FacetQuery rentable() {
+        return new FacetQuery(FacetIndex::rentable, CatalogRecord::isRentable);
+    }
+
+    /**
+     * Creates a query matching books with at least one available copy.
+     *
+     * @return The query.
+     */
+    public static FacetQuery available() {
+        return new FacetQuery(FacetIndex::available, record -> true);
+    }
+
+    /**
+     * Creates a query matching books published between two years, inclusive.
+     *
+     * @param from The first publication year.
+     * @param to   The last publication year.
+     * @return The query.
+     */
+    public static FacetQuery publishedBetween(int from, int to) {
+        return new FacetQuery(index -> index.publishedBetween(from, to), record -> record.getYear() >= from && record.getYear() <= to);
+    }
+
+    /**
+     * Creates a query matching books that match both this query and another.
+     *
+     * @param other The other query.
+     * @return The query.
+     */
+    public FacetQuery and(FacetQuery other) {
+        return new FacetQuery(index -> {
+            BitSet result = this.evaluate(index);
+            result.and(other.evaluate(index));
+            return result;
+        }, this.matcher.and(other.matcher));
+    }
+
+    /**
+     * Creates a query matching books that match this query or another.
+     *
+     * @param other The other query.
+     * @return The query.
+     */
+    public FacetQuery or(FacetQuery other) {
+        return new FacetQuery(index -> {
+            BitSet result = this.evaluate(index);
+            result.or(other.evaluate(index));
+            return result;
+        }, this.matcher.or(other.matcher));
+    }
+
+    /**
+     * Creates a query matching books that do not match this query.
+     *
+     * @return The query.
+     */
+    public FacetQuery not() {
+        return new FacetQuery(index -> {
+            BitSet result = index.live();
+            result.andNot(this.evaluate(index));
+            return result;
+        }, this.matcher.negate());
+    }
+
+    /**
+     * Evaluates the query.
+     *
+     * @param index The index to evaluate the query against.
+     * @return A new bitmap of the ordinals of the matching books.
+     */
+    BitSet evaluate(FacetIndex index) {
+        return this.evaluator.apply(index);
+    }
+
+    /**
+     * Tests the query on a stored record.
+     *
+     * @param record The record of a book in a catalog store.
+     * @return {@code true} if the book of the record matches the query, {@code false} otherwise.
+     */
+    boolean matches(CatalogRecord record) {
+        return this.matcher.test(record);
+    }
+}
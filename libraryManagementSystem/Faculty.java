@@ -1,6 +1,10 @@
 package libraryManagementSystem;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Represents a faculty in the library management system.
@@ -11,6 +15,8 @@ public class Faculty {
     private ArrayList<Professor> professors = new ArrayList<>();
     private ArrayList<Student> students = new ArrayList<>();
     private ArrayList<Library> libraries = new ArrayList<>();
+    private Autocomplete autocomplete = new Autocomplete(10);
+    private RoomAvailabilityIndex rooms = new RoomAvailabilityIndex();
 
     /**
      * Constructs a new Faculty with the specified name.
@@ -103,8 +109,77 @@ public class Faculty {
         if (library.getFaculty().isEmpty()) {
             this.libraries.add(library);
             library.setFaculty(this.name);
+            library.setNumber(this.libraries.size());
+            library.addCatalogListener(this.autocomplete);
+            for (Book<User> book : library.getBooks()) {
+                this.autocomplete.bookAdded(book);
+            }
+            library.addCatalogListener(this.rooms);
+            for (MeetingRoom<User> room : library.getMeetingRooms()) {
+                this.rooms.meetingRoomAdded(room);
+            }
         } else {
             System.out.println("Library already belongs to " + this.getClass().getName());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Suggests books from all libraries of the faculty whose title or author starts with a prefix.
+     *
+     * @param prefix The typed prefix, matched case-insensitively.
+     * @param count  The number of suggestions wanted.
+     * @return A list of at most {@code count} books, most borrowed first.
+     */
+    public ArrayList<Book<User>> autocomplete(String prefix, int count) {
+        return new ArrayList<>(this.autocomplete.complete(prefix, count));
+    }
+
+    /**
+     * Runs a search on all libraries of the faculty in parallel and merges the results.
+     *
+     * @param query   The search to run on each library (e.g., {@code library -> library.findBookbyTitle(title)}).
+     * @param timeout The maximum time to wait for the libraries.
+     * @param unit    The unit of the timeout.
+     * @return The books found by the libraries that answered in time, with the libraries that did not.
+     */
+    public SearchResult search(Function<Library, ? extends List<Book<User>>> query, long timeout, TimeUnit unit) {
+        return FederatedSearch.search(this.libraries, query, timeout, unit);
+    }
+
+    /**
+     * Finds all books with the specified title in any library of the faculty.
+     *
+     * @param title   The title to search for.
+     * @param timeout The maximum time to wait for the libraries.
+     * @param unit    The unit of the timeout.
+     * @return The books found by the libraries that answered in time, with the libraries that did not.
+     */
+    public SearchResult findBookbyTitle(String title, long timeout, TimeUnit unit) {
+        return this.search(library -> library.findBookbyTitle(title), timeout, unit);
+    }
+
+    /**
+     * Finds the meeting rooms of all libraries of the faculty that are free for a whole period.
+     *
+     * @param start    The start of the period.
+     * @param duration The duration of the period in seconds.
+     * @return The free meeting rooms.
+     */
+    public List<MeetingRoom<User>> findFreeRooms(Instant start, int duration) {
+        return this.rooms.findFreeRooms(start, duration);
+    }
+
+    /**
+     * Books the free meeting room of the faculty that best fits a period, trying the next one if another user is faster.
+     *
+     * @param user     The user booking a room.
+     * @param start    The start of the period; a start that is not in the future books the room now.
+     * @param duration The duration of the period in seconds.
+     * @return The reservation, or {@code null} if no room is free for the period.
+     * @throws UnauthorizedUserAction If the user may not book any of the free rooms.
+     * @throws InvalidInputInformation If the period is not allowed in any of the free rooms.
+     */
+    public Reservation<User> bookFreeRoom(User user, Instant start, int duration) throws UnauthorizedUserAction, InvalidInputInformation {
+        return this.rooms.bookFreeRoom(user, start, duration);
+    }
+}
@@ -0,0 +1,104 @@
+package libraryManagementSystem;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Runs the same search on several libraries in parallel and merges the results.
+ * Each library is searched as a separate task on a shared pool of daemon threads; the search waits
+ * until every library has answered or the deadline has passed, whichever comes first,
+ * and returns whatever has been found by then.
+ * The searches still running at the deadline are cancelled: a search that has not started is dropped,
+ * and a running one is asked to stop, which the scans of the catalog stores check between records.
+ * Running searches are not interrupted, as an interrupt during file I/O would close the channel of a store for good.
+ */
+public final class FederatedSearch {
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()), task -> {
+        Thread thread = new Thread(task, "library-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ThreadLocal<AtomicBoolean> CANCELLED = new ThreadLocal<>();
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private FederatedSearch() {
+    }
+
+    /**
+     * Searches several libraries in parallel.
+     *
+     * @param libraries The libraries to search.
+     * @param query     The search to run on each library.
+     * @param timeout   The maximum time to wait for the libraries.
+     * @param unit      The unit of the timeout.
+     * @return The books found by the libraries that answered in time, with the libraries that did not.
+     */
+    public static SearchResult search(List<Library> libraries, Function<Library, ? extends List<Book<User>>> query, long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        ArrayList<Future<? extends List<Book<User>>>> searches = new ArrayList<>();
+        ArrayList<AtomicBoolean> cancelled = new ArrayList<>();
+        for (Library library : libraries) {
+            AtomicBoolean stop = new AtomicBoolean();
+            cancelled.add(stop);
+            searches.add(POOL.submit(() -> {
+                CANCELLED.set(stop);
+                try {
+                    return query.apply(library);
+                } finally {
+                    CANCELLED.remove();
+                }
+            }));
+        }
+        ArrayList<Book<User>> books = new ArrayList<>();
+        ArrayList<Library> missing = new ArrayList<>();
+        boolean interrupted = false;
+        for (int i = 0; i < searches.size(); i++) {
+            Future<? extends List<Book<User>>> search = searches.get(i);
+            try {
+                if (interrupted) {
+                    throw new TimeoutException();
+                }
+                books.addAll(search.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException | ExecutionException | CancellationException e) {
+                // keep the answers that arrived; the others are stopped and reported as missing
+                cancelled.get(i).set(true);
+                search.cancel(false);
+                missing.add(libraries.get(i));
+            } catch (InterruptedException e) {
+                interrupted = true;
+                cancelled.get(i).set(true);
+                search.cancel(false);
+                missing.add(libraries.get(i));
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return new SearchResult(books, missing);
+    }
+
+    /**
+     * Stops a scan run by a library search that was cancelled at its deadline.
+     * Does nothing on a thread that is not running a federated search.
+     *
+     * @throws InterruptedIOException If the search running on this thread was cancelled.
+     */
+    static void checkCancelled() throws InterruptedIOException {
+        AtomicBoolean cancelled = CANCELLED.get();
+        if (cancelled != null && cancelled.get()) {
+            throw new InterruptedIOException("Search cancelled at its deadline");
+        }
+    }
+}
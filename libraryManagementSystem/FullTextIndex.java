@@ -0,0 +1,262 @@
+package libraryManagementSystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Full-text inverted index over the title, author, genre and description of books.
+ * Each term maps to a posting list of the books containing it with the term frequency,
+ * and results are ranked with BM25. The last word of a query also matches as a prefix,
+ * so partially typed words find results; it expands to the terms found in the most books.
+ */
+public class FullTextIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MAX_PREFIX_TERMS = 64;
+
+    private final ConcurrentSkipListMap<String, ConcurrentHashMap<Book<User>, Integer>> postings = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Book<User>, Map<String, Integer>> documents = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Book<User>, Integer> lengths = new ConcurrentHashMap<>();
+    private final AtomicLong totalLength = new AtomicLong();
+
+    /**
+     * Adds a book to the index.
+     *
+     * @param book The book to index.
+     */
+    public void add(Book<User> book) {
+        Map<String, Integer> terms = new HashMap<>();
+        int length = 0;
+        for (String field : new String[] { book.getTitle(), book.getAuthor(), book.getGenre(), book.getDescription() }) {
+            for (String term : tokenize(field)) {
+                terms.merge(term, 1, Integer::sum);
+                length++;
+            }
+        }
+        if (this.documents.putIfAbsent(book, terms) != null) {
+            return;
+        }
+        this.lengths.put(book, length);
+        for (Map.Entry<String, Integer> term : terms.entrySet()) {
+            this.postings.computeIfAbsent(term.getKey(), key -> new ConcurrentHashMap<>()).put(book, term.getValue());
+        }
+        this.totalLength.addAndGet(length);
+    }
+
+    /**
+     * Removes a book from the index.
+     *
+     * @param book The book to remove.
+     */
+    public void remove(Book<User> book) {
+        Map<String, Integer> terms = this.documents.remove(book);
+        if (terms == null) {
+            return;
+        }
+        for (Map.Entry<String, Integer> term : terms.entrySet()) {
+            this.postings.computeIfPresent(term.getKey(), (key, books) -> {
+                books.remove(book);
+                return books.isEmpty() ? null : books;
+            });
+        }
+        Integer length = this.lengths.remove(book);
+        if (length != null) {
+            this.totalLength.addAndGet(-length);
+        }
+    }
+
+    /**
+     * Searches the index and returns the best matching books, best match first.
+     * Terms are scored from the one that can add the most to a score down, with max-score pruning:
+     * once the {@code limit}-th best score so far is higher than what a book could still get from the terms left,
+     * books that did not match the terms scored so far are no longer considered.
+     *
+     * @param query The words to search for.
+     * @param limit The maximum number of books returned.
+     * @return A list of the matching books ranked by relevance.
+     */
+    public List<Book<User>> search(String query, int limit) {
+        List<String> words = tokenize(query);
+        int documentCount = this.documents.size();
+        if (words.isEmpty() || documentCount == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+        double averageLength = Math.max(1.0, (double) this.totalLength.get() / documentCount);
+        List<Map<Book<User>, Integer>> terms = new ArrayList<>();
+        for (int i = 0; i < words.size() - 1; i++) {
+            ConcurrentHashMap<Book<User>, Integer> books = this.postings.get(words.get(i));
+            if (books != null) {
+                terms.add(books);
+            }
+        }
+        terms.addAll(this.expand(words.get(words.size() - 1)));
+        // the idf of a term bounds what it adds to a score, since the rest of its BM25 weight is below K1 + 1
+        double[] idfs = new double[terms.size()];
+        Integer[] order = new Integer[terms.size()];
+        for (int i = 0; i < terms.size(); i++) {
+            int frequency = terms.get(i).size();
+            idfs[i] = Math.log(1 + (documentCount - frequency + 0.5) / (frequency + 0.5));
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(idfs[b], idfs[a]));
+        // remaining[j] bounds what the terms after the j-th in order can still add, and is exactly 0 after the last
+        double[] remaining = new double[order.length];
+        for (int j = order.length - 2; j >= 0; j--) {
+            remaining[j] = remaining[j + 1] + idfs[order[j + 1]] * (K1 + 1);
+        }
+        Map<Book<User>, Double> scores = new HashMap<>();
+        double threshold = 0;
+        for (int j = 0; j < order.length; j++) {
+            int i = order[j];
+            // a book that did not match yet can at most get this term and the terms left
+            boolean admitting = scores.size() < limit || idfs[i] * (K1 + 1) + remaining[j] >= threshold;
+            this.score(terms.get(i), idfs[i], averageLength, scores, admitting);
+            if (scores.size() >= limit) {
+                threshold = kthBest(scores, limit);
+                double bound = threshold - remaining[j];
+                scores.values().removeIf(score -> score < bound);
+            }
+        }
+        PriorityQueue<Map.Entry<Book<User>, Double>> best = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<Book<User>, Double> score : scores.entrySet()) {
+            best.add(score);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        ArrayList<Map.Entry<Book<User>, Double>> ranked = new ArrayList<>(best);
+        ranked.sort(Map.Entry.<Book<User>, Double>comparingByValue(Comparator.reverseOrder()));
+        ArrayList<Book<User>> results = new ArrayList<>();
+        for (Map.Entry<Book<User>, Double> score : ranked) {
+            results.add(score.getKey());
+        }
+        return results;
+    }
+
+    /**
+     * Gets the number of books in the index.
+     *
+     * @return The number of indexed books.
+     */
+    public int size() {
+        return this.documents.size();
+    }
+
+    /**
+     * Gets the posting lists of the terms a partially typed word may stand for: the word itself if it is a term,
+     * and the terms starting with it found in the most books, up to {@value #MAX_PREFIX_TERMS} terms in all.
+     *
+     * @param prefix The partially typed word.
+     * @return The posting lists of the chosen terms.
+     */
+    private List<Map<Book<User>, Integer>> expand(String prefix) {
+        PriorityQueue<Map<Book<User>, Integer>> common = new PriorityQueue<>(Comparator.comparingInt(Map::size));
+        Map<Book<User>, Integer> exact = null;
+        for (Map.Entry<String, ConcurrentHashMap<Book<User>, Integer>> term : this.postings.subMap(prefix, prefix + Character.MAX_VALUE).entrySet()) {
+            if (term.getKey().equals(prefix)) {
+                exact = term.getValue();
+                continue;
+            }
+            common.add(term.getValue());
+            if (common.size() > (exact == null ? MAX_PREFIX_TERMS : MAX_PREFIX_TERMS - 1)) {
+                common.poll();
+            }
+        }
+        List<Map<Book<User>, Integer>> terms = new ArrayList<>(common);
+        if (exact != null) {
+            terms.add(exact);
+        }
+        return terms;
+    }
+
+    /**
+     * Adds the BM25 contribution of one term to the score of the books in its posting list.
+     *
+     * @param books         The posting list of the term.
+     * @param idf           The inverse document frequency of the term.
+     * @param averageLength The average number of terms per book.
+     * @param scores        The scores accumulated so far.
+     * @param admitting     Whether books without a score yet are scored, or only the books already scored.
+     */
+    private void score(Map<Book<User>, Integer> books, double idf, double averageLength, Map<Book<User>, Double> scores, boolean admitting) {
+        for (Map.Entry<Book<User>, Integer> posting : books.entrySet()) {
+            if (!admitting && !scores.containsKey(posting.getKey())) {
+                continue;
+            }
+            int length = this.lengths.getOrDefault(posting.getKey(), 0);
+            double tf = posting.getValue();
+            double score = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / averageLength));
+            scores.merge(posting.getKey(), score, Double::sum);
+        }
+    }
+
+    /**
+     * Gets the {@code k}-th highest of the scores accumulated so far, a lower bound of the {@code k}-th final score.
+     *
+     * @param scores The scores accumulated so far, at least {@code k} of them.
+     * @param k      The rank.
+     * @return The {@code k}-th highest score.
+     */
+    private static double kthBest(Map<Book<User>, Double> scores, int k) {
+        PriorityQueue<Double> best = new PriorityQueue<>();
+        for (double score : scores.values()) {
+            if (best.size() < k) {
+                best.add(score);
+            } else if (score > best.peek()) {
+                best.poll();
+                best.add(score);
+            }
+        }
+        return best.peek();
+    }
+
+    /**
+     * Checks if a stored book contains any word of a query, the last word also matching as a prefix,
+     * so only the books that a search could return are decoded and indexed.
+     *
+     * @param record The stored record of the book to check.
+     * @param words  The words of the query, as returned by {@link #tokenize(String)}.
+     * @return {@code true} if the book contains a word of the query, {@code false} otherwise.
+     */
+    static boolean matches(CatalogRecord record, List<String> words) {
+        if (words.isEmpty()) {
+            return false;
+        }
+        String last = words.get(words.size() - 1);
+        for (String field : new String[] { record.getTitle(), record.getAuthor(), record.getGenre(), record.getDescription() }) {
+            for (String term : tokenize(field)) {
+                if (term.startsWith(last) || words.contains(term)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splits text into lower-case words.
+     *
+     * @param text The text to split.
+     * @return The words of the text.
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : text.toLowerCase().split("[^a-z0-9]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,110 @@
+package libraryManagementSystem;
+
+import java.util.Arrays;
+
+/**
+ * Represents one domain event recorded in the {@link EventJournal}.
+ * An event names the objects it changed by stable keys (library, ISBN, email, room or device number),
+ * so it can be applied again to the objects rebuilt after a restart.
+ * A library is named by its faculty and its number within the faculty, e.g., {@code FAS#2}.
+ */
+public class JournalEvent {
+
+    /**
+     * The kinds of events recorded in the journal, with the fields each one carries.
+     */
+    public enum Type {
+        /** A copy was checked out: library, ISBN, copy number, email, rented time and return time in epoch milliseconds. */
+        RENT,
+        /** A copy was returned: library, ISBN, copy number, email. */
+        RETURN,
+        /** A loan was renewed: library, ISBN, copy number, email, new return time, renewal passes used. */
+        RENEW,
+        /** A user was blacklisted: email, end of the penalty in epoch milliseconds. */
+        BLACKLIST,
+        /** A meeting room was booked: library, room number, email, end of the booking, end of the same-day ban, start of the booking. */
+        ROOM_BOOKING,
+        /** A device was booked: library, reference number, email, end of the booking, end of the same-day ban. */
+        DEVICE_BOOKING,
+        /** Snapshot only, an active loan: library, ISBN, copy number, email, rented time, return time, renewal passes used. */
+        LOAN,
+        /** Snapshot only, the borrow count of a book: library, ISBN, number of times borrowed. */
+        BORROWS,
+        /** A meeting room reservation was cancelled: library, room number, email, start of the reservation. */
+        ROOM_CANCELLATION
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final String[] fields;
+
+    /**
+     * Constructs a new journal event.
+     *
+     * @param sequence The position of the event in the journal.
+     * @param type     The kind of event.
+     * @param fields   The fields of the event, as listed for its type.
+     */
+    public JournalEvent(long sequence, Type type, String... fields) {
+        this.sequence = sequence;
+        this.type = type;
+        this.fields = fields.clone();
+    }
+
+    /**
+     * Gets the position of the event in the journal.
+     *
+     * @return The sequence number, starting at 1.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the kind of event.
+     *
+     * @return The event type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets a field of the event.
+     *
+     * @param index The position of the field, as listed for the event type.
+     * @return The value of the field.
+     */
+    public String getField(int index) {
+        return fields[index];
+    }
+
+    /**
+     * Gets a field of the event holding a number.
+     *
+     * @param index The position of the field, as listed for the event type.
+     * @return The value of the field.
+     */
+    public long getLongField(int index) {
+        return Long.parseLong(fields[index]);
+    }
+
+    /**
+     * Gets the number of fields of the event.
+     *
+     * @return The number of fields.
+     */
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    /**
+     * Returns a string representation of the event.
+     *
+     * @return The sequence number, type and fields of the event.
+     */
+    @Override
+    public String toString() {
+        return "#" + this.sequence + " " + this.type + " " + Arrays.toString(this.fields);
+    }
+}
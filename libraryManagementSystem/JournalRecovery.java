@@ -0,0 +1,232 @@
+package libraryManagementSystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilds the loans, bookings and blacklists of a university by replaying an {@link EventJournal},
+ * or the snapshot and journal files of a {@link CheckpointManager}.
+ * The university must first be set up again with the same faculties, users, libraries, books, rooms and devices;
+ * events are matched to them by library, ISBN, email, room number and device reference number.
+ * Libraries are told apart by their faculty and the order they were added to it in, so the faculties must add them in the same order.
+ * Books that are not loaded in their library are looked up by ISBN, which loads them from its catalog store.
+ * Events whose objects no longer exist are skipped and counted.
+ */
+public class JournalRecovery {
+    private final HashMap<String, User> users = new HashMap<>();
+    private final HashMap<String, Library> libraries = new HashMap<>();
+    private final HashMap<String, Book<User>> books = new HashMap<>();
+    private final HashMap<String, MeetingRoom<User>> rooms = new HashMap<>();
+    private final HashMap<String, ElectronicResource<ElectronicDevice, User>> devices = new HashMap<>();
+    private long applied;
+    private long skipped;
+
+    /**
+     * Constructs a recovery for the current contents of a university.
+     *
+     * @param university The university to restore the state of.
+     */
+    public JournalRecovery(University university) {
+        for (Faculty faculty : university.getFaculties()) {
+            for (Student student : faculty.getStudents()) {
+                this.users.put(student.getEmail(), student);
+            }
+            for (Professor professor : faculty.getProfessors()) {
+                this.users.put(professor.getEmail(), professor);
+            }
+            for (Library library : faculty.getLibraries()) {
+                this.libraries.put(library.getJournalKey(), library);
+                for (Book<User> book : library.getBooks()) {
+                    this.books.put(key(library.getJournalKey(), book.getISBN()), book);
+                }
+                for (MeetingRoom<User> room : library.getMeetingRooms()) {
+                    this.rooms.put(key(library.getJournalKey(), room.getRoomNumber()), room);
+                }
+                for (ElectronicResource<ElectronicDevice, User> device : library.getElectronicResources()) {
+                    this.devices.put(key(library.getJournalKey(), device.getDevice().getReferenceNumber()), device);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replays a whole journal into a university.
+     *
+     * @param university The university to restore the state of.
+     * @param journal    The journal file; nothing is restored if it does not exist.
+     * @return The sequence number of the last event replayed, or 0 if there were none.
+     * @throws IOException If the journal cannot be read.
+     */
+    public static long recover(University university, Path journal) throws IOException {
+        return new JournalRecovery(university).replay(journal);
+    }
+
+    /**
+     * Replays every event of a journal file.
+     *
+     * @param journal The journal file; nothing is restored if it does not exist.
+     * @return The sequence number of the last event replayed, or 0 if there were none.
+     * @throws IOException If the journal cannot be read.
+     */
+    public long replay(Path journal) throws IOException {
+        if (!Files.exists(journal)) {
+            return 0;
+        }
+        return EventJournal.replay(journal, this::apply);
+    }
+
+    /**
+     * Applies one event to the objects it names.
+     *
+     * @param event The event to apply.
+     * @return {@code true} if the event was applied, {@code false} if its objects do not exist.
+     */
+    public boolean apply(JournalEvent event) {
+        boolean done = false;
+        switch (event.getType()) {
+            case RENT: {
+                Book<User> book = this.book(event);
+                User user = this.users.get(event.getField(3));
+                done = book != null && user != null && book.restoreLoan((int) event.getLongField(2), user,
+                        Instant.ofEpochMilli(event.getLongField(4)), Instant.ofEpochMilli(event.getLongField(5)), 0, true);
+                break;
+            }
+            case LOAN: {
+                Book<User> book = this.book(event);
+                User user = this.users.get(event.getField(3));
+                done = book != null && user != null && book.restoreLoan((int) event.getLongField(2), user,
+                        Instant.ofEpochMilli(event.getLongField(4)), Instant.ofEpochMilli(event.getLongField(5)), (int) event.getLongField(6), false);
+                break;
+            }
+            case BORROWS: {
+                Book<User> book = this.book(event);
+                if (book != null) {
+                    book.restoreBorrows(event.getLongField(2));
+                    done = true;
+                }
+                break;
+            }
+            case RETURN: {
+                Book<User> book = this.book(event);
+                User user = this.users.get(event.getField(3));
+                done = book != null && user != null && book.restoreReturn((int) event.getLongField(2), user);
+                break;
+            }
+            case RENEW: {
+                Book<User> book = this.book(event);
+                User user = this.users.get(event.getField(3));
+                done = book != null && user != null && book.restoreRenewal((int) event.getLongField(2), user,
+                        Instant.ofEpochMilli(event.getLongField(4)), (int) event.getLongField(5));
+                break;
+            }
+            case BLACKLIST: {
+                User user = this.users.get(event.getField(0));
+                if (user != null) {
+                    long remaining = event.getLongField(1) - System.currentTimeMillis();
+                    if (remaining > 0) {
+                        user.setBlacklisted(true);
+                        ExpirationService.getInstance().schedule(() -> user.setBlacklisted(false), remaining, TimeUnit.MILLISECONDS);
+                    }
+                    done = true;
+                }
+                break;
+            }
+            case ROOM_BOOKING: {
+                MeetingRoom<User> room = this.rooms.get(key(event.getField(0), event.getField(1)));
+                User user = this.users.get(event.getField(2));
+                if (room != null && user != null) {
+                    // bookings journaled before reservations existed started when they were made
+                    Instant start = event.getFieldCount() > 5 ? Instant.ofEpochMilli(event.getLongField(5)) : Instant.now();
+                    room.restoreBooking(user, start, Instant.ofEpochMilli(event.getLongField(3)), Instant.ofEpochMilli(event.getLongField(4)));
+                    done = true;
+                }
+                break;
+            }
+            case ROOM_CANCELLATION: {
+                MeetingRoom<User> room = this.rooms.get(key(event.getField(0), event.getField(1)));
+                User user = this.users.get(event.getField(2));
+                if (room != null && user != null) {
+                    room.restoreCancellation(user, Instant.ofEpochMilli(event.getLongField(3)));
+                    done = true;
+                }
+                break;
+            }
+            case DEVICE_BOOKING: {
+                ElectronicResource<ElectronicDevice, User> device = this.devices.get(key(event.getField(0), event.getField(1)));
+                User user = this.users.get(event.getField(2));
+                if (device != null && user != null) {
+                    device.restoreBooking(user, Instant.ofEpochMilli(event.getLongField(3)), Instant.ofEpochMilli(event.getLongField(4)));
+                    done = true;
+                }
+                break;
+            }
+        }
+        if (done) {
+            this.applied++;
+        } else {
+            this.skipped++;
+        }
+        return done;
+    }
+
+    /**
+     * Gets the number of events applied so far.
+     *
+     * @return The number of applied events.
+     */
+    public long getApplied() {
+        return applied;
+    }
+
+    /**
+     * Gets the number of events skipped so far because their objects do not exist.
+     *
+     * @return The number of skipped events.
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Finds the book an event is about, looking it up in its library when it was not loaded when the recovery
+     * was constructed, or was dropped from the loaded books since.
+     * Books found that way are not kept, as the library may drop them again.
+     *
+     * @param event A book event, naming the library and the ISBN.
+     * @return The book, or {@code null} if it does not exist.
+     */
+    private Book<User> book(JournalEvent event) {
+        Book<User> book = this.books.get(key(event.getField(0), event.getField(1)));
+        if (book == null || book.isDetached()) {
+            Library library = this.libraries.get(library(event.getField(0)));
+            book = library == null ? null : library.findBookbyISBN(event.getField(1));
+        }
+        return book;
+    }
+
+    /**
+     * Builds the lookup key of an object within a library.
+     *
+     * @param library The journal key of the library of the object.
+     * @param id      The identifier of the object within the library.
+     * @return The lookup key.
+     */
+    private static String key(String library, String id) {
+        return library(library) + "/" + id;
+    }
+
+    /**
+     * Gets the journal key of the library named by the first field of an event.
+     *
+     * @param library The first field of the event.
+     * @return The journal key of the library.
+     */
+    static String library(String library) {
+        // events journaled before libraries were numbered only name the faculty, which then had one library
+        return library.indexOf('#') < 0 ? library + "#1" : library;
+    }
+}
@@ -1,18 +1,75 @@
 package libraryManagementSystem;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 /**
  * Represents a library in the library management system.
  * A library contains books, electronic resources, and meeting rooms.
  * It is managed by an admin and is associated with a specific faculty.
+ * The catalog can be searched while it is being edited: readers never lock and always see a consistent
+ * snapshot, while edits are serialized among themselves.
+ * Every book gets a catalog sequence number when it is added, and the indexes keep their books ordered by it,
+ * so query results can be streamed lazily or paged with continuation tokens.
+ * The library listens to its books, so a book whose title, author, genre or ISBN is changed is moved
+ * to its new keys under the same sequence number. Several books may share an ISBN; the one added first is found by it.
+ * With a catalog store, the lookups by ISBN, ISBN prefix, title, author, genre and publication year,
+ * the full-text search and the faceted search also find the stored books, which are loaded into a bounded cache:
+ * once it is full, the least recently used loaded books that are not rented are dropped from the library again,
+ * and are reloaded when they are next found. A query loads at most as many stored books as the cache holds,
+ * so a query matching more stored books than that only returns the first of them.
+ * Stored records are tested before their books are decoded, so a query only decodes the stored books it matches.
+ * The paged lookups load the stored books when their first page is fetched and the streamed lookups when their
+ * stream is created, so later pages and lazily consumed streams only cover the books loaded at that time.
+ * Browsing and streaming all books only cover the loaded books.
+ * A dropped book is detached, so it can no longer be rented and only the book
+ * reloaded from the store is lent; the reloaded book takes over the borrow count of the dropped one.
  */
-public class Library {
+public class Library implements CatalogListener {
     private String faculty = "";
+    private int number;
     private Admin admin;
-    private ArrayList<Book<User>> books = new ArrayList<>();
-    private ArrayList<ElectronicResource<ElectronicDevice, User>> electronicResources = new ArrayList<>();
-    private ArrayList<MeetingRoom<User>> meetingRooms = new ArrayList<>();
+    private CopyOnWriteArrayList<Book<User>> books = new CopyOnWriteArrayList<>();
+    private CopyOnWriteArrayList<ElectronicResource<ElectronicDevice, User>> electronicResources = new CopyOnWriteArrayList<>();
+    private CopyOnWriteArrayList<MeetingRoom<User>> meetingRooms = new CopyOnWriteArrayList<>();
+    private ConcurrentHashMap<String, ConcurrentSkipListMap<Long, Book<User>>> booksByISBN = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<Integer, ConcurrentSkipListMap<Long, Book<User>>> booksByAuthor = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<String, ConcurrentSkipListMap<Long, Book<User>>> booksByTitle = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<Integer, ConcurrentSkipListMap<Long, Book<User>>> booksByGenre = new ConcurrentHashMap<>();
+    private ConcurrentSkipListMap<Long, Book<User>> booksBySequence = new ConcurrentSkipListMap<>();
+    private ConcurrentHashMap<Book<User>, Long> sequences = new ConcurrentHashMap<>();
+    private AtomicLong nextSequence = new AtomicLong();
+    private PopularityRanking popularity = new PopularityRanking(10);
+    private FullTextIndex fullText = new FullTextIndex();
+    private FacetIndex facets = new FacetIndex();
+    private volatile ColumnarCatalog columns;
+    private volatile CatalogStorage store;
+    private volatile long storeDeletions;
+    private int loadedBooksCapacity = 1024;
+    // books loaded from the store, and whether they were used since the eviction clock last passed them
+    private final ConcurrentHashMap<Book<User>, Boolean> loaded = new ConcurrentHashMap<>();
+    private final ArrayDeque<Book<User>> loadOrder = new ArrayDeque<>();
+    // borrow counts of the books dropped from the cache, given back to them when they are loaded again
+    private final ConcurrentHashMap<String, Integer> droppedBorrows = new ConcurrentHashMap<>();
+    private CopyOnWriteArrayList<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+    private final DevicePool devicePool = new DevicePool();
+    private final Object catalogLock = new Object();
 
     /**
      * Constructs a new Library managed by the specified admin.
@@ -33,12 +90,53 @@ public class Library {
      */
     public void addBook(Admin admin, Book<User> book) throws UnauthorizedUserAction {
         if (this.admin == admin) {
-            if (book.getFaculty().isEmpty()) {
-                this.books.add(book);
-                book.setFaculty(this.getFaculty());
-                book.setAdmin(admin);
-            } else {
-                System.out.println("Book already belongs to " + this.getClass().getName());
+            synchronized (this.catalogLock) {
+                if (book.getFaculty().isEmpty()) {
+                    this.insertBook(admin, book);
+                } else {
+                    System.out.println("Book already belongs to " + this.getClass().getName());
+                }
+            }
+        } else {
+            throw new UnauthorizedUserAction("You can't add books to this library");
+        }
+    }
+
+    /**
+     * Adds many books to the library at once, such as a batch of an import.
+     * The books are indexed one by one, but the list of books is copied and published once for the whole batch
+     * instead of once per book as with {@link #addBook(Admin, Book)}.
+     * Only the admin of this library can add books.
+     *
+     * @param admin The admin adding the books.
+     * @param books The books to add to the library, in catalog order.
+     * @return The number of books added; books that already belong to a library are skipped.
+     * @throws UnauthorizedUserAction If the admin is not authorized to add books to this library.
+     */
+    public int addBooks(Admin admin, Collection<Book<User>> books) throws UnauthorizedUserAction {
+        if (this.admin == admin) {
+            synchronized (this.catalogLock) {
+                ArrayList<Book<User>> batch = new ArrayList<>(books.size());
+                for (Book<User> book : books) {
+                    if (book.getFaculty().isEmpty()) {
+                        this.indexBook(book);
+                        batch.add(book);
+                    } else {
+                        System.out.println("Book already belongs to " + this.getClass().getName());
+                    }
+                }
+                this.books.addAll(batch);
+                for (Book<User> book : batch) {
+                    book.addCatalogListener(this.popularity);
+                    this.popularity.offer(book);
+                    book.setFaculty(this.getFaculty());
+                    book.setLibrary(this.getJournalKey());
+                    book.setAdmin(admin);
+                    for (CatalogListener listener : this.listeners) {
+                        listener.bookAdded(book);
+                    }
+                }
+                return batch.size();
             }
         } else {
             throw new UnauthorizedUserAction("You can't add books to this library");
@@ -46,7 +144,7 @@ public class Library {
     }
 
     /**
-     * Deletes a book from the library.
+     * Deletes a book from the library, and from the catalog store of the library if it has one.
      * Only the admin of this library can delete books.
      *
      * @param admin The admin deleting the book.
@@ -55,8 +153,25 @@ public class Library {
      */
     public void deleteBook(Admin admin, Book<User> book) throws UnauthorizedUserAction {
         if (this.admin == admin) {
-            this.books.remove(book);
-            book.setAdmin(null);
+            synchronized (this.catalogLock) {
+                if (this.books.contains(book)) {
+                    CatalogStorage store = this.store;
+                    if (store != null) {
+                        this.storeDeletions++;
+                        try {
+                            store.delete(book.getISBN());
+                        } catch (IOException e) {
+                            System.out.println("Stored record of " + book.getISBN() + " could not be deleted: " + e.getMessage());
+                        }
+                    }
+                    if (this.loaded.remove(book) != null) {
+                        this.loadOrder.remove(book);
+                    }
+                    this.droppedBorrows.remove(book.getISBN());
+                    this.removeBook(book);
+                }
+                book.setAdmin(null);
+            }
         } else {
             throw new UnauthorizedUserAction("You can't delete books from this library");
         }
@@ -75,6 +190,8 @@ public class Library {
             this.electronicResources.add(electronicResource);
             electronicResource.setAdmin(admin);
             electronicResource.setFaculty(this.getFaculty());
+            electronicResource.setLibrary(this.getJournalKey());
+            this.devicePool.add(electronicResource);
         } else {
             throw new UnauthorizedUserAction("You can't add electronic resources to this library");
         }
@@ -91,12 +208,37 @@ public class Library {
     public void deleteElectronicResource(Admin admin, ElectronicResource<ElectronicDevice, User> electronicResource) throws UnauthorizedUserAction {
         if (this.admin == admin) {
             this.electronicResources.remove(electronicResource);
+            this.devicePool.remove(electronicResource);
             electronicResource.setAdmin(null);
         } else {
             throw new UnauthorizedUserAction("You can't delete electronic resources from this library");
         }
     }
 
+    /**
+     * Books any free PC or tablet of the library for a user, so the user doesn't have to find a free device.
+     * If none is free, the user waits for the next one freed, in order of arrival.
+     *
+     * @param user              The user booking a device.
+     * @param type              The type of device, {@link PC} or {@link Tablet}.
+     * @param location          The lab room of the PC or the shelf of the tablet, or {@code null} for any.
+     * @param reservationPeriod The duration of the reservation in seconds.
+     * @return The booked electronic resource, once a device is booked for the user.
+     */
+    public CompletableFuture<ElectronicResource<ElectronicDevice, User>> useAnyDevice(User user, Class<? extends ElectronicDevice> type,
+            String location, int reservationPeriod) {
+        return this.devicePool.acquire(user, type, location, reservationPeriod);
+    }
+
+    /**
+     * Gets the pool of free electronic resources of the library.
+     *
+     * @return The device pool.
+     */
+    public DevicePool getDevicePool() {
+        return devicePool;
+    }
+
     /**
      * Adds a meeting room to the library.
      * Only the admin of this library can add meeting rooms.
@@ -110,6 +252,10 @@ public class Library {
             this.meetingRooms.add(meetingRoom);
             meetingRoom.setAdmin(admin);
             meetingRoom.setFaculty(this.getFaculty());
+            meetingRoom.setLibrary(this.getJournalKey());
+            for (CatalogListener listener : this.listeners) {
+                listener.meetingRoomAdded(meetingRoom);
+            }
         } else {
             throw new UnauthorizedUserAction("You can't add meeting rooms to this library");
         }
@@ -125,7 +271,11 @@ public class Library {
      */
     public void deleteMeetingRoom(Admin admin, MeetingRoom<User> meetingRoom) throws UnauthorizedUserAction {
         if (this.admin == admin) {
-            this.meetingRooms.remove(meetingRoom);
+            if (this.meetingRooms.remove(meetingRoom)) {
+                for (CatalogListener listener : this.listeners) {
+                    listener.meetingRoomRemoved(meetingRoom);
+                }
+            }
             meetingRoom.setAdmin(null);
         } else {
             throw new UnauthorizedUserAction("You can't delete meeting rooms from this library");
@@ -139,29 +289,29 @@ public class Library {
      * @return A list of books with the specified genre.
      */
     public ArrayList<Book<User>> findBookbyGenre(String genre) {
-        ArrayList<Book<User>> booksByGenre = new ArrayList<>();
-        for (Book<User> book : books) {
-            if (book.getGenre().equals(genre)) {
-                booksByGenre.add(book);
-            }
-        }
-        return booksByGenre;
+        this.loadStored((store, limit) -> store.findByGenre(genre, limit));
+        return lookup(this.booksByGenre, StringDictionary.GENRES.lookup(genre));
     }
 
     /**
      * Finds a book in the library with the specified ISBN.
+     * If the library has a catalog store and the book is only stored there, the book is decoded
+     * and added to the library, so it can be rented like any other book.
      *
      * @param ISBN The ISBN to search for.
      * @return The book with the specified ISBN, or {@code null} if not found.
      */
     public Book<User> findBookbyISBN(String ISBN) {
-        for (Book<User> book : books) {
-            if (book.getISBN().equals(ISBN)) {
-                return book;
-            }
+        Book<User> book = first(this.booksByISBN, ISBN);
+        if (book == null && this.store != null) {
+            book = this.loadBook(ISBN);
+        } else if (book != null) {
+            this.loaded.replace(book, Boolean.TRUE);
         }
-        System.out.println("We don't have that book");
-        return null;
+        if (book == null) {
+            System.out.println("We don't have that book");
+        }
+        return book;
     }
 
     /**
@@ -171,13 +321,8 @@ public class Library {
      * @return A list of books by the specified author.
      */
     public ArrayList<Book<User>> findBookbyAuthor(String author) {
-        ArrayList<Book<User>> booksByAuthor = new ArrayList<>();
-        for (Book<User> book : books) {
-            if (book.getAuthor().equals(author)) {
-                booksByAuthor.add(book);
-            }
-        }
-        return booksByAuthor;
+        this.loadStored((store, limit) -> store.findByAuthor(author, limit));
+        return lookup(this.booksByAuthor, StringDictionary.AUTHORS.lookup(author));
     }
 
     /**
@@ -187,13 +332,305 @@ public class Library {
      * @return A list of books with the specified title.
      */
     public ArrayList<Book<User>> findBookbyTitle(String title) {
-        ArrayList<Book<User>> booksByTitle = new ArrayList<>();
-        for (Book<User> book : books) {
-            if (book.getTitle().equals(title)) {
-                booksByTitle.add(book);
+        this.loadStored((store, limit) -> store.findByTitle(title, limit));
+        return lookup(this.booksByTitle, title);
+    }
+
+    /**
+     * Finds all books in the library published between two years, inclusive.
+     *
+     * @param from The first publication year.
+     * @param to   The last publication year.
+     * @return A list of books published between the two years.
+     */
+    public ArrayList<Book<User>> findBookbyPublicationYear(int from, int to) {
+        if (from > to) {
+            return new ArrayList<>();
+        }
+        this.loadStored((store, limit) -> store.findByPublicationYear(from, to, limit));
+        return new ArrayList<>(this.facets.search(FacetQuery.publishedBetween(from, to)));
+    }
+
+    /**
+     * Finds all books in the library whose ISBN starts with a prefix, such as the prefix of a publisher.
+     * The ISBN index is hashed, so the ISBNs of the library are scanned; a B+tree catalog store reads only the matching range.
+     *
+     * @param prefix The start of the ISBN.
+     * @return A list of books whose ISBN starts with the prefix, in the order they were added.
+     */
+    public ArrayList<Book<User>> findBookbyISBNPrefix(String prefix) {
+        this.loadStored((store, limit) -> store.findByISBNPrefix(prefix, limit));
+        ConcurrentSkipListMap<Long, Book<User>> matches = new ConcurrentSkipListMap<>();
+        for (Map.Entry<String, ConcurrentSkipListMap<Long, Book<User>>> entry : this.booksByISBN.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                matches.putAll(entry.getValue());
             }
         }
-        return booksByTitle;
+        return new ArrayList<>(matches.values());
+    }
+
+    /**
+     * Gets one page of the books in the library with the specified genre.
+     * Fetching a page costs the size of the page, however many books match.
+     * With a catalog store, the matching stored books are loaded when the first page is fetched.
+     *
+     * @param genre    The genre to search for.
+     * @param token    The token of the page to fetch, from {@link Page#getNextToken()}, or {@code null} for the first page.
+     * @param pageSize The maximum number of books in the page.
+     * @return A page of books with the specified genre, in the order they were added.
+     * @throws InvalidInputInformation If the token or the page size is invalid.
+     */
+    public Page<Book<User>> findBooksbyGenre(String genre, String token, int pageSize) throws InvalidInputInformation {
+        if (token == null) {
+            this.loadStored((store, limit) -> store.findByGenre(genre, limit));
+        }
+        return page(this.booksByGenre.get(StringDictionary.GENRES.lookup(genre)), token, pageSize);
+    }
+
+    /**
+     * Gets one page of the books in the library by the specified author.
+     * Fetching a page costs the size of the page, however many books match.
+     * With a catalog store, the matching stored books are loaded when the first page is fetched.
+     *
+     * @param author   The author to search for.
+     * @param token    The token of the page to fetch, from {@link Page#getNextToken()}, or {@code null} for the first page.
+     * @param pageSize The maximum number of books in the page.
+     * @return A page of books by the specified author, in the order they were added.
+     * @throws InvalidInputInformation If the token or the page size is invalid.
+     */
+    public Page<Book<User>> findBooksbyAuthor(String author, String token, int pageSize) throws InvalidInputInformation {
+        if (token == null) {
+            this.loadStored((store, limit) -> store.findByAuthor(author, limit));
+        }
+        return page(this.booksByAuthor.get(StringDictionary.AUTHORS.lookup(author)), token, pageSize);
+    }
+
+    /**
+     * Gets one page of the books in the library with the specified title.
+     * Fetching a page costs the size of the page, however many books match.
+     * With a catalog store, the matching stored books are loaded when the first page is fetched.
+     *
+     * @param title    The title to search for.
+     * @param token    The token of the page to fetch, from {@link Page#getNextToken()}, or {@code null} for the first page.
+     * @param pageSize The maximum number of books in the page.
+     * @return A page of books with the specified title, in the order they were added.
+     * @throws InvalidInputInformation If the token or the page size is invalid.
+     */
+    public Page<Book<User>> findBooksbyTitle(String title, String token, int pageSize) throws InvalidInputInformation {
+        if (token == null) {
+            this.loadStored((store, limit) -> store.findByTitle(title, limit));
+        }
+        return page(this.booksByTitle.get(title), token, pageSize);
+    }
+
+    /**
+     * Gets one page of all books in the library.
+     * With a catalog store, only the loaded books are browsed.
+     *
+     * @param token    The token of the page to fetch, from {@link Page#getNextToken()}, or {@code null} for the first page.
+     * @param pageSize The maximum number of books in the page.
+     * @return A page of books, in the order they were added.
+     * @throws InvalidInputInformation If the token or the page size is invalid.
+     */
+    public Page<Book<User>> browseBooks(String token, int pageSize) throws InvalidInputInformation {
+        return page(this.booksBySequence, token, pageSize);
+    }
+
+    /**
+     * Streams the books in the library with the specified genre.
+     * The stream is lazy: books are only visited as they are consumed, e.g., with {@code limit(20)}.
+     * With a catalog store, the matching stored books are loaded when the stream is created.
+     *
+     * @param genre The genre to search for.
+     * @return A stream of books with the specified genre, in the order they were added.
+     */
+    public Stream<Book<User>> streamBooksbyGenre(String genre) {
+        this.loadStored((store, limit) -> store.findByGenre(genre, limit));
+        return stream(this.booksByGenre.get(StringDictionary.GENRES.lookup(genre)));
+    }
+
+    /**
+     * Streams the books in the library by the specified author.
+     * The stream is lazy: books are only visited as they are consumed.
+     * With a catalog store, the matching stored books are loaded when the stream is created.
+     *
+     * @param author The author to search for.
+     * @return A stream of books by the specified author, in the order they were added.
+     */
+    public Stream<Book<User>> streamBooksbyAuthor(String author) {
+        this.loadStored((store, limit) -> store.findByAuthor(author, limit));
+        return stream(this.booksByAuthor.get(StringDictionary.AUTHORS.lookup(author)));
+    }
+
+    /**
+     * Streams the books in the library with the specified title.
+     * The stream is lazy: books are only visited as they are consumed.
+     * With a catalog store, the matching stored books are loaded when the stream is created.
+     *
+     * @param title The title to search for.
+     * @return A stream of books with the specified title, in the order they were added.
+     */
+    public Stream<Book<User>> streamBooksbyTitle(String title) {
+        this.loadStored((store, limit) -> store.findByTitle(title, limit));
+        return stream(this.booksByTitle.get(title));
+    }
+
+    /**
+     * Streams all books in the library.
+     * The stream is lazy: books are only visited as they are consumed.
+     * With a catalog store, only the loaded books are streamed.
+     *
+     * @return A stream of books, in the order they were added.
+     */
+    public Stream<Book<User>> streamBooks() {
+        return stream(this.booksBySequence);
+    }
+
+    /**
+     * Searches the title, author, genre and description of all books in the library.
+     * The last word of the query may be partially typed.
+     * With a catalog store, the stored books containing a word of the query are ranked among themselves,
+     * and the best {@code limit} of them are loaded and ranked again with the books of the library.
+     *
+     * @param query The words to search for.
+     * @param limit The maximum number of books returned.
+     * @return A list of the matching books, most relevant first.
+     */
+    public ArrayList<Book<User>> searchBooks(String query, int limit) {
+        List<String> words = FullTextIndex.tokenize(query);
+        if (!words.isEmpty() && limit > 0) {
+            this.loadStored((store, loaded) -> {
+                FullTextIndex stored = new FullTextIndex();
+                List<Book<User>> matches = store.find(record -> first(this.booksByISBN, record.getISBN()) == null && FullTextIndex.matches(record, words));
+                for (Book<User> book : matches) {
+                    stored.add(book);
+                }
+                List<Book<User>> best = stored.search(query, Math.min(limit, loaded));
+                Set<Book<User>> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+                kept.addAll(best);
+                for (Book<User> book : matches) {
+                    if (!kept.contains(book)) {
+                        book.releaseAuthor();
+                    }
+                }
+                return best;
+            });
+        }
+        return new ArrayList<>(this.fullText.search(query, limit));
+    }
+
+    /**
+     * Finds all books in the library matching a faceted query,
+     * for example {@code FacetQuery.genre("Engineering").and(FacetQuery.rentable()).and(FacetQuery.available())}.
+     * With a catalog store, the query is tested on the stored records and the books of the matching ones are loaded.
+     *
+     * @param query The query to evaluate.
+     * @return A list of the matching books.
+     */
+    public ArrayList<Book<User>> findBooks(FacetQuery query) {
+        this.loadStored((store, limit) -> store.find(record -> first(this.booksByISBN, record.getISBN()) == null && query.matches(record), limit));
+        return new ArrayList<>(this.facets.search(query));
+    }
+
+    /**
+     * Gets the facet index of the library, which also provides facet counts.
+     *
+     * @return The facet index.
+     */
+    public FacetIndex getFacetIndex() {
+        return facets;
+    }
+
+    /**
+     * Gets the persistent store holding the records of books that are not loaded in the library.
+     *
+     * @return The catalog store, or {@code null} if the library has none.
+     */
+    public CatalogStorage getCatalogStore() {
+        return store;
+    }
+
+    /**
+     * Sets the persistent store holding the records of books that are not loaded in the library,
+     * such as a {@link MappedCatalogStore} or a {@link BTreeCatalogStore}.
+     * Only the admin of this library can change it.
+     *
+     * @param admin The admin making the change.
+     * @param store The catalog store, or {@code null} to search loaded books only.
+     * @throws UnauthorizedUserAction If the admin is not authorized to modify this library.
+     */
+    public void setCatalogStore(Admin admin, CatalogStorage store) throws UnauthorizedUserAction {
+        if (this.admin == admin) {
+            this.store = store;
+        } else {
+            throw new UnauthorizedUserAction("You are not the admin of this library");
+        }
+    }
+
+    /**
+     * Gets the number of books loaded from the catalog store that the library keeps before dropping unused ones.
+     *
+     * @return The capacity of the cache of loaded books.
+     */
+    public int getLoadedBooksCapacity() {
+        synchronized (this.catalogLock) {
+            return loadedBooksCapacity;
+        }
+    }
+
+    /**
+     * Sets the number of books loaded from the catalog store that the library keeps before dropping unused ones.
+     * Only the admin of this library can change it.
+     *
+     * @param admin    The admin making the change.
+     * @param capacity The capacity of the cache of loaded books.
+     * @throws UnauthorizedUserAction If the admin is not authorized to modify this library.
+     * @throws InvalidInputInformation If the capacity is negative.
+     */
+    public void setLoadedBooksCapacity(Admin admin, int capacity) throws UnauthorizedUserAction, InvalidInputInformation {
+        if (this.admin != admin) {
+            throw new UnauthorizedUserAction("You are not the admin of this library");
+        }
+        if (capacity < 0) {
+            throw new InvalidInputInformation("Loaded books capacity input incorrect (ex: 1024)");
+        }
+        synchronized (this.catalogLock) {
+            this.loadedBooksCapacity = capacity;
+            this.evictLoaded(Collections.emptySet());
+        }
+    }
+
+    /**
+     * Gets the columnar catalog of the library, creating it from the current books the first time.
+     * The columnar catalog is optional; once created it is kept in sync with the library for analytics reports.
+     *
+     * @return The columnar catalog of the library.
+     */
+    public ColumnarCatalog enableColumnarCatalog() {
+        ColumnarCatalog columns = this.columns;
+        if (columns != null) {
+            return columns;
+        }
+        synchronized (this.catalogLock) {
+            if (this.columns == null) {
+                ColumnarCatalog created = new ColumnarCatalog();
+                for (Book<User> book : this.books) {
+                    created.bookAdded(book);
+                }
+                this.addCatalogListener(created);
+                this.columns = created;
+            }
+            return this.columns;
+        }
+    }
+
+    /**
+     * Gets the columnar catalog of the library.
+     *
+     * @return The columnar catalog, or {@code null} if it was never enabled.
+     */
+    public ColumnarCatalog getColumnarCatalog() {
+        return columns;
     }
 
     /**
@@ -203,13 +640,438 @@ public class Library {
      * @return A list containing the best-selling book.
      */
     public ArrayList<Book<User>> bestSellerBook() {
-        ArrayList<Book<User>> books = this.getBooks();
-        books.sort((b1, b2) -> b2.getNbTimesBorrowed() - b1.getNbTimesBorrowed());
-        ArrayList<Book<User>> topBooks = new ArrayList<>();
-        for (int i = 0; i < Math.min(1, books.size()); i++) {
-            topBooks.add(books.get(i));
+        return this.bestSellerBooks(1);
+    }
+
+    /**
+     * Gets the best-selling books in the library, most borrowed first.
+     * The ranking is maintained on every borrow, so this method only scans the catalog
+     * once removed books have left the ranking without enough books to show.
+     *
+     * @param count The number of books wanted, limited by the best-seller capacity.
+     * @return A list of the best-selling books.
+     */
+    public ArrayList<Book<User>> bestSellerBooks(int count) {
+        if (this.popularity.isStale()) {
+            synchronized (this.catalogLock) {
+                if (this.popularity.isStale()) {
+                    this.popularity.rebuild(this.books);
+                }
+            }
         }
-        return topBooks;
+        return new ArrayList<>(this.popularity.getTop(count));
+    }
+
+    /**
+     * Gets the number of books kept in the best-seller ranking.
+     *
+     * @return The best-seller capacity.
+     */
+    public int getBestSellerCapacity() {
+        return this.popularity.getCapacity();
+    }
+
+    /**
+     * Sets the number of books kept in the best-seller ranking.
+     * Only the admin of this library can change it.
+     *
+     * @param admin    The admin making the change.
+     * @param capacity The new best-seller capacity.
+     * @throws UnauthorizedUserAction If the admin is not authorized to modify this library.
+     */
+    public void setBestSellerCapacity(Admin admin, int capacity) throws UnauthorizedUserAction {
+        if (this.admin == admin) {
+            this.popularity.setCapacity(capacity, this.books);
+        } else {
+            throw new UnauthorizedUserAction("You are not the admin of this library");
+        }
+    }
+
+    /**
+     * Registers a listener to be notified when books are added to or removed from this library.
+     *
+     * @param listener The listener to register.
+     */
+    public void addCatalogListener(CatalogListener listener) {
+        this.listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Unregisters a listener from this library.
+     *
+     * @param listener The listener to unregister.
+     */
+    public void removeCatalogListener(CatalogListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Adds a book that belongs to no library yet to the catalog, indexes and listeners.
+     * Must be called while holding the catalog lock.
+     *
+     * @param admin The admin of this library.
+     * @param book  The book to add.
+     */
+    private void insertBook(Admin admin, Book<User> book) {
+        // index before publishing the book so a reader never finds it in the list but not in a lookup
+        this.indexBook(book);
+        this.books.add(book);
+        book.addCatalogListener(this.popularity);
+        this.popularity.offer(book);
+        book.setFaculty(this.getFaculty());
+        book.setLibrary(this.getJournalKey());
+        book.setAdmin(admin);
+        for (CatalogListener listener : this.listeners) {
+            listener.bookAdded(book);
+        }
+    }
+
+    /**
+     * Removes a book of this library from the catalog, indexes and listeners, and gives back its author's code.
+     * Must be called while holding the catalog lock.
+     *
+     * @param book The book to remove.
+     */
+    private void removeBook(Book<User> book) {
+        this.books.remove(book);
+        this.unindexBook(book);
+        book.removeCatalogListener(this.popularity);
+        this.popularity.remove(book);
+        for (CatalogListener listener : this.listeners) {
+            listener.bookRemoved(book);
+        }
+        // given back once the indexes and listeners no longer hold the book under its author's code
+        book.releaseAuthor();
+    }
+
+    /**
+     * Decodes a book from the catalog store and adds it to the library, unless another thread already did.
+     *
+     * @param ISBN The ISBN of the book.
+     * @return The book, or {@code null} if the store does not have it either.
+     */
+    private Book<User> loadBook(String ISBN) {
+        synchronized (this.catalogLock) {
+            Book<User> book = first(this.booksByISBN, ISBN);
+            CatalogStorage store = this.store;
+            if (book != null || store == null) {
+                return book;
+            }
+            try {
+                book = store.read(ISBN);
+            } catch (InvalidInputInformation e) {
+                System.out.println("Stored record of " + ISBN + " is invalid: " + e.getMessage());
+                return null;
+            } catch (IOException e) {
+                System.out.println("Stored record of " + ISBN + " could not be read: " + e.getMessage());
+                return null;
+            }
+            if (book != null) {
+                this.cacheBook(book);
+                this.evictLoaded(Collections.singleton(book));
+            }
+            return book;
+        }
+    }
+
+    /**
+     * Loads the books found by a query of the catalog store that are not in the library yet,
+     * so the indexes of the library find them too, and marks the ones already loaded as used.
+     * At most the capacity of the cache of loaded books is loaded, so a query never makes the cache overflow by more.
+     * The store is queried without holding the catalog lock, so books deleted meanwhile are checked again.
+     *
+     * @param query The query of the store.
+     */
+    private void loadStored(StoredBooks query) {
+        CatalogStorage store = this.store;
+        if (store == null) {
+            return;
+        }
+        long deletions = this.storeDeletions;
+        List<Book<User>> found;
+        try {
+            // the books already loaded may be found again, so they do not count against the books that can be loaded
+            found = query.find(store, (int) Math.min((long) this.getLoadedBooksCapacity() + this.loaded.size(), Integer.MAX_VALUE));
+        } catch (InterruptedIOException e) {
+            // the federated search stopped waiting for this library
+            return;
+        } catch (IOException e) {
+            System.out.println("Catalog store could not be read: " + e.getMessage());
+            return;
+        }
+        if (found.isEmpty()) {
+            return;
+        }
+        synchronized (this.catalogLock) {
+            Set<Book<User>> batch = Collections.newSetFromMap(new IdentityHashMap<>());
+            boolean truncated = false;
+            for (Book<User> book : found) {
+                Book<User> indexed = first(this.booksByISBN, book.getISBN());
+                if (indexed != null) {
+                    this.loaded.replace(indexed, Boolean.TRUE);
+                    book.releaseAuthor();
+                } else if (batch.size() == this.loadedBooksCapacity) {
+                    truncated = true;
+                    book.releaseAuthor();
+                } else if (deletions == this.storeDeletions || isStored(store, book.getISBN())) {
+                    this.cacheBook(book);
+                    batch.add(book);
+                } else {
+                    book.releaseAuthor();
+                }
+            }
+            this.evictLoaded(batch);
+            if (truncated) {
+                System.out.println("Only the first " + batch.size() + " stored books found were loaded, please narrow the search");
+            }
+        }
+    }
+
+    /**
+     * Checks if the catalog store still has the record of a book.
+     *
+     * @param store The catalog store.
+     * @param ISBN  The ISBN of the book.
+     * @return {@code true} if the record can still be read, {@code false} otherwise.
+     */
+    private static boolean isStored(CatalogStorage store, String ISBN) {
+        try {
+            Book<User> book = store.read(ISBN);
+            if (book == null) {
+                return false;
+            }
+            book.releaseAuthor();
+            return true;
+        } catch (InvalidInputInformation | IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Adds a book read from the catalog store to the library and to the cache of loaded books,
+     * with the borrow count of the book with its ISBN that was dropped from the cache before.
+     * Must be called while holding the catalog lock.
+     *
+     * @param book The book read from the store.
+     */
+    private void cacheBook(Book<User> book) {
+        Integer borrows = this.droppedBorrows.remove(book.getISBN());
+        if (borrows != null) {
+            book.restoreBorrows(borrows);
+        }
+        this.insertBook(this.admin, book);
+        this.loaded.put(book, Boolean.FALSE);
+        this.loadOrder.addLast(book);
+    }
+
+    /**
+     * Drops loaded books from the library until the cache holds at most its capacity, oldest first.
+     * As with a clock, a book used since it was last passed gets a second chance. Books that are rented,
+     * that were given more copies, and the books just loaded are kept, so the cache stays above its capacity
+     * while only such books are left. Books that were edited are no longer in the cache.
+     * A dropped book is detached and its borrow count is kept for the book reloaded with its ISBN.
+     * Must be called while holding the catalog lock.
+     *
+     * @param kept The books that must not be dropped.
+     */
+    private void evictLoaded(Set<Book<User>> kept) {
+        for (int visits = 2 * this.loadOrder.size(); visits > 0 && this.loaded.size() > this.loadedBooksCapacity; visits--) {
+            Book<User> book = this.loadOrder.pollFirst();
+            boolean used = this.loaded.get(book);
+            if (used || kept.contains(book) || book.getTotalCopies() != 1 || !book.detach()) {
+                this.loaded.put(book, Boolean.FALSE);
+                this.loadOrder.addLast(book);
+            } else {
+                this.loaded.remove(book);
+                this.removeBook(book);
+                book.setAdmin(null);
+                if (book.getNbTimesBorrowed() > 0) {
+                    this.droppedBorrows.put(book.getISBN(), book.getNbTimesBorrowed());
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a book to the ISBN, author, title, genre, full-text and facet indexes, and follows changes to its fields.
+     *
+     * @param book The book to index.
+     */
+    private void indexBook(Book<User> book) {
+        long sequence = this.nextSequence.incrementAndGet();
+        this.sequences.put(book, sequence);
+        this.indexKeys(book, sequence);
+        this.booksBySequence.put(sequence, book);
+        this.fullText.add(book);
+        this.facets.bookAdded(book);
+        book.addCatalogListener(this);
+    }
+
+    /**
+     * Removes a book from the ISBN, author, title, genre, full-text and facet indexes.
+     *
+     * @param book The book to remove from the indexes.
+     */
+    private void unindexBook(Book<User> book) {
+        book.removeCatalogListener(this);
+        Long sequence = this.sequences.remove(book);
+        if (sequence != null) {
+            this.unindexKeys(book, sequence);
+            this.booksBySequence.remove(sequence);
+        }
+        this.fullText.remove(book);
+        this.facets.bookRemoved(book);
+    }
+
+    /**
+     * Takes a book of this library out of the keyed and full-text indexes before one of its fields changes,
+     * while its old keys can still be read.
+     *
+     * @param book The book about to change.
+     */
+    @Override
+    public void bookChanging(Book<?> book) {
+        synchronized (this.catalogLock) {
+            Long sequence = this.sequences.get(book);
+            if (sequence != null) {
+                Book<User> indexed = this.booksBySequence.get(sequence);
+                this.unindexKeys(indexed, sequence);
+                this.fullText.remove(indexed);
+            }
+        }
+    }
+
+    /**
+     * Puts a book of this library back into the keyed and full-text indexes under its new keys,
+     * keeping its sequence number so pages and streams keep their order.
+     * A book loaded from the catalog store leaves the cache of loaded books and is kept from then on.
+     *
+     * @param book The book that changed.
+     */
+    @Override
+    public void bookChanged(Book<?> book) {
+        synchronized (this.catalogLock) {
+            // an edited book no longer matches its stored record, so it stays in the library
+            if (this.loaded.remove(book) != null) {
+                this.loadOrder.remove(book);
+            }
+            Long sequence = this.sequences.get(book);
+            if (sequence != null) {
+                Book<User> indexed = this.booksBySequence.get(sequence);
+                this.indexKeys(indexed, sequence);
+                this.fullText.add(indexed);
+            }
+        }
+    }
+
+    /**
+     * Adds a book to the ISBN, author, title and genre indexes.
+     *
+     * @param book     The book to index.
+     * @param sequence The catalog sequence number of the book.
+     */
+    private void indexKeys(Book<User> book, long sequence) {
+        this.booksByISBN.computeIfAbsent(book.getISBN(), key -> new ConcurrentSkipListMap<>()).put(sequence, book);
+        this.booksByAuthor.computeIfAbsent(book.getAuthorCode(), key -> new ConcurrentSkipListMap<>()).put(sequence, book);
+        this.booksByTitle.computeIfAbsent(book.getTitle(), key -> new ConcurrentSkipListMap<>()).put(sequence, book);
+        this.booksByGenre.computeIfAbsent(book.getGenreCode(), key -> new ConcurrentSkipListMap<>()).put(sequence, book);
+    }
+
+    /**
+     * Removes a book from the ISBN, author, title and genre indexes.
+     *
+     * @param book     The book to remove from the indexes.
+     * @param sequence The catalog sequence number of the book.
+     */
+    private void unindexKeys(Book<User> book, long sequence) {
+        unindex(this.booksByISBN, book.getISBN(), sequence);
+        unindex(this.booksByAuthor, book.getAuthorCode(), sequence);
+        unindex(this.booksByTitle, book.getTitle(), sequence);
+        unindex(this.booksByGenre, book.getGenreCode(), sequence);
+    }
+
+    /**
+     * Removes a book from the bucket of a single index, dropping the bucket once it is empty.
+     *
+     * @param index    The index to update.
+     * @param key      The key the book was indexed under.
+     * @param sequence The catalog sequence number of the book to remove.
+     */
+    private static <K> void unindex(ConcurrentHashMap<K, ConcurrentSkipListMap<Long, Book<User>>> index, K key, long sequence) {
+        index.computeIfPresent(key, (k, bucket) -> {
+            bucket.remove(sequence);
+            return bucket.isEmpty() ? null : bucket;
+        });
+    }
+
+    /**
+     * Looks up the book added first under a key in an index.
+     *
+     * @param index The index to search.
+     * @param key   The key to look up.
+     * @return The book with the lowest catalog sequence number under the key, or {@code null} if there is none.
+     */
+    private static <K> Book<User> first(ConcurrentHashMap<K, ConcurrentSkipListMap<Long, Book<User>>> index, K key) {
+        ConcurrentSkipListMap<Long, Book<User>> bucket = index.get(key);
+        Map.Entry<Long, Book<User>> first = bucket == null ? null : bucket.firstEntry();
+        return first == null ? null : first.getValue();
+    }
+
+    /**
+     * Looks up a key in an index and returns a copy of the matching books.
+     *
+     * @param index The index to search.
+     * @param key   The key to look up.
+     * @return A new list of the books indexed under the key, empty if there are none.
+     */
+    private static <K> ArrayList<Book<User>> lookup(ConcurrentHashMap<K, ConcurrentSkipListMap<Long, Book<User>>> index, K key) {
+        ConcurrentSkipListMap<Long, Book<User>> bucket = index.get(key);
+        return bucket == null ? new ArrayList<>() : new ArrayList<>(bucket.values());
+    }
+
+    /**
+     * Reads one page of an index bucket, starting right after the book the token points to.
+     *
+     * @param bucket   The books indexed under a key, by catalog sequence number, or {@code null} if there are none.
+     * @param token    The token of the page to fetch, or {@code null} for the first page.
+     * @param pageSize The maximum number of books in the page.
+     * @return The page of books.
+     * @throws InvalidInputInformation If the token or the page size is invalid.
+     */
+    private static Page<Book<User>> page(ConcurrentSkipListMap<Long, Book<User>> bucket, String token, int pageSize) throws InvalidInputInformation {
+        if (pageSize <= 0) {
+            throw new InvalidInputInformation("Page size input incorrect (ex: 20)");
+        }
+        ArrayList<Book<User>> books = new ArrayList<>(Math.min(pageSize, 64));
+        if (bucket == null) {
+            return new Page<>(books, null);
+        }
+        NavigableMap<Long, Book<User>> remaining = bucket;
+        if (token != null) {
+            try {
+                remaining = bucket.tailMap(Long.parseLong(token, Character.MAX_RADIX), false);
+            } catch (NumberFormatException e) {
+                throw new InvalidInputInformation("Page token incorrect (use the token of the previous page)");
+            }
+        }
+        Iterator<Map.Entry<Long, Book<User>>> entries = remaining.entrySet().iterator();
+        long last = 0;
+        while (books.size() < pageSize && entries.hasNext()) {
+            Map.Entry<Long, Book<User>> entry = entries.next();
+            books.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new Page<>(books, entries.hasNext() ? Long.toString(last, Character.MAX_RADIX) : null);
+    }
+
+    /**
+     * Streams the books of an index bucket.
+     *
+     * @param bucket The books indexed under a key, by catalog sequence number, or {@code null} if there are none.
+     * @return A lazy stream of the books, in catalog order.
+     */
+    private static Stream<Book<User>> stream(ConcurrentSkipListMap<Long, Book<User>> bucket) {
+        return bucket == null ? Stream.empty() : bucket.values().stream();
     }
 
     /**
@@ -232,29 +1094,32 @@ public class Library {
 
     /**
      * Gets the list of books in the library.
+     * The list is a read-only view that follows the library without copying it; iterating it sees a snapshot.
      *
-     * @return A list of books in the library.
+     * @return An unmodifiable list of books in the library.
      */
-    public ArrayList<Book<User>> getBooks() {
-        return books;
+    public List<Book<User>> getBooks() {
+        return Collections.unmodifiableList(books);
     }
 
     /**
      * Gets the list of electronic resources in the library.
+     * The list is a read-only view that follows the library without copying it; iterating it sees a snapshot.
      *
-     * @return A list of electronic resources in the library.
+     * @return An unmodifiable list of electronic resources in the library.
      */
-    public ArrayList<ElectronicResource<ElectronicDevice, User>> getElectronicResources() {
-        return electronicResources;
+    public List<ElectronicResource<ElectronicDevice, User>> getElectronicResources() {
+        return Collections.unmodifiableList(electronicResources);
     }
 
     /**
      * Gets the list of meeting rooms in the library.
+     * The list is a read-only view that follows the library without copying it; iterating it sees a snapshot.
      *
-     * @return A list of meeting rooms in the library.
+     * @return An unmodifiable list of meeting rooms in the library.
      */
-    public ArrayList<MeetingRoom<User>> getMeetingRooms() {
-        return meetingRooms;
+    public List<MeetingRoom<User>> getMeetingRooms() {
+        return Collections.unmodifiableList(meetingRooms);
     }
 
     /**
@@ -274,4 +1139,38 @@ public class Library {
     public void setFaculty(String faculty) {
         this.faculty = faculty;
     }
+
+    /**
+     * Sets the number of this library within its faculty.
+     *
+     * @param number The position of the library in its faculty, counting from 1.
+     */
+    void setNumber(int number) {
+        this.number = number;
+    }
+
+    /**
+     * Gets the key naming this library in the journal: its faculty and its number within the faculty,
+     * so the books, rooms and devices of two libraries of the same faculty never share a key.
+     *
+     * @return The journal key of the library.
+     */
+    String getJournalKey() {
+        return this.faculty + "#" + this.number;
+    }
+
+    /**
+     * Queries the catalog store for books.
+     */
+    private interface StoredBooks {
+        /**
+         * Finds books in the catalog store.
+         *
+         * @param store The catalog store.
+         * @param limit The number of books that can be loaded, plus those already loaded, which a query may use to stop early.
+         * @return The books found.
+         * @throws IOException If the store cannot be read.
+         */
+        List<Book<User>> find(CatalogStorage store, int limit) throws IOException;
+    }
 }
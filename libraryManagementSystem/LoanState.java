@@ -0,0 +1,159 @@
+package libraryManagementSystem;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Represents the loan state of a book copy at one point in time.
+ * The state is immutable: renting, returning and renewing a copy each build a new state
+ * and swap it in with a compare-and-set, so every transition is a single atomic step.
+ *
+ * @param <T> The type of the user holding the copy (e.g., Student, Professor).
+ */
+public final class LoanState<T extends User> {
+    private static final LoanState<User> AVAILABLE = new LoanState<>(null, null, null, 0);
+
+    private final T user;
+    private final Instant rentedTime;
+    private final Instant returnTime;
+    private final int usedRenewalPass;
+
+    /**
+     * Constructs a new loan state.
+     *
+     * @param user            The user holding the copy, or {@code null} if the copy is available.
+     * @param rentedTime      The time when the copy was rented.
+     * @param returnTime      The time when the copy is expected to be returned.
+     * @param usedRenewalPass The number of renewal passes used for this loan.
+     */
+    private LoanState(T user, Instant rentedTime, Instant returnTime, int usedRenewalPass) {
+        this.user = user;
+        this.rentedTime = rentedTime;
+        this.returnTime = returnTime;
+        this.usedRenewalPass = usedRenewalPass;
+    }
+
+    /**
+     * Gets the state of a copy that nobody holds.
+     *
+     * @param <T> The type of the user interacting with the copy.
+     * @return The available state.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends User> LoanState<T> available() {
+        return (LoanState<T>) AVAILABLE;
+    }
+
+    /**
+     * Creates the state of a new loan.
+     *
+     * @param <T>        The type of the user holding the copy.
+     * @param user       The user renting the copy.
+     * @param rentedTime The time when the copy was rented.
+     * @param rentPeriod The rental period in seconds.
+     * @return The state of the new loan.
+     */
+    public static <T extends User> LoanState<T> rented(T user, Instant rentedTime, int rentPeriod) {
+        return new LoanState<>(user, rentedTime, rentedTime.plus(rentPeriod, ChronoUnit.SECONDS), 0);
+    }
+
+    /**
+     * Creates the state of this loan extended by a renewal period.
+     * A loan without a return time, as set up directly on a copy, is extended from now.
+     *
+     * @param renewalPeriod The renewal period in seconds.
+     * @return The state of the renewed loan.
+     */
+    public LoanState<T> renewed(int renewalPeriod) {
+        Instant due = this.returnTime != null ? this.returnTime : Instant.now();
+        return new LoanState<>(this.user, this.rentedTime, due.plus(renewalPeriod, ChronoUnit.SECONDS), this.usedRenewalPass + 1);
+    }
+
+    /**
+     * Creates a copy of this state held by another user.
+     *
+     * @param user The user holding the copy, or {@code null} to make it available.
+     * @return The new state.
+     */
+    public LoanState<T> withUser(T user) {
+        if (user == null) {
+            return available();
+        }
+        return new LoanState<>(user, this.rentedTime, this.returnTime, this.usedRenewalPass);
+    }
+
+    /**
+     * Creates a copy of this state with another rental time.
+     *
+     * @param rentedTime The time when the copy was rented.
+     * @return The new state.
+     */
+    public LoanState<T> withRentedTime(Instant rentedTime) {
+        return new LoanState<>(this.user, rentedTime, this.returnTime, this.usedRenewalPass);
+    }
+
+    /**
+     * Creates a copy of this state with another return time.
+     *
+     * @param returnTime The time when the copy is expected to be returned.
+     * @return The new state.
+     */
+    public LoanState<T> withReturnTime(Instant returnTime) {
+        return new LoanState<>(this.user, this.rentedTime, returnTime, this.usedRenewalPass);
+    }
+
+    /**
+     * Creates a copy of this state with another number of used renewal passes.
+     *
+     * @param usedRenewalPass The number of renewal passes used.
+     * @return The new state.
+     */
+    public LoanState<T> withUsedRenewalPass(int usedRenewalPass) {
+        return new LoanState<>(this.user, this.rentedTime, this.returnTime, usedRenewalPass);
+    }
+
+    /**
+     * Checks if the copy is available.
+     *
+     * @return {@code true} if nobody holds the copy, {@code false} otherwise.
+     */
+    public boolean isAvailable() {
+        return this.user == null;
+    }
+
+    /**
+     * Gets the user holding the copy.
+     *
+     * @return The user, or {@code null} if the copy is available.
+     */
+    public T getUser() {
+        return user;
+    }
+
+    /**
+     * Gets the time when the copy was rented.
+     *
+     * @return The {@link Instant} representing the rental time.
+     */
+    public Instant getRentedTime() {
+        return rentedTime;
+    }
+
+    /**
+     * Gets the time when the copy is expected to be returned.
+     *
+     * @return The {@link Instant} representing the return time.
+     */
+    public Instant getReturnedTime() {
+        return returnTime;
+    }
+
+    /**
+     * Gets the number of renewal passes used for this loan.
+     *
+     * @return The number of renewal passes used.
+     */
+    public int getUsedRenewalPass() {
+        return usedRenewalPass;
+    }
+}
@@ -0,0 +1,388 @@
+package libraryManagementSystem;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Stores bibliographic records of books in a memory-mapped file, outside the Java heap.
+ * The file holds a header, an open-addressing hash table from ISBN to record number, and fixed-size records,
+ * so opening a store only reads the header and a record is only decoded when its {@link Book} is requested.
+ * Lookups by title, author and genre compare the stored bytes of each record, so only the matching records are decoded.
+ * Loans are not stored: a book read from the store is a fresh view that a {@link Library} keeps on the heap
+ * while it is in use. Records are appended and only ever updated to mark them deleted, and reads never lock.
+ */
+public class MappedCatalogStore implements CatalogStorage {
+    private static final int MAGIC = 0x4c4d5343;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int ISBN_LENGTH = 20;
+    private static final int TITLE_LENGTH = 126;
+    private static final int AUTHOR_LENGTH = 62;
+    private static final int GENRE_LENGTH = 30;
+    private static final int DESCRIPTION_LENGTH = 240;
+    private static final int FORMAT_LENGTH = 8;
+    private static final int ISBN_OFFSET = 0;
+    private static final int TITLE_OFFSET = ISBN_OFFSET + 2 + ISBN_LENGTH;
+    private static final int AUTHOR_OFFSET = TITLE_OFFSET + 2 + TITLE_LENGTH;
+    private static final int GENRE_OFFSET = AUTHOR_OFFSET + 2 + AUTHOR_LENGTH;
+    private static final int DESCRIPTION_OFFSET = GENRE_OFFSET + 2 + GENRE_LENGTH;
+    private static final int FORMAT_OFFSET = DESCRIPTION_OFFSET + 2 + DESCRIPTION_LENGTH;
+    private static final int YEAR_OFFSET = FORMAT_OFFSET + 2 + FORMAT_LENGTH;
+    private static final int RENTABLE_OFFSET = YEAR_OFFSET + 2;
+    private static final int DELETED_OFFSET = RENTABLE_OFFSET + 1;
+    private static final int RECORD_SIZE = 512;
+    // a record and its share of the hash table (at most four 4-byte slots) must fit in one mapping
+    private static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / (RECORD_SIZE + 16);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int slots;
+    private final int recordsOffset;
+    private volatile int size;
+
+    /**
+     * Opens a store, creating the file if it does not exist.
+     *
+     * @param file     The file holding the store.
+     * @param capacity The maximum number of records, at most about four million; ignored if the file already exists.
+     * @throws IOException If the file cannot be mapped or is not a catalog store, or the capacity is too large.
+     */
+    public MappedCatalogStore(Path file, int capacity) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = this.channel.size() == 0;
+        if (created) {
+            if (capacity > MAX_CAPACITY) {
+                this.channel.close();
+                throw new IOException("A catalog store can hold at most " + MAX_CAPACITY + " records");
+            }
+            this.capacity = Math.max(capacity, 1);
+            this.slots = Integer.highestOneBit(this.capacity * 2 - 1) * 2;
+        } else {
+            MappedByteBuffer header = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) < 1 || header.getInt(8) > MAX_CAPACITY) {
+                this.channel.close();
+                throw new IOException("Not a catalog store: " + file);
+            }
+            this.capacity = header.getInt(8);
+            this.slots = Integer.highestOneBit(this.capacity * 2 - 1) * 2;
+        }
+        this.recordsOffset = HEADER_SIZE + this.slots * 4;
+        long length = (long) this.recordsOffset + (long) this.capacity * RECORD_SIZE;
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        if (created) {
+            this.buffer.putInt(0, MAGIC);
+            this.buffer.putInt(4, VERSION);
+            this.buffer.putInt(8, this.capacity);
+            this.buffer.putInt(12, 0);
+        }
+        this.size = this.buffer.getInt(12);
+    }
+
+    /**
+     * Appends the bibliographic record of a book to the store.
+     *
+     * @param book The book to store.
+     * @return The record number of the book.
+     * @throws InvalidInputInformation If a book with the same ISBN is stored, the store is full, or a field is too long.
+     */
+    public synchronized int append(Book<?> book) throws InvalidInputInformation {
+        if (this.find(book.getISBN()) >= 0) {
+            throw new InvalidInputInformation("A book with ISBN " + book.getISBN() + " is already stored");
+        }
+        if (this.size == this.capacity) {
+            throw new InvalidInputInformation("The catalog store is full (" + this.capacity + " records)");
+        }
+        int record = this.size;
+        int base = this.recordsOffset + record * RECORD_SIZE;
+        this.putField(base + ISBN_OFFSET, ISBN_LENGTH, book.getISBN(), "ISBN");
+        this.putField(base + TITLE_OFFSET, TITLE_LENGTH, book.getTitle(), "Title");
+        this.putField(base + AUTHOR_OFFSET, AUTHOR_LENGTH, book.getAuthor(), "Author");
+        this.putField(base + GENRE_OFFSET, GENRE_LENGTH, book.getGenre(), "Genre");
+        this.putField(base + DESCRIPTION_OFFSET, DESCRIPTION_LENGTH, book.getDescription(), "Description");
+        this.putField(base + FORMAT_OFFSET, FORMAT_LENGTH, book.getFormat(), "Format");
+        this.buffer.putShort(base + YEAR_OFFSET, Short.parseShort(book.getPublicationYear()));
+        this.buffer.put(base + RENTABLE_OFFSET, (byte) (book.isRentable() ? 1 : 0));
+        this.buffer.put(base + DELETED_OFFSET, (byte) 0);
+        int slot = this.slot(book.getISBN());
+        while (this.buffer.getInt(HEADER_SIZE + slot * 4) != 0) {
+            slot = (slot + 1) & (this.slots - 1);
+        }
+        this.buffer.putInt(HEADER_SIZE + slot * 4, record + 1);
+        this.buffer.putInt(12, record + 1);
+        // the volatile write publishes the record and its index slot to readers
+        this.size = record + 1;
+        return record;
+    }
+
+    /**
+     * Stores the bibliographic record of a book by appending it.
+     *
+     * @param book The book to store.
+     * @throws InvalidInputInformation If a book with the same ISBN is stored, the store is full, or a field is too long.
+     */
+    @Override
+    public void store(Book<?> book) throws InvalidInputInformation {
+        this.append(book);
+    }
+
+    /**
+     * Finds the record number of a book.
+     *
+     * @param isbn The ISBN to look up.
+     * @return The record number, or -1 if no book with this ISBN is stored.
+     */
+    public int find(String isbn) {
+        int size = this.size;
+        byte[] key = isbn.getBytes(StandardCharsets.US_ASCII);
+        for (int slot = this.slot(isbn); ; slot = (slot + 1) & (this.slots - 1)) {
+            int entry = this.buffer.getInt(HEADER_SIZE + slot * 4);
+            if (entry == 0 || entry > size) {
+                return -1;
+            }
+            int base = this.recordsOffset + (entry - 1) * RECORD_SIZE;
+            // a deleted record stays in the table, and the ISBN may have been stored again further along
+            if (this.buffer.get(base + DELETED_OFFSET) == 0 && this.fieldEquals(base + ISBN_OFFSET, key)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Marks the record of a book as deleted, so it is no longer found.
+     *
+     * @param isbn The ISBN of the book.
+     * @return {@code true} if a record was deleted, {@code false} if no book with this ISBN is stored.
+     */
+    @Override
+    public synchronized boolean delete(String isbn) {
+        int record = this.find(isbn);
+        if (record < 0) {
+            return false;
+        }
+        this.buffer.put(this.recordsOffset + record * RECORD_SIZE + DELETED_OFFSET, (byte) 1);
+        return true;
+    }
+
+    /**
+     * Decodes the book with an ISBN.
+     *
+     * @param isbn The ISBN to look up.
+     * @return A new book built from the stored record, or {@code null} if no book with this ISBN is stored.
+     * @throws InvalidInputInformation If the stored record is not a valid book.
+     */
+    @Override
+    public Book<User> read(String isbn) throws InvalidInputInformation {
+        int record = this.find(isbn);
+        return record < 0 ? null : this.read(record);
+    }
+
+    /**
+     * Decodes the book stored in a record.
+     *
+     * @param record The record number.
+     * @return A new book built from the stored record.
+     * @throws InvalidInputInformation If the stored record is not a valid book.
+     */
+    public Book<User> read(int record) throws InvalidInputInformation {
+        if (record < 0 || record >= this.size) {
+            throw new InvalidInputInformation("Record number incorrect (ex: 0 to " + (this.size - 1) + ")");
+        }
+        return this.record(record).toBook();
+    }
+
+    /**
+     * Reads the fields of every record that is not deleted, in record order, without decoding their books.
+     *
+     * @param action The action to perform on each record.
+     * @throws InterruptedIOException If the federated search running the scan was cancelled.
+     */
+    @Override
+    public void forEachRecord(Consumer<? super CatalogRecord> action) throws InterruptedIOException {
+        int size = this.size;
+        for (int record = 0; record < size; record++) {
+            FederatedSearch.checkCancelled();
+            if (this.buffer.get(this.recordsOffset + record * RECORD_SIZE + DELETED_OFFSET) == 0) {
+                action.accept(this.record(record));
+            }
+        }
+    }
+
+    /**
+     * Finds at most a number of the stored books with a title, comparing the stored bytes and decoding only the matching records.
+     *
+     * @param title The exact title.
+     * @param limit The largest number of books to return.
+     * @return The books with the title, in record order.
+     * @throws InterruptedIOException If the federated search running the scan was cancelled.
+     */
+    @Override
+    public List<Book<User>> findByTitle(String title, int limit) throws InterruptedIOException {
+        return this.findByField(TITLE_OFFSET, title, limit);
+    }
+
+    /**
+     * Finds at most a number of the stored books by an author, comparing the stored bytes and decoding only the matching records.
+     *
+     * @param author The exact name of the author.
+     * @param limit  The largest number of books to return.
+     * @return The books by the author, in record order.
+     * @throws InterruptedIOException If the federated search running the scan was cancelled.
+     */
+    @Override
+    public List<Book<User>> findByAuthor(String author, int limit) throws InterruptedIOException {
+        return this.findByField(AUTHOR_OFFSET, author, limit);
+    }
+
+    /**
+     * Finds at most a number of the stored books of a genre, comparing the stored bytes and decoding only the matching records.
+     *
+     * @param genre The exact genre.
+     * @param limit The largest number of books to return.
+     * @return The books of the genre, in record order.
+     * @throws InterruptedIOException If the federated search running the scan was cancelled.
+     */
+    @Override
+    public List<Book<User>> findByGenre(String genre, int limit) throws InterruptedIOException {
+        return this.findByField(GENRE_OFFSET, genre, limit);
+    }
+
+    /**
+     * Reads the fields of a record.
+     *
+     * @param record The record number.
+     * @return The fields of the record.
+     */
+    private CatalogRecord record(int record) {
+        int base = this.recordsOffset + record * RECORD_SIZE;
+        return new CatalogRecord(this.getField(base + ISBN_OFFSET), this.getField(base + TITLE_OFFSET),
+                this.getField(base + AUTHOR_OFFSET), this.getField(base + GENRE_OFFSET),
+                this.getField(base + DESCRIPTION_OFFSET), this.getField(base + FORMAT_OFFSET),
+                this.buffer.get(base + RENTABLE_OFFSET) == 1, String.format("%04d", this.buffer.getShort(base + YEAR_OFFSET)));
+    }
+
+    /**
+     * Finds the records that are not deleted and hold a value in a field, and decodes their books.
+     *
+     * @param field The offset of the field in a record.
+     * @param value The exact value of the field.
+     * @param limit The largest number of books to return.
+     * @return The books of the matching records, in record order.
+     * @throws InterruptedIOException If the federated search running the scan was cancelled.
+     */
+    private List<Book<User>> findByField(int field, String value, int limit) throws InterruptedIOException {
+        byte[] key = value.getBytes(StandardCharsets.US_ASCII);
+        List<Book<User>> books = new ArrayList<>();
+        int size = this.size;
+        for (int record = 0; record < size && books.size() < limit; record++) {
+            FederatedSearch.checkCancelled();
+            int base = this.recordsOffset + record * RECORD_SIZE;
+            if (this.buffer.get(base + DELETED_OFFSET) == 0 && this.fieldEquals(base + field, key)) {
+                try {
+                    books.add(this.read(record));
+                } catch (InvalidInputInformation e) {
+                    System.out.println("Stored record " + record + " is invalid: " + e.getMessage());
+                }
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Gets the number of records in the store.
+     *
+     * @return The number of stored books.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the maximum number of records of the store.
+     *
+     * @return The capacity of the store.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Writes the mapped pages back to the file and closes it.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.buffer.force();
+        this.channel.close();
+    }
+
+    /**
+     * Gets the first hash table slot to probe for an ISBN.
+     *
+     * @param isbn The ISBN.
+     * @return The slot index.
+     */
+    private int slot(String isbn) {
+        int hash = isbn.hashCode();
+        return (hash ^ (hash >>> 16)) & (this.slots - 1);
+    }
+
+    /**
+     * Writes a length-prefixed ASCII field.
+     *
+     * @param offset    The position of the field in the file.
+     * @param maxLength The maximum number of characters of the field.
+     * @param value     The value to write.
+     * @param name      The name of the field, for the error message.
+     * @throws InvalidInputInformation If the value is too long for the field.
+     */
+    private void putField(int offset, int maxLength, String value, String name) throws InvalidInputInformation {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length > maxLength) {
+            throw new InvalidInputInformation(name + " too long for the catalog store (max " + maxLength + " characters)");
+        }
+        this.buffer.putShort(offset, (short) bytes.length);
+        this.buffer.put(offset + 2, bytes);
+    }
+
+    /**
+     * Reads a length-prefixed ASCII field.
+     *
+     * @param offset The position of the field in the file.
+     * @return The value of the field.
+     */
+    private String getField(int offset) {
+        byte[] bytes = new byte[this.buffer.getShort(offset)];
+        this.buffer.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Compares a length-prefixed field with a value without decoding the field.
+     *
+     * @param offset The position of the field in the file.
+     * @param value  The bytes to compare with.
+     * @return {@code true} if the field holds exactly these bytes, {@code false} otherwise.
+     */
+    private boolean fieldEquals(int offset, byte[] value) {
+        if (this.buffer.getShort(offset) != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (this.buffer.get(offset + 2 + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,14 +1,21 @@
 package libraryManagementSystem;
 
-import java.util.ArrayList;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Represents a meeting room in the library management system.
- * Meeting rooms can be booked by students or professors, subject to specific rules.
+ * Meeting rooms can be booked by students or professors, subject to specific rules,
+ * either starting now or for a future period kept in the reservation calendar of the room.
+ * A user may not book the room again on the same day. When the room already bars as many users as its
+ * {@link ExpiringSet} holds, new bookings are refused until some bans expire; a reservation accepted earlier
+ * that starts while the set is full is honoured, and the missing ban is reported.
  *
  * @param <T> The type of user interacting with the meeting room (e.g., Student, Professor).
  */
@@ -21,14 +28,18 @@ public class MeetingRoom<T extends User> implements Rules {
     private int renewalPeriodProfessor;
     private int latePenaltyPeriodProfessor;
     private int renewalPassedProfessor;
-    private ArrayList<T> previousUsers = new ArrayList<>();
+    private final ExpiringSet<T> previousUsers = new ExpiringSet<>();
     private Admin admin;
     private String roomNumber;
     private String phoneNumber;
     private boolean available = true;
     private T user;
     private final ReentrantLock lock = new ReentrantLock();
+    private final ReservationCalendar<T> calendar = new ReservationCalendar<>();
+    private final BookingWaitlist<T, Reservation<T>> waitlist = new BookingWaitlist<>();
+    private final CopyOnWriteArrayList<CatalogListener> listeners = new CopyOnWriteArrayList<>();
     private String faculty = "";
+    private String library = "";
 
     /**
      * Constructs a new meeting room with the specified room number and phone number.
@@ -55,10 +66,206 @@ public class MeetingRoom<T extends User> implements Rules {
      *
      * @param user              The user attempting to book the meeting room.
      * @param reservationPeriod The duration of the reservation in seconds.
+     * @return {@code true} if the room was booked, {@code false} if it is unavailable or being booked by another user.
      * @throws UnauthorizedUserAction If the user is not authorized to book the meeting room.
      * @throws InvalidInputInformation If the reservation period exceeds the allowed limit.
      */
-    public void bookRoom(T user, int reservationPeriod) throws UnauthorizedUserAction, InvalidInputInformation {
+    public boolean bookRoom(T user, int reservationPeriod) throws UnauthorizedUserAction, InvalidInputInformation {
+        this.checkBooking(user, reservationPeriod);
+        if (this.lock.tryLock()) {
+            try {
+                Instant now = Instant.now();
+                if (this.hasReservationOn(user, now)) {
+                    throw new UnauthorizedUserAction("You can't book a room on the same day.");
+                }
+                Reservation<T> reservation = this.available ? this.calendar.tryReserve(user, now, now.plusSeconds(reservationPeriod)) : null;
+                if (reservation != null) {
+                    int renewPeriod = this.getRenewalPeriod(user);
+                    System.out.println("Room " + this.roomNumber + " has been successfully booked.");
+                    this.schedule(reservation);
+                    EventJournal.record(JournalEvent.Type.ROOM_BOOKING, this.library, this.roomNumber, user.getEmail(),
+                            String.valueOf(reservation.getEnd().toEpochMilli()), String.valueOf(now.plusSeconds(renewPeriod).toEpochMilli()),
+                            String.valueOf(now.toEpochMilli()));
+                    return true;
+                } else {
+                    System.out.println("Sorry, the room is currently unavailable.");
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Books the meeting room for a user as soon as it is free, instead of the user trying again until it is.
+     * Users waiting for the room are served in turn when a booking ends or is cancelled, professors first.
+     *
+     * @param user              The user waiting for the meeting room.
+     * @param reservationPeriod The duration of the reservation in seconds.
+     * @return The reservation, completed when the room is booked for the user, or exceptionally if the booking
+     *         is refused when the user's turn comes. Cancelling it gives up the place in the waitlist.
+     * @throws UnauthorizedUserAction If the user is not authorized to book the meeting room.
+     * @throws InvalidInputInformation If the reservation period exceeds the allowed limit.
+     */
+    public CompletableFuture<Reservation<T>> waitForRoom(T user, int reservationPeriod) throws UnauthorizedUserAction, InvalidInputInformation {
+        this.checkBooking(user, reservationPeriod);
+        CompletableFuture<Reservation<T>> reservation = this.waitlist.join(user, reservationPeriod);
+        // the room may already be free, or have been freed while the user joined
+        this.serveWaitlist();
+        if (!reservation.isDone()) {
+            System.out.println("Room " + this.roomNumber + " will be booked for you when it is free. You are number "
+                    + this.waitlist.position(user) + " on the waitlist.");
+        }
+        return reservation;
+    }
+
+    /**
+     * Removes a user from the waitlist of the meeting room.
+     *
+     * @param user The user leaving the waitlist.
+     * @return {@code true} if the user was waiting, {@code false} otherwise.
+     */
+    public boolean leaveWaitlist(T user) {
+        return this.waitlist.leave(user);
+    }
+
+    /**
+     * Gets the position of a user in the waitlist of the meeting room.
+     *
+     * @param user The user to look up.
+     * @return The position of the user, counting from 1, or 0 if the user is not waiting.
+     */
+    public long getWaitlistPosition(T user) {
+        return this.waitlist.position(user);
+    }
+
+    /**
+     * Gets the number of users waiting for the meeting room.
+     *
+     * @return The number of waiting users.
+     */
+    public int getWaitlistSize() {
+        return this.waitlist.size();
+    }
+
+    /**
+     * Allows a user to reserve the meeting room for a period starting in the future.
+     * The room becomes unavailable to other users when the reservation starts, and available again when it ends.
+     *
+     * @param user              The user reserving the meeting room.
+     * @param start             The start of the reservation, not in the past.
+     * @param reservationPeriod The duration of the reservation in seconds.
+     * @return The reservation.
+     * @throws UnauthorizedUserAction If the user is not authorized to book the meeting room,
+     *                                 or already holds a reservation of it on the same day.
+     * @throws InvalidInputInformation If the start is in the past, the reservation period exceeds the allowed limit,
+     *                                 or the room is already booked during the period.
+     */
+    public Reservation<T> reserveRoom(T user, Instant start, int reservationPeriod) throws UnauthorizedUserAction, InvalidInputInformation {
+        Reservation<T> reservation = this.tryReserveRoom(user, start, reservationPeriod);
+        if (reservation == null) {
+            throw new InvalidInputInformation("Sorry, the room is already booked during that period.");
+        }
+        return reservation;
+    }
+
+    /**
+     * Reserves the meeting room for a period starting now or in the future, if it is free.
+     *
+     * @param user              The user reserving the meeting room.
+     * @param start             The start of the reservation, not in the past.
+     * @param reservationPeriod The duration of the reservation in seconds.
+     * @return The reservation, or {@code null} if the room is already booked during the period.
+     * @throws UnauthorizedUserAction If the user is not authorized to book the meeting room,
+     *                                 or already holds a reservation of it on the same day.
+     * @throws InvalidInputInformation If the start is in the past or the reservation period exceeds the allowed limit.
+     */
+    Reservation<T> tryReserveRoom(T user, Instant start, int reservationPeriod) throws UnauthorizedUserAction, InvalidInputInformation {
+        this.checkBooking(user, reservationPeriod);
+        Instant now = Instant.now();
+        if (start.isBefore(now.minusSeconds(1))) {
+            throw new InvalidInputInformation("Reservation start incorrect (ex: a time in the future)");
+        }
+        if (reservationPeriod <= 0) {
+            throw new InvalidInputInformation("Reservation period incorrect (ex: 3600)");
+        }
+        this.lock.lock();
+        try {
+            this.calendar.removeEndedBefore(now);
+            if (this.hasReservationOn(user, start)) {
+                throw new UnauthorizedUserAction("You can't book a room on the same day.");
+            }
+            Reservation<T> reservation = this.calendar.tryReserve(user, start, start.plusSeconds(reservationPeriod));
+            if (reservation == null) {
+                return null;
+            }
+            this.schedule(reservation);
+            System.out.println("Room " + this.roomNumber + " has been reserved from " + reservation.getStart() + " to " + reservation.getEnd() + ".");
+            EventJournal.record(JournalEvent.Type.ROOM_BOOKING, this.library, this.roomNumber, user.getEmail(),
+                    String.valueOf(reservation.getEnd().toEpochMilli()), String.valueOf(now.toEpochMilli()), String.valueOf(start.toEpochMilli()));
+            return reservation;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels a reservation of the meeting room; if it has already started, the room is freed at once.
+     *
+     * @param user  The user who made the reservation.
+     * @param start The start of the reservation.
+     * @return {@code true} if the reservation was cancelled, {@code false} if the user has no reservation starting at that time.
+     */
+    public boolean cancelReservation(T user, Instant start) {
+        this.lock.lock();
+        try {
+            Reservation<T> reservation = this.calendar.cancel(user, start);
+            if (reservation == null) {
+                return false;
+            }
+            reservation.cancelTimers();
+            this.release(reservation);
+            this.fireReservationEnded(reservation);
+            EventJournal.record(JournalEvent.Type.ROOM_CANCELLATION, this.library, this.roomNumber, user.getEmail(),
+                    String.valueOf(start.toEpochMilli()));
+            System.out.println("Reservation of room " + this.roomNumber + " from " + start + " has been cancelled.");
+            return true;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the first time the meeting room is free for a period.
+     *
+     * @param from              The earliest start of the period.
+     * @param reservationPeriod The duration of the period in seconds.
+     * @return The start of the first free period of that duration.
+     */
+    public Instant nextFreeSlot(Instant from, int reservationPeriod) {
+        return this.calendar.nextFreeSlot(from, Duration.ofSeconds(reservationPeriod));
+    }
+
+    /**
+     * Gets the calendar of current and future reservations of the meeting room.
+     * Reservations are made and cancelled through the room, so the calendar can only be read.
+     *
+     * @return The reservation calendar.
+     */
+    public ReservationCalendar<T> getCalendar() {
+        return calendar;
+    }
+
+    /**
+     * Checks that a user may book the meeting room for a period.
+     *
+     * @param user              The user booking the meeting room.
+     * @param reservationPeriod The duration of the reservation in seconds.
+     * @throws UnauthorizedUserAction If the user is not authorized to book the meeting room.
+     * @throws InvalidInputInformation If the reservation period exceeds the allowed limit.
+     */
+    private void checkBooking(T user, int reservationPeriod) throws UnauthorizedUserAction, InvalidInputInformation {
         if (!user.getFaculty().equals(this.getFaculty())) {
             throw new UnauthorizedUserAction("Please book rooms from your library.");
         }
@@ -68,38 +275,186 @@ public class MeetingRoom<T extends User> implements Rules {
         if (this.previousUsers.contains(user)) {
             throw new UnauthorizedUserAction("You can't book a room on the same day.");
         }
+        if (this.previousUsers.isFull()) {
+            throw new UnauthorizedUserAction("Too many users have booked this room today, please try again later.");
+        }
         if (user.getClass().getSimpleName().equals("Student") && reservationPeriod > this.rentPeriodStudent) {
             throw new InvalidInputInformation("You can only book a room for a maximum of " + this.rentPeriodStudent);
         } else if (reservationPeriod > this.rentPeriodProfessor) {
             throw new InvalidInputInformation("You can only book a room for a maximum of " + this.rentPeriodProfessor);
         }
-        if (this.lock.tryLock()) {
-            try {
-                if (this.available) {
-                    this.available = false;
-                    this.user = user;
-                    int renewPeriod = user.getClass().getSimpleName().equals("Student") ? this.renewalPeriodStudent : this.renewalPeriodProfessor;
-
-                    this.previousUsers.add(user);
-                    ScheduledExecutorService scheduler1 = Executors.newScheduledThreadPool(1);
-                    scheduler1.schedule(() -> {
-                        this.previousUsers.remove(user);
-                        scheduler1.shutdown();
-                    }, renewPeriod, TimeUnit.SECONDS);
+    }
 
-                    System.out.println("Room " + this.roomNumber + " has been successfully booked.");
-                    ScheduledExecutorService scheduler2 = Executors.newScheduledThreadPool(1);
-                    scheduler2.schedule(() -> {
-                        this.available = true;
-                        this.user = null;
-                        scheduler2.shutdown();
-                    }, reservationPeriod, TimeUnit.SECONDS);
-                } else {
-                    System.out.println("Sorry, the room is currently unavailable.");
+    /**
+     * Checks if a user already holds a reservation of the room starting on the same day as a time.
+     *
+     * @param user The user.
+     * @param time The time.
+     * @return {@code true} if a reservation of the user starts on that day, {@code false} otherwise.
+     */
+    private boolean hasReservationOn(T user, Instant time) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate day = time.atZone(zone).toLocalDate();
+        Instant from = day.atStartOfDay(zone).toInstant();
+        Instant to = day.plusDays(1).atStartOfDay(zone).toInstant();
+        for (Reservation<T> reservation : this.calendar.getReservations(from, to)) {
+            if (reservation.getUser() == user && !reservation.getStart().isBefore(from)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the period in which a user can't book the room again after a booking starts.
+     *
+     * @param user The user.
+     * @return The period in seconds.
+     */
+    private int getRenewalPeriod(T user) {
+        return user.getClass().getSimpleName().equals("Student") ? this.renewalPeriodStudent : this.renewalPeriodProfessor;
+    }
+
+    /**
+     * Schedules a reservation to occupy the room when it starts and free it when it ends.
+     *
+     * @param reservation The reservation.
+     */
+    private void schedule(Reservation<T> reservation) {
+        for (CatalogListener listener : this.listeners) {
+            listener.roomReserved(this, reservation);
+        }
+        long now = System.currentTimeMillis();
+        long start = reservation.getStart().toEpochMilli() - now;
+        if (start <= 0) {
+            this.occupy(reservation);
+        } else {
+            reservation.starting = ExpirationService.getInstance().schedule(() -> this.occupy(reservation), start, TimeUnit.MILLISECONDS);
+        }
+        reservation.ending = ExpirationService.getInstance().schedule(() -> {
+            // under the lock, so a listener replaying the reservations never sees one end before it is replayed
+            this.lock.lock();
+            try {
+                if (this.calendar.remove(reservation)) {
+                    this.fireReservationEnded(reservation);
                 }
+                this.release(reservation);
             } finally {
-                lock.unlock();
+                this.lock.unlock();
+            }
+        }, Math.max(reservation.getEnd().toEpochMilli() - now, 0), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Marks the room as occupied by the user of a reservation that has started, unless it was cancelled,
+     * and bans the user from booking the room again for the renewal period from the start of the reservation.
+     *
+     * @param reservation The reservation.
+     */
+    private void occupy(Reservation<T> reservation) {
+        this.lock.lock();
+        try {
+            if (this.calendar.contains(reservation)) {
+                this.available = false;
+                this.user = reservation.getUser();
+                if (!this.previousUsers.add(this.user, reservation.getStart().toEpochMilli() + this.getRenewalPeriod(this.user) * 1000L)) {
+                    System.out.println("Room " + this.roomNumber + " can't bar more users today, so " + this.user.getName() + " may book it again.");
+                }
             }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the room as available if it is occupied by the user of a reservation that ended or was cancelled.
+     *
+     * @param reservation The reservation.
+     */
+    private void release(Reservation<T> reservation) {
+        this.lock.lock();
+        try {
+            if (this.user == reservation.getUser() && this.calendar.getReservationAt(Instant.now()) == null) {
+                this.available = true;
+                this.user = null;
+                this.serveWaitlist();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Books the room for the users waiting for it, in turn, while it is free.
+     */
+    private void serveWaitlist() {
+        this.lock.lock();
+        try {
+            this.waitlist.serve((user, reservationPeriod) -> {
+                if (!this.available || !this.bookRoom(user, reservationPeriod)) {
+                    return null;
+                }
+                return this.calendar.getReservationAt(Instant.now());
+            });
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Notifies the listeners that a reservation has ended or been cancelled.
+     *
+     * @param reservation The reservation.
+     */
+    private void fireReservationEnded(Reservation<T> reservation) {
+        for (CatalogListener listener : this.listeners) {
+            listener.reservationEnded(this, reservation);
+        }
+    }
+
+    /**
+     * Restores a booking recorded in the journal, keeping only the parts that have not ended yet.
+     *
+     * @param user     The user who booked the room.
+     * @param start    The start of the booking.
+     * @param until    The end of the booking.
+     * @param banUntil The end of the period in which the user can't book the room again.
+     */
+    void restoreBooking(T user, Instant start, Instant until, Instant banUntil) {
+        long now = System.currentTimeMillis();
+        this.lock.lock();
+        try {
+            if (until.toEpochMilli() > now && until.isAfter(start)) {
+                Reservation<T> reservation = this.calendar.tryReserve(user, start, until);
+                if (reservation != null) {
+                    this.schedule(reservation);
+                }
+            }
+            if (banUntil.toEpochMilli() > now && !this.previousUsers.add(user, banUntil.toEpochMilli())) {
+                System.out.println("Room " + this.roomNumber + " can't bar more users today, so " + user.getName() + " may book it again.");
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Restores the cancellation of a reservation recorded in the journal.
+     *
+     * @param user  The user who made the reservation.
+     * @param start The start of the reservation.
+     */
+    void restoreCancellation(T user, Instant start) {
+        this.lock.lock();
+        try {
+            Reservation<T> reservation = this.calendar.cancel(user, start);
+            if (reservation != null) {
+                reservation.cancelTimers();
+                this.release(reservation);
+                this.fireReservationEnded(reservation);
+            }
+        } finally {
+            this.lock.unlock();
         }
     }
 
@@ -212,6 +567,24 @@ public class MeetingRoom<T extends User> implements Rules {
         this.faculty = faculty;
     }
 
+    /**
+     * Gets the journal key of the library holding the meeting room.
+     *
+     * @return The key of the library, as given by {@link Library#getJournalKey()}.
+     */
+    String getLibrary() {
+        return library;
+    }
+
+    /**
+     * Sets the journal key of the library holding the meeting room.
+     *
+     * @param library The key of the library.
+     */
+    void setLibrary(String library) {
+        this.library = library;
+    }
+
     /**
      * Returns a string representation of the meeting room.
      *
@@ -432,4 +805,41 @@ public class MeetingRoom<T extends User> implements Rules {
             throw new UnauthorizedUserAction("You are not the admin of this library");
         }
     }
+
+    /**
+     * Registers a listener to be notified of reservations of this meeting room.
+     *
+     * @param listener The listener to register.
+     */
+    public void addCatalogListener(CatalogListener listener) {
+        this.listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Registers a listener and notifies it of every reservation that has not ended yet.
+     * Both happen under the lock of the room, so no reservation is made or ended between the two
+     * and the listener is never told of a reservation after it ended.
+     *
+     * @param listener The listener to register.
+     */
+    void followReservations(CatalogListener listener) {
+        this.lock.lock();
+        try {
+            this.addCatalogListener(listener);
+            for (Reservation<T> reservation : this.calendar.getReservations(Instant.now(), Instant.ofEpochMilli(Long.MAX_VALUE))) {
+                listener.roomReserved(this, reservation);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Unregisters a listener from this meeting room.
+     *
+     * @param listener The listener to unregister.
+     */
+    public void removeCatalogListener(CatalogListener listener) {
+        this.listeners.remove(listener);
+    }
 }
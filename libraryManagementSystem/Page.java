@@ -0,0 +1,55 @@
+package libraryManagementSystem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents one page of a paginated query result.
+ * The page carries a continuation token that resumes the query right after its last item,
+ * so fetching the next page does not redo the work of the previous ones and is not thrown off
+ * by items added or removed in the meantime.
+ *
+ * @param <E> The type of the items in the page.
+ */
+public class Page<E> {
+    private final ArrayList<E> items;
+    private final String nextToken;
+
+    /**
+     * Constructs a new page.
+     *
+     * @param items     The items of the page, in query order.
+     * @param nextToken The token of the next page, or {@code null} if this is the last page.
+     */
+    public Page(List<E> items, String nextToken) {
+        this.items = new ArrayList<>(items);
+        this.nextToken = nextToken;
+    }
+
+    /**
+     * Gets the items of the page.
+     *
+     * @return A list of the items, in query order.
+     */
+    public ArrayList<E> getItems() {
+        return items;
+    }
+
+    /**
+     * Gets the token to pass to the same query to fetch the next page.
+     *
+     * @return The token of the next page, or {@code null} if this is the last page.
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    /**
+     * Checks if there are more items after this page.
+     *
+     * @return {@code true} if there is a next page, {@code false} otherwise.
+     */
+    public boolean hasNextPage() {
+        return this.nextToken != null;
+    }
+}
@@ -0,0 +1,213 @@
+package libraryManagementSystem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the most borrowed books of a library, ranked by the number of times they were borrowed.
+ * The ranking is updated incrementally on every borrow, so reading it never sorts the catalog.
+ * Borrows of books that cannot enter the ranking are rejected without taking the lock.
+ * Twice as many books as shown are kept, so removing a ranked book only drops its entry. Once books were left out,
+ * a book only enters a ranking that is not full if it ranks above every kept book, and the ranking becomes stale,
+ * to be rebuilt from the catalog, when removals leave fewer books than shown.
+ */
+public class PopularityRanking implements CatalogListener {
+    private int capacity;
+    private final ArrayList<Book<User>> top = new ArrayList<>();
+    private final HashMap<Book<User>, Integer> changing = new HashMap<>();
+    // no book of the catalog was left out of the kept books since the last rebuild
+    private volatile boolean complete = true;
+    private volatile boolean stale;
+    private volatile int threshold = Integer.MIN_VALUE;
+    private volatile List<Book<User>> snapshot = Collections.emptyList();
+
+    /**
+     * Constructs a new empty ranking.
+     *
+     * @param capacity The number of books kept in the ranking.
+     */
+    public PopularityRanking(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+    }
+
+    /**
+     * Updates the ranking after a book has been borrowed.
+     *
+     * @param book The book that was borrowed.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void bookBorrowed(Book<?> book) {
+        this.offer((Book<User>) book);
+    }
+
+    /**
+     * Records the borrow count of a ranked book before it changes, since setting the count may lower it.
+     *
+     * @param book The book about to change.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized void bookChanging(Book<?> book) {
+        if (this.top.contains(book)) {
+            this.changing.put((Book<User>) book, book.getNbTimesBorrowed());
+        }
+    }
+
+    /**
+     * Moves a book whose borrow count was set to its new place, taking it out first if its count went down.
+     *
+     * @param book The book that changed.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized void bookChanged(Book<?> book) {
+        Integer before = this.changing.remove(book);
+        if (before != null && book.getNbTimesBorrowed() < before) {
+            this.remove((Book<User>) book);
+        }
+        this.offer((Book<User>) book);
+    }
+
+    /**
+     * Offers a book to the ranking, adding or moving it up if its borrow count qualifies.
+     *
+     * @param book The book to offer.
+     */
+    public void offer(Book<User> book) {
+        if (book.getNbTimesBorrowed() < this.threshold) {
+            // a kept book never falls below the threshold, so the book is left out
+            this.complete = false;
+            return;
+        }
+        synchronized (this) {
+            int index = this.top.indexOf(book);
+            if (index < 0) {
+                int last = this.top.isEmpty() ? Integer.MIN_VALUE : this.top.get(this.top.size() - 1).getNbTimesBorrowed();
+                if (this.top.size() < this.kept() && (this.complete || book.getNbTimesBorrowed() >= last)) {
+                    this.top.add(book);
+                } else if (book.getNbTimesBorrowed() > last) {
+                    this.top.set(this.top.size() - 1, book);
+                    this.complete = false;
+                } else {
+                    this.complete = false;
+                    return;
+                }
+                index = this.top.size() - 1;
+            }
+            // borrow counts only grow between changes, so the book can only move up
+            while (index > 0 && this.top.get(index - 1).getNbTimesBorrowed() < book.getNbTimesBorrowed()) {
+                Collections.swap(this.top, index - 1, index);
+                index--;
+            }
+            this.publish();
+        }
+    }
+
+    /**
+     * Removes a book from the ranking, marking the ranking stale if fewer books than shown are left
+     * while some books of the catalog were left out.
+     *
+     * @param book The book to remove.
+     * @return {@code true} if the book was ranked, {@code false} otherwise.
+     */
+    public synchronized boolean remove(Book<User> book) {
+        if (this.top.remove(book)) {
+            if (this.top.size() < this.capacity && !this.complete) {
+                this.stale = true;
+            }
+            this.publish();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the ranking must be rebuilt from the catalog, as removed books left it without enough books to show.
+     *
+     * @return {@code true} if the ranking is stale, {@code false} otherwise.
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Rebuilds the ranking from scratch, for example once it is stale.
+     * The books kept are selected with a bounded heap, so the catalog is not sorted.
+     *
+     * @param books All books of the catalog.
+     */
+    public synchronized void rebuild(Collection<Book<User>> books) {
+        PriorityQueue<Book<User>> kept = new PriorityQueue<>(Comparator.comparingInt(Book::getNbTimesBorrowed));
+        int count = 0;
+        for (Book<User> book : books) {
+            kept.add(book);
+            if (kept.size() > this.kept()) {
+                kept.poll();
+            }
+            count++;
+        }
+        ArrayList<Book<User>> ranked = new ArrayList<>(kept);
+        ranked.sort((b1, b2) -> b2.getNbTimesBorrowed() - b1.getNbTimesBorrowed());
+        this.top.clear();
+        this.top.addAll(ranked);
+        this.changing.clear();
+        this.complete = count <= this.kept();
+        this.stale = false;
+        this.publish();
+    }
+
+    /**
+     * Gets the most borrowed books, most borrowed first.
+     *
+     * @param count The number of books wanted.
+     * @return A list of at most {@code count} books, limited by the capacity of the ranking.
+     */
+    public List<Book<User>> getTop(int count) {
+        List<Book<User>> ranked = this.snapshot;
+        return ranked.subList(0, Math.min(Math.max(count, 0), ranked.size()));
+    }
+
+    /**
+     * Gets the number of books kept in the ranking.
+     *
+     * @return The capacity of the ranking.
+     */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets the number of books kept in the ranking and rebuilds it.
+     *
+     * @param capacity The new capacity of the ranking.
+     * @param books    All books of the catalog.
+     */
+    public synchronized void setCapacity(int capacity, Collection<Book<User>> books) {
+        this.capacity = Math.max(capacity, 1);
+        this.rebuild(books);
+    }
+
+    /**
+     * Gets the number of books kept, twice the number shown.
+     *
+     * @return The number of books kept.
+     */
+    private int kept() {
+        return 2 * this.capacity;
+    }
+
+    /**
+     * Publishes the shown part of the ranking to readers and updates the admission threshold.
+     */
+    private void publish() {
+        this.snapshot = Collections.unmodifiableList(new ArrayList<>(this.top.subList(0, Math.min(this.capacity, this.top.size()))));
+        boolean open = this.top.isEmpty() || (this.top.size() < this.kept() && this.complete);
+        this.threshold = open ? Integer.MIN_VALUE : this.top.get(this.top.size() - 1).getNbTimesBorrowed();
+    }
+}
@@ -0,0 +1,78 @@
+package libraryManagementSystem;
+
+import java.time.Instant;
+
+/**
+ * Represents a booking of a meeting room by a user for a period of time, held in a {@link ReservationCalendar}.
+ *
+ * @param <T> The type of user who made the reservation (e.g., Student, Professor).
+ */
+public class Reservation<T extends User> {
+    private final T user;
+    private final Instant start;
+    private final Instant end;
+    Expiration starting;
+    Expiration ending;
+
+    /**
+     * Constructs a new reservation.
+     *
+     * @param user  The user who made the reservation.
+     * @param start The start of the reservation, included.
+     * @param end   The end of the reservation, excluded.
+     */
+    public Reservation(T user, Instant start, Instant end) {
+        this.user = user;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Gets the user who made the reservation.
+     *
+     * @return The user.
+     */
+    public T getUser() {
+        return user;
+    }
+
+    /**
+     * Gets the start of the reservation.
+     *
+     * @return The start time, included.
+     */
+    public Instant getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the end of the reservation.
+     *
+     * @return The end time, excluded.
+     */
+    public Instant getEnd() {
+        return end;
+    }
+
+    /**
+     * Cancels the timers that occupy and free the room for this reservation.
+     */
+    void cancelTimers() {
+        if (this.starting != null) {
+            this.starting.cancel();
+        }
+        if (this.ending != null) {
+            this.ending.cancel();
+        }
+    }
+
+    /**
+     * Returns a string representation of the reservation.
+     *
+     * @return The user and period of the reservation.
+     */
+    @Override
+    public String toString() {
+        return this.user.getName() + " from " + this.start + " to " + this.end;
+    }
+}
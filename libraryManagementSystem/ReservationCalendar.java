@@ -0,0 +1,225 @@
+package libraryManagementSystem;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Holds the reservations of a meeting room, current and future, ordered by start time.
+ * Reservations of a room never overlap, so the reservation that could conflict with a new period is either
+ * the last one starting before the period or the first one starting inside it: checking a period for conflicts,
+ * booking and cancelling take O(log n) time in a tree of non-overlapping intervals keyed by their start.
+ * Only the meeting room changes its calendar, so the calendar it hands out can be read but not booked or cancelled.
+ *
+ * @param <T> The type of user making reservations (e.g., Student, Professor).
+ */
+public class ReservationCalendar<T extends User> {
+    private final TreeMap<Long, Reservation<T>> reservations = new TreeMap<>();
+
+    /**
+     * Books a period of time.
+     *
+     * @param user  The user making the reservation.
+     * @param start The start of the period, included.
+     * @param end   The end of the period, excluded.
+     * @return The new reservation.
+     * @throws InvalidInputInformation If the period is empty or overlaps another reservation.
+     */
+    synchronized Reservation<T> reserve(T user, Instant start, Instant end) throws InvalidInputInformation {
+        if (!end.isAfter(start)) {
+            throw new InvalidInputInformation("Reservation period incorrect (ex: an end after the start)");
+        }
+        Reservation<T> conflict = this.conflict(start.toEpochMilli(), end.toEpochMilli());
+        if (conflict != null) {
+            throw new InvalidInputInformation("The room is already booked from " + conflict.getStart() + " to " + conflict.getEnd());
+        }
+        return this.add(user, start, end);
+    }
+
+    /**
+     * Books a period of time if it is free.
+     *
+     * @param user  The user making the reservation.
+     * @param start The start of the period, included.
+     * @param end   The end of the period, excluded, after the start.
+     * @return The new reservation, or {@code null} if the period overlaps another reservation.
+     */
+    synchronized Reservation<T> tryReserve(T user, Instant start, Instant end) {
+        if (this.conflict(start.toEpochMilli(), end.toEpochMilli()) != null) {
+            return null;
+        }
+        return this.add(user, start, end);
+    }
+
+    /**
+     * Checks if a period of time is free.
+     *
+     * @param start The start of the period, included.
+     * @param end   The end of the period, excluded.
+     * @return {@code true} if no reservation overlaps the period, {@code false} otherwise.
+     */
+    public synchronized boolean isFree(Instant start, Instant end) {
+        return this.conflict(start.toEpochMilli(), end.toEpochMilli()) == null;
+    }
+
+    /**
+     * Cancels the reservation of a user starting at a time.
+     *
+     * @param user  The user who made the reservation.
+     * @param start The start of the reservation.
+     * @return The cancelled reservation, or {@code null} if the user has no reservation starting at that time.
+     */
+    synchronized Reservation<T> cancel(T user, Instant start) {
+        Reservation<T> reservation = this.reservations.get(start.toEpochMilli());
+        if (reservation == null || reservation.getUser() != user) {
+            return null;
+        }
+        this.reservations.remove(start.toEpochMilli());
+        return reservation;
+    }
+
+    /**
+     * Removes a reservation, such as one that has ended.
+     *
+     * @param reservation The reservation to remove.
+     * @return {@code true} if the reservation was in the calendar, {@code false} otherwise.
+     */
+    synchronized boolean remove(Reservation<T> reservation) {
+        return this.reservations.remove(reservation.getStart().toEpochMilli(), reservation);
+    }
+
+    /**
+     * Checks if a reservation is still in the calendar.
+     *
+     * @param reservation The reservation.
+     * @return {@code true} if the reservation has not been cancelled or removed, {@code false} otherwise.
+     */
+    synchronized boolean contains(Reservation<T> reservation) {
+        return this.reservations.get(reservation.getStart().toEpochMilli()) == reservation;
+    }
+
+    /**
+     * Gets the reservation covering a time.
+     *
+     * @param time The time.
+     * @return The reservation, or {@code null} if the room is free at that time.
+     */
+    public synchronized Reservation<T> getReservationAt(Instant time) {
+        Map.Entry<Long, Reservation<T>> before = this.reservations.floorEntry(time.toEpochMilli());
+        return before != null && before.getValue().getEnd().isAfter(time) ? before.getValue() : null;
+    }
+
+    /**
+     * Gets the first reservation starting at or after a time.
+     *
+     * @param time The time.
+     * @return The reservation, or {@code null} if no reservation starts at or after that time.
+     */
+    public synchronized Reservation<T> getNextReservation(Instant time) {
+        Map.Entry<Long, Reservation<T>> after = this.reservations.ceilingEntry(time.toEpochMilli());
+        return after == null ? null : after.getValue();
+    }
+
+    /**
+     * Gets the reservations overlapping a period, in order of start time.
+     *
+     * @param from The start of the period, included.
+     * @param to   The end of the period, excluded.
+     * @return The reservations overlapping the period.
+     */
+    public synchronized List<Reservation<T>> getReservations(Instant from, Instant to) {
+        List<Reservation<T>> overlapping = new ArrayList<>();
+        Reservation<T> first = this.getReservationAt(from);
+        if (first != null) {
+            overlapping.add(first);
+        }
+        overlapping.addAll(this.reservations.subMap(from.toEpochMilli(), first == null, to.toEpochMilli(), false).values());
+        return overlapping;
+    }
+
+    /**
+     * Finds the first free period of a given length starting at or after a time.
+     *
+     * @param from   The earliest start of the period.
+     * @param length The length of the period.
+     * @return The start of the first free period of that length.
+     */
+    public synchronized Instant nextFreeSlot(Instant from, Duration length) {
+        long start = from.toEpochMilli();
+        Reservation<T> current = this.getReservationAt(from);
+        if (current != null) {
+            start = current.getEnd().toEpochMilli();
+        }
+        // only the gaps between the following reservations need checking, in order
+        for (Reservation<T> next : this.reservations.tailMap(start, true).values()) {
+            if (next.getStart().toEpochMilli() - start >= length.toMillis()) {
+                break;
+            }
+            start = Math.max(start, next.getEnd().toEpochMilli());
+        }
+        return Instant.ofEpochMilli(start);
+    }
+
+    /**
+     * Removes the reservations that ended before a time.
+     *
+     * @param time The time.
+     * @return The number of reservations removed.
+     */
+    synchronized int removeEndedBefore(Instant time) {
+        int removed = 0;
+        Map.Entry<Long, Reservation<T>> first = this.reservations.firstEntry();
+        while (first != null && !first.getValue().getEnd().isAfter(time)) {
+            this.reservations.pollFirstEntry();
+            removed++;
+            first = this.reservations.firstEntry();
+        }
+        return removed;
+    }
+
+    /**
+     * Gets the number of reservations in the calendar.
+     *
+     * @return The number of reservations.
+     */
+    public synchronized int size() {
+        return this.reservations.size();
+    }
+
+    /**
+     * Adds a reservation known not to conflict, at the millisecond precision of the calendar.
+     *
+     * @param user  The user making the reservation.
+     * @param start The start of the period, included.
+     * @param end   The end of the period, excluded.
+     * @return The new reservation.
+     */
+    private Reservation<T> add(T user, Instant start, Instant end) {
+        Reservation<T> reservation = new Reservation<>(user, start.truncatedTo(ChronoUnit.MILLIS), end.truncatedTo(ChronoUnit.MILLIS));
+        this.reservations.put(start.toEpochMilli(), reservation);
+        return reservation;
+    }
+
+    /**
+     * Finds a reservation overlapping a period.
+     *
+     * @param start The start of the period in epoch milliseconds, included.
+     * @param end   The end of the period in epoch milliseconds, excluded.
+     * @return A reservation overlapping the period, or {@code null} if there is none.
+     */
+    private Reservation<T> conflict(long start, long end) {
+        Map.Entry<Long, Reservation<T>> before = this.reservations.floorEntry(start);
+        if (before != null && before.getValue().getEnd().toEpochMilli() > start) {
+            return before.getValue();
+        }
+        Map.Entry<Long, Reservation<T>> after = this.reservations.higherEntry(start);
+        if (after != null && after.getKey() < end) {
+            return after.getValue();
+        }
+        return null;
+    }
+}
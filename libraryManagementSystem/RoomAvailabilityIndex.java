@@ -0,0 +1,230 @@
+package libraryManagementSystem;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Indexes the meeting rooms of the libraries of a faculty by the periods they are booked,
+ * so free rooms can be found without checking every room.
+ * Time is cut into 5-minute slots, and each slot has a bitmap of the rooms booked for the whole slot.
+ * Finding the rooms free for a period ORs the bitmaps of the slots inside the period, 64 rooms per word,
+ * and only the rooms left are checked exactly against their reservation calendars.
+ * The index is kept in sync through {@link CatalogListener} notifications from the libraries and rooms.
+ */
+public class RoomAvailabilityIndex implements CatalogListener {
+    private static final long SLOT_MILLIS = 5 * 60 * 1000;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ArrayList<MeetingRoom<User>> rooms = new ArrayList<>();
+    private final HashMap<MeetingRoom<?>, Integer> ordinals = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private final TreeMap<Long, BitSet> booked = new TreeMap<>();
+
+    /**
+     * Adds a meeting room to the index, with its current reservations.
+     * The reservations are replayed under the lock of the room, so one ending meanwhile cannot leave its slots booked.
+     *
+     * @param room The meeting room that was added.
+     */
+    @Override
+    public void meetingRoomAdded(MeetingRoom<User> room) {
+        this.lock.writeLock().lock();
+        try {
+            if (this.ordinals.containsKey(room)) {
+                return;
+            }
+            int ordinal = this.rooms.size();
+            this.ordinals.put(room, ordinal);
+            this.rooms.add(room);
+            this.live.set(ordinal);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        room.followReservations(this);
+    }
+
+    /**
+     * Removes a meeting room from the index.
+     *
+     * @param room The meeting room that was removed.
+     */
+    @Override
+    public void meetingRoomRemoved(MeetingRoom<User> room) {
+        room.removeCatalogListener(this);
+        this.lock.writeLock().lock();
+        try {
+            Integer ordinal = this.ordinals.get(room);
+            if (ordinal != null) {
+                this.live.clear(ordinal);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks a meeting room as booked for the slots a new reservation covers entirely.
+     *
+     * @param room        The meeting room that was booked.
+     * @param reservation The new reservation.
+     */
+    @Override
+    public void roomReserved(MeetingRoom<?> room, Reservation<?> reservation) {
+        this.mark(room, reservation, true);
+    }
+
+    /**
+     * Marks a meeting room as free again for the slots of a reservation that ended or was cancelled.
+     *
+     * @param room        The meeting room of the reservation.
+     * @param reservation The reservation that ended.
+     */
+    @Override
+    public void reservationEnded(MeetingRoom<?> room, Reservation<?> reservation) {
+        this.mark(room, reservation, false);
+    }
+
+    /**
+     * Finds the meeting rooms free for a whole period.
+     *
+     * @param start    The start of the period.
+     * @param duration The duration of the period in seconds.
+     * @return The free meeting rooms.
+     */
+    public List<MeetingRoom<User>> findFreeRooms(Instant start, int duration) {
+        Instant end = start.plusSeconds(duration);
+        List<MeetingRoom<User>> free = new ArrayList<>();
+        boolean now = !start.isAfter(Instant.now());
+        for (MeetingRoom<User> room : this.candidates(start, end)) {
+            if ((!now || room.isAvailable()) && room.getCalendar().isFree(start, end)) {
+                free.add(room);
+            }
+        }
+        return free;
+    }
+
+    /**
+     * Books the free meeting room that best fits a period: the one whose next reservation starts soonest after it,
+     * which keeps longer free periods in the other rooms. If another user books that room first,
+     * the next best room is tried, so a user looking for any room never has to retry room by room.
+     *
+     * @param user     The user booking a room.
+     * @param start    The start of the period; a start that is not in the future books the room now.
+     * @param duration The duration of the period in seconds.
+     * @return The reservation, or {@code null} if no room is free for the period.
+     * @throws UnauthorizedUserAction If the user may not book any of the free rooms.
+     * @throws InvalidInputInformation If the period is not allowed in any of the free rooms.
+     */
+    public Reservation<User> bookFreeRoom(User user, Instant start, int duration) throws UnauthorizedUserAction, InvalidInputInformation {
+        boolean now = !start.isAfter(Instant.now());
+        Instant end = start.plusSeconds(duration);
+        List<MeetingRoom<User>> free = this.findFreeRooms(start, duration);
+        free.sort((a, b) -> Long.compare(gapAfter(a, end), gapAfter(b, end)));
+        Exception refused = null;
+        for (MeetingRoom<User> room : free) {
+            try {
+                if (now) {
+                    if (room.bookRoom(user, duration)) {
+                        return room.getCalendar().getReservationAt(Instant.now());
+                    }
+                } else {
+                    Reservation<User> reservation = room.tryReserveRoom(user, start, duration);
+                    if (reservation != null) {
+                        return reservation;
+                    }
+                }
+            } catch (UnauthorizedUserAction | InvalidInputInformation e) {
+                // the rules and same-day bans are per room, so another room may still accept the booking
+                refused = e;
+            }
+        }
+        if (refused instanceof UnauthorizedUserAction) {
+            throw (UnauthorizedUserAction) refused;
+        } else if (refused != null) {
+            throw (InvalidInputInformation) refused;
+        }
+        System.out.println("No room is free for that period.");
+        return null;
+    }
+
+    /**
+     * Gets the rooms not booked for any whole slot inside a period.
+     *
+     * @param start The start of the period.
+     * @param end   The end of the period.
+     * @return The candidate rooms, a superset of the free rooms.
+     */
+    private List<MeetingRoom<User>> candidates(Instant start, Instant end) {
+        long first = Math.floorDiv(start.toEpochMilli() + SLOT_MILLIS - 1, SLOT_MILLIS);
+        long last = Math.floorDiv(end.toEpochMilli(), SLOT_MILLIS);
+        List<MeetingRoom<User>> candidates = new ArrayList<>();
+        this.lock.readLock().lock();
+        try {
+            BitSet free = (BitSet) this.live.clone();
+            if (first < last) {
+                for (BitSet slot : this.booked.subMap(first, last).values()) {
+                    free.andNot(slot);
+                }
+            }
+            for (int ordinal = free.nextSetBit(0); ordinal >= 0; ordinal = free.nextSetBit(ordinal + 1)) {
+                candidates.add(this.rooms.get(ordinal));
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return candidates;
+    }
+
+    /**
+     * Sets or clears the bit of a room in the slots a reservation covers entirely.
+     *
+     * @param room        The meeting room.
+     * @param reservation The reservation.
+     * @param booked      {@code true} to mark the slots booked, {@code false} to mark them free.
+     */
+    private void mark(MeetingRoom<?> room, Reservation<?> reservation, boolean booked) {
+        long first = Math.floorDiv(reservation.getStart().toEpochMilli() + SLOT_MILLIS - 1, SLOT_MILLIS);
+        long last = Math.floorDiv(reservation.getEnd().toEpochMilli(), SLOT_MILLIS);
+        this.lock.writeLock().lock();
+        try {
+            Integer ordinal = this.ordinals.get(room);
+            if (ordinal == null) {
+                return;
+            }
+            // slots that have passed are never queried again
+            this.booked.headMap(Math.floorDiv(System.currentTimeMillis(), SLOT_MILLIS)).clear();
+            for (long slot = first; slot < last; slot++) {
+                if (booked) {
+                    this.booked.computeIfAbsent(slot, key -> new BitSet()).set(ordinal);
+                } else {
+                    BitSet rooms = this.booked.get(slot);
+                    if (rooms != null) {
+                        rooms.clear(ordinal);
+                        if (rooms.isEmpty()) {
+                            this.booked.remove(slot);
+                        }
+                    }
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the free time a room would have between a period and its next reservation.
+     *
+     * @param room The meeting room.
+     * @param end  The end of the period.
+     * @return The free time in milliseconds, or {@link Long#MAX_VALUE} if the room has no later reservation.
+     */
+    private static long gapAfter(MeetingRoom<User> room, Instant end) {
+        Reservation<User> next = room.getCalendar().getNextReservation(end);
+        return next == null ? Long.MAX_VALUE : next.getStart().toEpochMilli() - end.toEpochMilli();
+    }
+}
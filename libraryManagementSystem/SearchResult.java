@@ -0,0 +1,52 @@
+package libraryManagementSystem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents the merged result of a search run across several libraries.
+ * Libraries that did not answer before the deadline are listed, so callers can tell
+ * a complete result from a partial one.
+ */
+public class SearchResult {
+    private final ArrayList<Book<User>> books;
+    private final ArrayList<Library> missingLibraries;
+
+    /**
+     * Constructs a new search result.
+     *
+     * @param books            The books found, in library order.
+     * @param missingLibraries The libraries that failed or did not answer before the deadline.
+     */
+    public SearchResult(List<Book<User>> books, List<Library> missingLibraries) {
+        this.books = new ArrayList<>(books);
+        this.missingLibraries = new ArrayList<>(missingLibraries);
+    }
+
+    /**
+     * Gets the books found.
+     *
+     * @return A list of the books found, in library order.
+     */
+    public ArrayList<Book<User>> getBooks() {
+        return books;
+    }
+
+    /**
+     * Gets the libraries that failed or did not answer before the deadline.
+     *
+     * @return A list of the libraries missing from the result.
+     */
+    public ArrayList<Library> getMissingLibraries() {
+        return missingLibraries;
+    }
+
+    /**
+     * Checks if some libraries are missing from the result.
+     *
+     * @return {@code true} if the result is partial, {@code false} if every library answered.
+     */
+    public boolean isPartial() {
+        return !this.missingLibraries.isEmpty();
+    }
+}
@@ -0,0 +1,137 @@
+package libraryManagementSystem;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps repeated strings to small integer codes and back.
+ * Attributes that take few distinct values across the catalog (genre, format, faculty, author, publication year)
+ * are stored as codes, so each distinct value is kept once and comparisons and index keys work on ints.
+ * Codes are assigned in order of first use and never change. Code {@link #NULL} stands for {@code null}.
+ * Authors are not few, so {@link #AUTHORS} counts references: each encoding takes one, {@link #release(int)} gives it back,
+ * and a code whose references are all given back is forgotten and reused for the next new string.
+ */
+public class StringDictionary {
+    public static final StringDictionary GENRES = new StringDictionary(false);
+    public static final StringDictionary FORMATS = new StringDictionary(false);
+    public static final StringDictionary FACULTIES = new StringDictionary(false);
+    public static final StringDictionary AUTHORS = new StringDictionary(true);
+    public static final StringDictionary YEARS = new StringDictionary(false);
+
+    /**
+     * The code returned by {@link #lookup(String)} for a string that has no code.
+     */
+    public static final int ABSENT = -1;
+
+    /**
+     * The code of {@code null}, reserved in every dictionary.
+     */
+    public static final int NULL = 0;
+
+    private final boolean counted;
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[16];
+    private int[] references = new int[16];
+    private final BitSet freeCodes = new BitSet();
+    private int size = NULL + 1;
+
+    /**
+     * Constructs a new dictionary holding only {@code null}.
+     *
+     * @param counted Whether codes are released when they are no longer referenced.
+     */
+    public StringDictionary(boolean counted) {
+        this.counted = counted;
+    }
+
+    /**
+     * Gets the code of a string, assigning a code if the string is new.
+     * In a counted dictionary, this takes a reference on the code that must be given back with {@link #release(int)}.
+     *
+     * @param value The string to encode, or {@code null}.
+     * @return The code of the string, or {@link #NULL} for {@code null}.
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        if (!this.counted) {
+            Integer code = this.codes.get(value);
+            if (code != null) {
+                return code;
+            }
+        }
+        synchronized (this) {
+            Integer code = this.codes.get(value);
+            if (code == null) {
+                code = this.freeCodes.nextSetBit(0);
+                if (code < 0) {
+                    code = this.size++;
+                } else {
+                    this.freeCodes.clear(code);
+                }
+                String[] values = this.values;
+                if (code >= values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                    this.references = Arrays.copyOf(this.references, values.length);
+                }
+                values[code] = value;
+                // the volatile write publishes the new value before its code becomes visible
+                this.values = values;
+                this.codes.put(value, code);
+            }
+            this.references[code]++;
+            return code;
+        }
+    }
+
+    /**
+     * Gives back a reference taken by {@link #encode(String)} on a counted dictionary.
+     * Once a code has no references left, its string is forgotten and the code is reused.
+     * Does nothing on a dictionary that is not counted.
+     *
+     * @param code The code to release.
+     */
+    public void release(int code) {
+        if (!this.counted || code == NULL) {
+            return;
+        }
+        synchronized (this) {
+            if (--this.references[code] == 0) {
+                this.codes.remove(this.values[code]);
+                this.values[code] = null;
+                this.freeCodes.set(code);
+            }
+        }
+    }
+
+    /**
+     * Gets the code of a string without assigning one.
+     *
+     * @param value The string to look up, or {@code null}.
+     * @return The code of the string, {@link #NULL} for {@code null}, or {@link #ABSENT} if it was never encoded.
+     */
+    public int lookup(String value) {
+        return value == null ? NULL : this.codes.getOrDefault(value, ABSENT);
+    }
+
+    /**
+     * Gets the string of a code.
+     *
+     * @param code A code returned by {@link #encode(String)}.
+     * @return The string the code stands for, or {@code null} for {@link #NULL}.
+     */
+    public String decode(int code) {
+        return this.values[code];
+    }
+
+    /**
+     * Gets the number of distinct strings in the dictionary.
+     *
+     * @return The number of codes assigned, not counting {@link #NULL}.
+     */
+    public int size() {
+        return this.codes.size();
+    }
+}
@@ -1,6 +1,46 @@
 package libraryManagementSystem;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
 public class University {
+	private ArrayList<Faculty> faculties = new ArrayList<>();
+
+	/**
+	 * Adds a faculty to the university.
+	 *
+	 * @param faculty The faculty to add.
+	 */
+	public void addFaculties(Faculty faculty) {
+		this.faculties.add(faculty);
+	}
+
+	/**
+	 * Gets the list of faculties of the university.
+	 *
+	 * @return A list of faculties.
+	 */
+	public ArrayList<Faculty> getFaculties() {
+		return faculties;
+	}
+
+	/**
+	 * Runs a search on all libraries of all faculties in parallel and merges the results.
+	 *
+	 * @param query   The search to run on each library (e.g., {@code library -> library.findBookbyTitle(title)}).
+	 * @param timeout The maximum time to wait for the libraries.
+	 * @param unit    The unit of the timeout.
+	 * @return The books found by the libraries that answered in time, with the libraries that did not.
+	 */
+	public SearchResult search(Function<Library, ? extends List<Book<User>>> query, long timeout, TimeUnit unit) {
+		ArrayList<Library> libraries = new ArrayList<>();
+		for (Faculty faculty : this.faculties) {
+			libraries.addAll(faculty.getLibraries());
+		}
+		return FederatedSearch.search(libraries, query, timeout, unit);
+	}
 
 	public static void main(String[] args) throws InvalidInputInformation, UnauthorizedUserAction {
 		final String CYAN = "\u001B[36m";
@@ -11,6 +51,10 @@ public class University {
 		Faculty msfea = new Faculty("Engineering");
 		Faculty osb = new Faculty("Business");
 		Faculty aubmc = new Faculty("Medicine");
+		University aub = new University();
+		aub.addFaculties(msfea);
+		aub.addFaculties(osb);
+		aub.addFaculties(aubmc);
 
 		// create different students
 		Student student1 = new Student("student1", "alc21@mail.aub.edu", "96181819191", "zouk mosbeh", "202209010");
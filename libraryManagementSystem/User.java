@@ -8,7 +8,7 @@ import java.util.ArrayList;
  * This class includes basic information such as name, email, phone number, and address.
  */
 public abstract class User {
-    private String faculty = "";
+    private int faculty = StringDictionary.FACULTIES.encode("");
     private String name;
     private String email;
     private String phoneNumber;
@@ -182,6 +182,15 @@ public abstract class User {
      * @return The faculty of the user.
      */
     public String getFaculty() {
+        return StringDictionary.FACULTIES.decode(faculty);
+    }
+
+    /**
+     * Gets the dictionary code of the faculty of the user.
+     *
+     * @return The code of the faculty in {@link StringDictionary#FACULTIES}.
+     */
+    public int getFacultyCode() {
         return faculty;
     }
 
@@ -191,7 +200,7 @@ public abstract class User {
      * @param faculty The new faculty for the user.
      */
     public void setFaculty(String faculty) {
-        this.faculty = faculty;
+        this.faculty = StringDictionary.FACULTIES.encode(faculty);
     }
 
     /**
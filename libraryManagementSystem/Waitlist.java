@@ -0,0 +1,260 @@
+package libraryManagementSystem;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Represents a concurrent waitlist with priority classes.
+ * Each class is a lock-free FIFO queue, so joining and leaving the waitlist are O(1).
+ * Higher classes (lower numbers) are served first, but every waiting user earns credit over time:
+ * a user waiting one aging period longer than a user of the class above is served before them,
+ * so nobody starves. A user who was polled but could not be served can be put back at the head of their class,
+ * keeping their ticket and waiting time.
+ *
+ * @param <T> The type of the user waiting (e.g., Student, Professor).
+ */
+public class Waitlist<T extends User> {
+    private final ConcurrentLinkedDeque<Entry<T>>[] queues;
+    private final AtomicLong[] enqueued;
+    private final AtomicLong[] dequeued;
+    private final ConcurrentHashMap<T, Entry<T>> entries = new ConcurrentHashMap<>();
+    private volatile long agingNanos;
+
+    /**
+     * Constructs a new empty waitlist.
+     *
+     * @param priorityClasses The number of priority classes; class 0 is served first.
+     * @param agingPeriod     The waiting time, in seconds, that makes up for one priority class.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public Waitlist(int priorityClasses, int agingPeriod) {
+        this.queues = new ConcurrentLinkedDeque[priorityClasses];
+        this.enqueued = new AtomicLong[priorityClasses];
+        this.dequeued = new AtomicLong[priorityClasses];
+        for (int i = 0; i < priorityClasses; i++) {
+            this.queues[i] = new ConcurrentLinkedDeque<>();
+            this.enqueued[i] = new AtomicLong();
+            this.dequeued[i] = new AtomicLong();
+        }
+        this.setAgingPeriod(agingPeriod);
+    }
+
+    /**
+     * Adds a user to the end of their priority class.
+     *
+     * @param user     The user joining the waitlist.
+     * @param priority The priority class of the user.
+     * @return {@code true} if the user joined, {@code false} if they were already waiting.
+     */
+    public boolean add(T user, int priority) {
+        int priorityClass = Math.max(0, Math.min(priority, this.queues.length - 1));
+        ConcurrentLinkedDeque<Entry<T>> queue = this.queues[priorityClass];
+        // adds to a class take tickets and join its queue one at a time, so the queue stays in ticket order
+        synchronized (queue) {
+            Object[] created = new Object[1];
+            this.entries.computeIfAbsent(user, key -> {
+                Entry<T> entry = new Entry<>(key, priorityClass, this.enqueued[priorityClass].getAndIncrement(), System.nanoTime());
+                created[0] = entry;
+                return entry;
+            });
+            if (created[0] == null) {
+                return false;
+            }
+            @SuppressWarnings("unchecked")
+            Entry<T> entry = (Entry<T>) created[0];
+            queue.add(entry);
+            return true;
+        }
+    }
+
+    /**
+     * Removes and returns the user who should be served next.
+     *
+     * @return The next user, or {@code null} if the waitlist is empty.
+     */
+    public T poll() {
+        Entry<T> entry = this.pollEntry();
+        return entry == null ? null : entry.user;
+    }
+
+    /**
+     * Removes and returns the entry of the user who should be served next, so it can be put back with {@link #requeue}.
+     *
+     * @return The next entry, or {@code null} if the waitlist is empty.
+     */
+    Entry<T> pollEntry() {
+        while (true) {
+            Entry<T> head = this.head();
+            if (head == null) {
+                return null;
+            }
+            Entry<T> entry = this.queues[head.priority].poll();
+            if (entry != null) {
+                this.dequeued[entry.priority].incrementAndGet();
+                if (this.entries.remove(entry.user, entry)) {
+                    return entry;
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts a polled entry back at the head of its class, keeping its ticket and waiting time,
+     * for a user who was polled but could not be served.
+     * If the user joined the waitlist again in the meantime, the polled entry replaces the new one.
+     *
+     * @param entry The entry returned by {@link #pollEntry}.
+     */
+    void requeue(Entry<T> entry) {
+        ConcurrentLinkedDeque<Entry<T>> queue = this.queues[entry.priority];
+        synchronized (queue) {
+            this.entries.put(entry.user, entry);
+            queue.addFirst(entry);
+            this.dequeued[entry.priority].decrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the user who should be served next, without removing them.
+     *
+     * @return The next user, or {@code null} if the waitlist is empty.
+     */
+    public T peek() {
+        Entry<T> head = this.head();
+        return head == null ? null : head.user;
+    }
+
+    /**
+     * Removes a user from the waitlist, wherever they are in it.
+     * The user is dropped from their queue when they reach its head, and until then
+     * the positions of the users behind them still count them.
+     *
+     * @param user The user leaving the waitlist.
+     * @return {@code true} if the user was waiting, {@code false} otherwise.
+     */
+    public boolean remove(T user) {
+        return this.entries.remove(user) != null;
+    }
+
+    /**
+     * Gets the position of a user in the waitlist, counting from 1 for the next user served.
+     * The position counts everyone ahead in the same class and everyone waiting in higher classes;
+     * it does not anticipate users promoted by aging.
+     *
+     * @param user The user to look up.
+     * @return The position of the user, or 0 if the user is not waiting.
+     */
+    public long position(T user) {
+        Entry<T> entry = this.entries.get(user);
+        if (entry == null) {
+            return 0;
+        }
+        long position = entry.ticket - this.dequeued[entry.priority].get() + 1;
+        for (int i = 0; i < entry.priority; i++) {
+            position += this.enqueued[i].get() - this.dequeued[i].get();
+        }
+        return Math.max(position, 1);
+    }
+
+    /**
+     * Checks if a user is on the waitlist.
+     *
+     * @param user The user to look up.
+     * @return {@code true} if the user is waiting, {@code false} otherwise.
+     */
+    public boolean contains(T user) {
+        return this.entries.containsKey(user);
+    }
+
+    /**
+     * Checks if the waitlist is empty.
+     *
+     * @return {@code true} if nobody is waiting, {@code false} otherwise.
+     */
+    public boolean isEmpty() {
+        return this.entries.isEmpty();
+    }
+
+    /**
+     * Gets the number of users on the waitlist.
+     *
+     * @return The number of waiting users.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Gets the waiting time that makes up for one priority class.
+     *
+     * @return The aging period in seconds.
+     */
+    public int getAgingPeriod() {
+        return (int) TimeUnit.NANOSECONDS.toSeconds(this.agingNanos);
+    }
+
+    /**
+     * Sets the waiting time that makes up for one priority class.
+     *
+     * @param agingPeriod The aging period in seconds.
+     */
+    public void setAgingPeriod(int agingPeriod) {
+        this.agingNanos = TimeUnit.SECONDS.toNanos(agingPeriod);
+    }
+
+    /**
+     * Finds the entry that should be served next, dropping the users who left from the heads of the queues.
+     *
+     * @return The next entry, or {@code null} if the waitlist is empty.
+     */
+    private Entry<T> head() {
+        Entry<T> best = null;
+        long bestTime = Long.MAX_VALUE;
+        for (int i = 0; i < this.queues.length; i++) {
+            Entry<T> head = this.queues[i].peek();
+            while (head != null && this.entries.get(head.user) != head) {
+                if (this.queues[i].remove(head)) {
+                    this.dequeued[i].incrementAndGet();
+                }
+                head = this.queues[i].peek();
+            }
+            if (head != null) {
+                // each class below the top waits one aging period longer
+                long effectiveTime = head.enqueuedAt + i * this.agingNanos;
+                if (best == null || effectiveTime - bestTime < 0) {
+                    best = head;
+                    bestTime = effectiveTime;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * A user waiting in one of the priority classes.
+     */
+    static final class Entry<T> {
+        private final T user;
+        private final int priority;
+        private final long ticket;
+        private final long enqueuedAt;
+
+        private Entry(T user, int priority, long ticket, long enqueuedAt) {
+            this.user = user;
+            this.priority = priority;
+            this.ticket = ticket;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        /**
+         * Gets the waiting user.
+         *
+         * @return The user.
+         */
+        T getUser() {
+            return this.user;
+        }
+    }
+}